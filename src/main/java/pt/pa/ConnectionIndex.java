@@ -0,0 +1,106 @@
+package pt.pa;
+
+import com.brunomnsilva.smartgraph.graph.Edge;
+import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+
+import java.util.*;
+
+/**
+ * A classe {@code ConnectionIndex} mantém um índice não orientado que associa cada par de Stops
+ * ({@code stopA}, {@code stopB}) à aresta que as liga no mapa de transportes.
+ *
+ * Permite encontrar a aresta entre duas Stops em tempo constante, sem percorrer as arestas incidentes nem
+ * comparar nomes de Stops. O índice é atualizado pelos métodos de alteração do {@link TransportMap}.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ConnectionIndex {
+    private final Map<Vertex<Stop>, Map<Vertex<Stop>, Edge<List<Route>, Stop>>> connections;
+
+    /**
+     * Construtor de um índice vazio.
+     */
+    public ConnectionIndex() {
+        this.connections = new HashMap<>();
+    }
+
+    /**
+     * Reconstrói o índice a partir de todas as arestas de um grafo.
+     *
+     * @param graph o grafo cujas arestas serão indexadas.
+     */
+    public void rebuild(Graph<Stop, List<Route>> graph) {
+        connections.clear();
+        for (Edge<List<Route>, Stop> edge : graph.edges()) {
+            add(edge);
+        }
+    }
+
+    /**
+     * Acrescenta uma aresta ao índice. Se as Stops já estiverem ligadas, a primeira aresta indexada é mantida.
+     *
+     * @param edge a aresta a indexar.
+     */
+    public void add(Edge<List<Route>, Stop> edge) {
+        Vertex<Stop>[] endpoints = edge.vertices();
+        connections.computeIfAbsent(endpoints[0], key -> new HashMap<>()).putIfAbsent(endpoints[1], edge);
+        connections.computeIfAbsent(endpoints[1], key -> new HashMap<>()).putIfAbsent(endpoints[0], edge);
+    }
+
+    /**
+     * Remove uma aresta do índice.
+     *
+     * @param edge a aresta a remover.
+     */
+    public void remove(Edge<List<Route>, Stop> edge) {
+        Vertex<Stop>[] endpoints = edge.vertices();
+        unlink(endpoints[0], endpoints[1], edge);
+        unlink(endpoints[1], endpoints[0], edge);
+    }
+
+    /**
+     * Remove do índice todas as ligações de uma Stop.
+     *
+     * @param vertex o vértice da Stop removida.
+     */
+    public void remove(Vertex<Stop> vertex) {
+        Map<Vertex<Stop>, Edge<List<Route>, Stop>> neighbours = connections.remove(vertex);
+        if (neighbours == null) {
+            return;
+        }
+
+        for (Map.Entry<Vertex<Stop>, Edge<List<Route>, Stop>> entry : neighbours.entrySet()) {
+            unlink(entry.getKey(), vertex, entry.getValue());
+        }
+    }
+
+    /**
+     * Obtém a aresta que liga duas Stops, independentemente da ordem.
+     *
+     * @param stopA vértice de uma das Stops.
+     * @param stopB vértice da outra Stop.
+     * @return a aresta entre as Stops, ou {@code null} se não estiverem ligadas.
+     */
+    public Edge<List<Route>, Stop> get(Vertex<Stop> stopA, Vertex<Stop> stopB) {
+        Map<Vertex<Stop>, Edge<List<Route>, Stop>> neighbours = connections.get(stopA);
+        return neighbours == null ? null : neighbours.get(stopB);
+    }
+
+    /**
+     * Remove a entrada {@code from -> to} se ainda apontar para a aresta indicada.
+     *
+     * @param from vértice de partida.
+     * @param to   vértice de chegada.
+     * @param edge a aresta esperada.
+     */
+    private void unlink(Vertex<Stop> from, Vertex<Stop> to, Edge<List<Route>, Stop> edge) {
+        Map<Vertex<Stop>, Edge<List<Route>, Stop>> neighbours = connections.get(from);
+        if (neighbours != null && neighbours.get(to) == edge) {
+            neighbours.remove(to);
+            if (neighbours.isEmpty()) {
+                connections.remove(from);
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package pt.pa;
 
-import com.brunomnsilva.smartgraph.graph.Graph;
 import com.brunomnsilva.smartgraph.graph.Vertex;
 import com.brunomnsilva.smartgraph.graphview.SmartGraphPanel;
 import com.opencsv.CSVReader;
@@ -131,24 +130,21 @@ public class DataImporter {
      * Carrega as coordenadas dos vértices no grafo e ajusta as suas posições no painel do SmartGraph.
      *
      * @param smartGraph Painel do SmartGraph ({@link SmartGraphPanel})
-     * @param graph Grafo que contém os vértices ({@link Graph})
+     * @param stopIndex Índice das Stops do grafo ({@link StopIndex}), usado para encontrar cada vértice pelo código
      */
-    public static void loadCordinates(SmartGraphPanel<Stop, List<Route>> smartGraph, Graph<Stop, List<Route>> graph) {
+    public static void loadCordinates(SmartGraphPanel<Stop, List<Route>> smartGraph, StopIndex stopIndex) {
         try (CSVReader reader = new CSVReader(new FileReader("src/main/resources/dataset/xy.csv"))) {
             String[] nextLine;
             reader.readNext();
             while ((nextLine = reader.readNext()) != null) {
-                List<Vertex<Stop>> list = (List<Vertex<Stop>>) graph.vertices();
                 String stopCode = nextLine[STOP_POSITION];
                 double x = Double.parseDouble(nextLine[X]);
                 double y = Double.parseDouble(nextLine[Y]);
 
-                for (Vertex<Stop> v : list) {
-                    if (v.element().getStopCode().equals(stopCode)) {
-                        smartGraph.setVertexPosition(v, x, y);
-                    }
+                Vertex<Stop> v = stopIndex.getByCode(stopCode);
+                if (v != null) {
+                    smartGraph.setVertexPosition(v, x, y);
                 }
-
             }
         } catch (IOException | CsvValidationException e) {
             e.printStackTrace();
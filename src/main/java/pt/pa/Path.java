@@ -8,13 +8,22 @@ import java.util.*;
  * incluindo a lista de vértices que compõem o Path e o custo total associado.
  *
  * Esta classe é usada para encapsular os resultados de cálculos de Paths no modelo de transporte.
- * Armazena o Path calculado e o custo total para facilitar a exibição e o processamento posterior.
+ * Armazena o Path calculado e o custo total para facilitar a exibição e o processamento posterior, bem como os
+ * totais de distância, duração e sustentabilidade das Routes escolhidas, qualquer que seja o critério otimizado.
+ * Os Paths calculados pelo modelo guardam ainda os troços ({@link PathLeg}), com a Route escolhida em cada aresta.
+ * As listas de vértices e de troços são cópias imutáveis, pelo que um Path partilhado, por exemplo pela
+ * {@link PathCache}, não pode ser alterado por quem o recebe.
  *
  * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
  */
 public class Path {
     private List<Vertex<Stop>> path;
     private double totalCost;
+    private int settledStops;
+    private double totalDistance;
+    private int totalDuration;
+    private double totalSustainability;
+    private List<PathLeg> legs;
 
     /**
      * Construtor que cria uma instância de {@code Path}.
@@ -23,14 +32,61 @@ public class Path {
      * @param totalCost custo total do Path.
      */
     public Path(List<Vertex<Stop>> path, double totalCost) {
-        this.path = path;
+        this(path, totalCost, 0);
+    }
+
+    /**
+     * Construtor que cria uma instância de {@code Path} com o número de Stops estabelecidas pela pesquisa.
+     *
+     * @param path lista de vértices ({@link Vertex}) que compõem o Path.
+     * @param totalCost custo total do Path.
+     * @param settledStops número de Stops estabelecidas pelo algoritmo que calculou o Path.
+     */
+    public Path(List<Vertex<Stop>> path, double totalCost, int settledStops) {
+        this(path, totalCost, settledStops, Double.NaN, -1, Double.NaN);
+    }
+
+    /**
+     * Construtor que cria uma instância de {@code Path} com os totais de cada critério.
+     *
+     * @param path                lista de vértices ({@link Vertex}) que compõem o Path.
+     * @param totalCost           custo total do Path.
+     * @param settledStops        número de Stops estabelecidas pelo algoritmo que calculou o Path.
+     * @param totalDistance       distância total das Routes escolhidas.
+     * @param totalDuration       duração total das Routes escolhidas.
+     * @param totalSustainability custo de sustentabilidade total das Routes escolhidas.
+     */
+    public Path(List<Vertex<Stop>> path, double totalCost, int settledStops,
+                double totalDistance, int totalDuration, double totalSustainability) {
+        this(path, List.of(), totalCost, settledStops, totalDistance, totalDuration, totalSustainability);
+    }
+
+    /**
+     * Construtor que cria uma instância de {@code Path} com os troços escolhidos pela pesquisa.
+     *
+     * @param path                lista de vértices ({@link Vertex}) que compõem o Path.
+     * @param legs                troços do Path, pela ordem em que são percorridos.
+     * @param totalCost           custo total do Path.
+     * @param settledStops        número de Stops estabelecidas pelo algoritmo que calculou o Path.
+     * @param totalDistance       distância total das Routes escolhidas.
+     * @param totalDuration       duração total das Routes escolhidas.
+     * @param totalSustainability custo de sustentabilidade total das Routes escolhidas.
+     */
+    public Path(List<Vertex<Stop>> path, List<PathLeg> legs, double totalCost, int settledStops,
+                double totalDistance, int totalDuration, double totalSustainability) {
+        this.path = List.copyOf(path);
+        this.legs = List.copyOf(legs);
         this.totalCost = totalCost;
+        this.settledStops = settledStops;
+        this.totalDistance = totalDistance;
+        this.totalDuration = totalDuration;
+        this.totalSustainability = totalSustainability;
     }
 
     /**
      * Retorna a lista de vértices que compõem o Path.
      *
-     * @return lista de vértices ({@link Vertex}) representando o Path.
+     * @return lista imutável de vértices ({@link Vertex}) representando o Path.
      */
     public List<Vertex<Stop>> getPath() {
         return path;
@@ -45,6 +101,62 @@ public class Path {
         return totalCost;
     }
 
+    /**
+     * Retorna o número de Stops estabelecidas pelo algoritmo que calculou o Path, útil para comparar o esforço
+     * de pesquisa dos diferentes motores.
+     *
+     * @return número de Stops estabelecidas.
+     */
+    public int getSettledStops() {
+        return settledStops;
+    }
+
+    /**
+     * Retorna a distância total das Routes escolhidas.
+     *
+     * @return distância total, ou {@link Double#NaN} se não tiver sido calculada.
+     */
+    public double getTotalDistance() {
+        return totalDistance;
+    }
+
+    /**
+     * Retorna a duração total das Routes escolhidas.
+     *
+     * @return duração total, ou {@code -1} se não tiver sido calculada.
+     */
+    public int getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Retorna o custo de sustentabilidade total das Routes escolhidas.
+     *
+     * @return custo de sustentabilidade total, ou {@link Double#NaN} se não tiver sido calculado.
+     */
+    public double getTotalSustainability() {
+        return totalSustainability;
+    }
+
+    /**
+     * Retorna os troços do Path, com a Route escolhida em cada aresta.
+     *
+     * @return lista imutável de troços ({@link PathLeg}), vazia se o Path não tiver sido calculado pelo modelo.
+     */
+    public List<PathLeg> getLegs() {
+        return legs;
+    }
+
+    /**
+     * Cria uma cópia do Path para uma consulta respondida sem pesquisa, com zero Stops estabelecidas. As listas
+     * imutáveis são partilhadas com o Path original.
+     *
+     * @return a cópia do Path.
+     */
+    Path withoutSearch() {
+        return new Path(path, legs, totalCost, 0, totalDistance, totalDuration, totalSustainability);
+    }
+
     /**
      * Retorna uma representação em string do objeto {@code Path}.
      *
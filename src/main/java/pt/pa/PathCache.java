@@ -0,0 +1,183 @@
+package pt.pa;
+
+import pt.pa.patterns.strategy.WeightCalculationStrategy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A classe {@code PathCache} guarda os Paths ({@link Path}) de menor custo já calculados, indexados pela origem, pelo
+ * destino, pela estratégia de cálculo de peso e pela máscara de transportes da consulta.
+ *
+ * A cache tem capacidade limitada e descarta o Path usado há mais tempo (LRU) quando fica cheia. Cada consulta
+ * indica a versão do mapa de transportes ({@link TransportMap#getVersion()}), que aumenta sempre que o mapa é
+ * alterado: se a versão for diferente da dos Paths guardados, a cache é esvaziada antes da consulta, pelo que nunca
+ * devolve um Path calculado sobre um estado anterior do mapa.
+ *
+ * Os contadores de acertos, falhas e remoções por falta de espaço permitem acompanhar a eficácia da cache.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class PathCache {
+
+    /**
+     * Capacidade por omissão.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final int capacity;
+    private final Map<Key, Path> paths;
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Construtor de uma cache vazia.
+     *
+     * @param capacity número máximo de Paths guardados.
+     * @throws IllegalArgumentException se a capacidade não for positiva.
+     */
+    public PathCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The cache capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.paths = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Path> eldest) {
+                if (size() > PathCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtém o Path guardado para uma consulta.
+     *
+     * @param version     versão atual do mapa de transportes.
+     * @param origin      nome da Stop de origem.
+     * @param destination nome da Stop de destino.
+     * @param strategy    estratégia de cálculo de peso.
+     * @param transports  máscara dos tipos de transporte.
+     * @return uma cópia do Path guardado com zero Stops estabelecidas, já que a consulta não fez nenhuma pesquisa,
+     *         ou {@code null} se a consulta não estiver na cache.
+     */
+    public Path get(long version, String origin, String destination, WeightCalculationStrategy strategy, TransportMask transports) {
+        synchronize(version);
+        Path path = paths.get(new Key(origin, destination, strategy.getClass(), transports.bits()));
+        if (path == null) {
+            misses++;
+        } else {
+            hits++;
+            path = path.withoutSearch();
+        }
+        return path;
+    }
+
+    /**
+     * Guarda o Path de uma consulta, descartando o Path usado há mais tempo se a cache estiver cheia.
+     *
+     * @param version     versão do mapa de transportes sobre a qual o Path foi calculado.
+     * @param origin      nome da Stop de origem.
+     * @param destination nome da Stop de destino.
+     * @param strategy    estratégia de cálculo de peso.
+     * @param transports  máscara dos tipos de transporte.
+     * @param path        o Path calculado.
+     */
+    public void put(long version, String origin, String destination, WeightCalculationStrategy strategy, TransportMask transports, Path path) {
+        synchronize(version);
+        paths.put(new Key(origin, destination, strategy.getClass(), transports.bits()), path);
+    }
+
+    /**
+     * Esvazia a cache se a versão do mapa mudou.
+     */
+    private void synchronize(long version) {
+        if (this.version != version) {
+            paths.clear();
+            this.version = version;
+        }
+    }
+
+    /**
+     * Retorna a capacidade da cache.
+     *
+     * @return número máximo de Paths guardados.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Retorna o número de Paths guardados.
+     *
+     * @return número de Paths.
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * Retorna o número de consultas respondidas pela cache.
+     *
+     * @return número de acertos.
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * Retorna o número de consultas que não estavam na cache.
+     *
+     * @return número de falhas.
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Retorna o número de Paths descartados por falta de espaço.
+     *
+     * @return número de remoções.
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Chave de uma consulta.
+     */
+    private static final class Key {
+        private final String origin;
+        private final String destination;
+        private final Class<?> strategy;
+        private final int mask;
+
+        private Key(String origin, String destination, Class<?> strategy, int mask) {
+            this.origin = origin;
+            this.destination = destination;
+            this.strategy = strategy;
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mask == other.mask && strategy == other.strategy && origin.equals(other.origin)
+                    && destination.equals(other.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(origin, destination, strategy, mask);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package pt.pa;
+
+import com.brunomnsilva.smartgraph.graph.Edge;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+
+import java.util.List;
+
+/**
+ * A classe {@code PathLeg} representa um troço de um {@link Path}: a ligação entre duas Stops consecutivas, a
+ * {@link Route} escolhida pela pesquisa nessa ligação e os valores de cada critério dessa Route.
+ *
+ * Os valores são registados no momento em que o Path é calculado, a partir da fotografia do grafo usada na pesquisa,
+ * pelo que quem apresenta o Path (custos, destaque das arestas) não precisa de voltar a procurar a melhor Route de
+ * cada aresta.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class PathLeg {
+    private final Vertex<Stop> from;
+    private final Vertex<Stop> to;
+    private final Edge<List<Route>, Stop> edge;
+    private final Route route;
+    private final TransportType transportType;
+    private final double cost;
+    private final double distance;
+    private final int duration;
+    private final double sustainability;
+
+    /**
+     * Construtor de um troço.
+     *
+     * @param from           Stop de partida do troço.
+     * @param to             Stop de chegada do troço.
+     * @param edge           a aresta percorrida.
+     * @param route          a Route escolhida na aresta.
+     * @param transportType  o tipo de transporte da Route.
+     * @param cost           custo do troço segundo a estratégia da pesquisa.
+     * @param distance       distância da Route.
+     * @param duration       duração da Route.
+     * @param sustainability custo de sustentabilidade da Route.
+     */
+    public PathLeg(Vertex<Stop> from, Vertex<Stop> to, Edge<List<Route>, Stop> edge, Route route,
+                   TransportType transportType, double cost, double distance, int duration, double sustainability) {
+        this.from = from;
+        this.to = to;
+        this.edge = edge;
+        this.route = route;
+        this.transportType = transportType;
+        this.cost = cost;
+        this.distance = distance;
+        this.duration = duration;
+        this.sustainability = sustainability;
+    }
+
+    /**
+     * Retorna a Stop de partida do troço.
+     *
+     * @return o vértice de partida.
+     */
+    public Vertex<Stop> getFrom() {
+        return from;
+    }
+
+    /**
+     * Retorna a Stop de chegada do troço.
+     *
+     * @return o vértice de chegada.
+     */
+    public Vertex<Stop> getTo() {
+        return to;
+    }
+
+    /**
+     * Retorna a aresta percorrida.
+     *
+     * @return a aresta.
+     */
+    public Edge<List<Route>, Stop> getEdge() {
+        return edge;
+    }
+
+    /**
+     * Retorna a Route escolhida na aresta.
+     *
+     * @return a Route.
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Retorna o tipo de transporte da Route escolhida.
+     *
+     * @return o tipo de transporte.
+     */
+    public TransportType getTransportType() {
+        return transportType;
+    }
+
+    /**
+     * Retorna o custo do troço segundo a estratégia da pesquisa.
+     *
+     * @return o custo.
+     */
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Retorna a distância da Route escolhida.
+     *
+     * @return a distância.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Retorna a duração da Route escolhida.
+     *
+     * @return a duração.
+     */
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Retorna o custo de sustentabilidade da Route escolhida.
+     *
+     * @return o custo de sustentabilidade.
+     */
+    public double getSustainability() {
+        return sustainability;
+    }
+}
@@ -1,11 +1,14 @@
 package pt.pa;
 
+import pt.pa.patterns.observer.Subject;
+
 /**
  * Representa uma Route específica que descreve o tranporte entre dois Stops.
  * Contém informações sobre o tipo de transporte, distância, duração e custo.
+ * Os observadores registados são notificados sempre que o estado ou a duração da Route mudam.
  *  @author Rafael Quintas, Rafael Pato, Guilherme Pereira
  */
-public class Route {
+public class Route extends Subject {
     private TransportType transportType;
     private double distance;
     private int duration;
@@ -80,7 +83,10 @@ public class Route {
      * @param duration nova duração da Route, em minutos.
      */
     public void setDuration(int duration) {
-        this.duration = duration;
+        if (this.duration != duration) {
+            this.duration = duration;
+            notifyObservers();
+        }
     }
 
     /**
@@ -89,7 +95,10 @@ public class Route {
      * @param state o novo estado da Route; {@code true} para ativo e {@code false} para inativo.
      */
     public void setState(boolean state) {
-        this.state = state;
+        if (this.state != state) {
+            this.state = state;
+            notifyObservers();
+        }
     }
 
     /**
@@ -0,0 +1,175 @@
+package pt.pa;
+
+import pt.pa.patterns.strategy.WeightCalculationStrategy;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A classe {@code RouteQueryService} calcula os Paths ({@link Path}) de menor custo de um {@link TransportMap} fora
+ * da thread que a chama, devolvendo um {@link CompletableFuture}, para que a interface não fique bloqueada durante
+ * as pesquisas longas.
+ *
+ * As consultas correm num executor limitado (por omissão, uma única thread daemon com uma fila de
+ * {@link #QUEUE_CAPACITY} tarefas). Só interessa o resultado da consulta mais recente: cada nova consulta, ou uma
+ * chamada a {@link #cancel()}, cancela a anterior. Se esta ainda estiver na fila, nunca chega a correr; se já estiver
+ * a correr, a thread é interrompida e a pesquisa termina cooperativamente no próximo ponto de verificação.
+ *
+ * O {@link TransportMap} não é seguro para várias threads, pelo que todos os acessos ao modelo feitos através do
+ * serviço são exclusivos: as consultas e as leituras ({@link #read(Supplier)}) correm no executor com o bloqueio do
+ * modelo e as alterações ({@link #update(Runnable)}) cancelam a consulta em curso antes de o obterem, esperando apenas
+ * até a pesquisa abandonar o trabalho.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class RouteQueryService implements AutoCloseable {
+
+    /**
+     * Número máximo de consultas à espera no executor por omissão.
+     */
+    public static final int QUEUE_CAPACITY = 16;
+
+    private final TransportMap model;
+    private final ExecutorService executor;
+    private final ReentrantLock modelLock = new ReentrantLock();
+    private CompletableFuture<Path> current;
+    private Future<?> currentTask;
+
+    /**
+     * Construtor que usa uma única thread daemon com uma fila limitada.
+     *
+     * @param model o mapa de transportes consultado.
+     */
+    public RouteQueryService(TransportMap model) {
+        this(model, newDefaultExecutor());
+    }
+
+    /**
+     * Construtor que usa um executor fornecido, que passa a pertencer ao serviço.
+     *
+     * @param model    o mapa de transportes consultado.
+     * @param executor o executor onde correm as consultas.
+     */
+    public RouteQueryService(TransportMap model, ExecutorService executor) {
+        this.model = model;
+        this.executor = executor;
+    }
+
+    private static ExecutorService newDefaultExecutor() {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "route-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Pede o cálculo do Path de menor custo entre duas Stops, cancelando a consulta anterior.
+     *
+     * @param origin      nome da Stop de origem.
+     * @param destination nome da Stop de destino.
+     * @param strategy    estratégia de cálculo de peso.
+     * @param transports  máscara dos tipos de transporte.
+     * @return o resultado futuro; termina com {@link CancellationException} se a consulta for substituída ou cancelada
+     * e com a exceção do {@link TransportMap} se não houver caminho.
+     */
+    public synchronized CompletableFuture<Path> leastCostBetweenStops(String origin, String destination,
+                                                                      WeightCalculationStrategy strategy,
+                                                                      TransportMask transports) {
+        cancel();
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        try {
+            currentTask = executor.submit(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                modelLock.lock();
+                try {
+                    result.complete(model.leastCostBetweenStops(origin, destination, strategy, transports));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    modelLock.unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        current = result;
+        return result;
+    }
+
+    /**
+     * Cancela a consulta em curso ou à espera, se existir.
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel(false);
+            currentTask.cancel(true);
+            current = null;
+            currentTask = null;
+        }
+    }
+
+    /**
+     * Lê o modelo com acesso exclusivo no executor do serviço, sem cancelar a consulta em curso. A leitura corre
+     * depois das consultas já pedidas, pelo que a thread que a pede, por exemplo a da interface, nunca fica à espera
+     * do bloqueio do modelo.
+     *
+     * @param read a leitura a fazer.
+     * @param <T>  tipo do valor lido.
+     * @return o valor lido no futuro; termina com a exceção da leitura se esta falhar.
+     */
+    public <T> CompletableFuture<T> read(Supplier<T> read) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                modelLock.lock();
+                try {
+                    result.complete(read.get());
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    modelLock.unlock();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Altera o modelo com acesso exclusivo, cancelando primeiro a consulta em curso, cujo resultado ficaria
+     * desatualizado.
+     *
+     * @param change a alteração a fazer.
+     */
+    public void update(Runnable change) {
+        cancel();
+        modelLock.lock();
+        try {
+            change.run();
+        } finally {
+            modelLock.unlock();
+        }
+    }
+
+    /**
+     * Cancela a consulta em curso e termina o executor.
+     */
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,207 @@
+package pt.pa;
+
+import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+
+import java.util.*;
+
+/**
+ * A classe {@code StopIndex} mantém um índice dos vértices do mapa de transportes pelo código e pelo nome
+ * de cada Stop ({@link Stop}), permitindo pesquisas em tempo constante.
+ *
+ * Os nomes são também guardados numa árvore de prefixos (<i>trie</i>), sem distinção entre maiúsculas e
+ * minúsculas, para suportar a pesquisa por prefixo usada no preenchimento automático dos dropdowns.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class StopIndex {
+    private final Map<String, Vertex<Stop>> byCode;
+    private final Map<String, List<Vertex<Stop>>> byName;
+    private final TrieNode root;
+
+    /**
+     * Construtor de um índice vazio.
+     */
+    public StopIndex() {
+        this.byCode = new HashMap<>();
+        this.byName = new HashMap<>();
+        this.root = new TrieNode();
+    }
+
+    /**
+     * Reconstrói o índice a partir de todos os vértices de um grafo.
+     *
+     * @param graph o grafo cujos vértices serão indexados.
+     */
+    public void rebuild(Graph<Stop, List<Route>> graph) {
+        clear();
+        for (Vertex<Stop> vertex : graph.vertices()) {
+            add(vertex);
+        }
+    }
+
+    /**
+     * Remove todas as entradas do índice.
+     */
+    public void clear() {
+        byCode.clear();
+        byName.clear();
+        root.children.clear();
+        root.vertices.clear();
+        root.size = 0;
+    }
+
+    /**
+     * Indica se já existe uma Stop com o código fornecido.
+     *
+     * @param stopCode o código a verificar.
+     * @return {@code true} se o código estiver indexado; caso contrário, {@code false}.
+     */
+    public boolean containsCode(String stopCode) {
+        return byCode.containsKey(stopCode);
+    }
+
+    /**
+     * Acrescenta um vértice ao índice.
+     *
+     * @param vertex o vértice a indexar.
+     */
+    public void add(Vertex<Stop> vertex) {
+        Stop stop = vertex.element();
+        byCode.put(stop.getStopCode(), vertex);
+        byName.computeIfAbsent(stop.getStopName(), key -> new ArrayList<>(1)).add(vertex);
+
+        TrieNode node = root;
+        node.size++;
+        for (char c : normalize(stop.getStopName()).toCharArray()) {
+            node = node.children.computeIfAbsent(c, key -> new TrieNode());
+            node.size++;
+        }
+        node.vertices.add(vertex);
+    }
+
+    /**
+     * Remove um vértice do índice.
+     *
+     * @param vertex o vértice a remover.
+     */
+    public void remove(Vertex<Stop> vertex) {
+        Stop stop = vertex.element();
+        if (byCode.get(stop.getStopCode()) == vertex) {
+            byCode.remove(stop.getStopCode());
+        }
+
+        List<Vertex<Stop>> sameName = byName.get(stop.getStopName());
+        if (sameName == null || !sameName.remove(vertex)) {
+            return;
+        }
+        if (sameName.isEmpty()) {
+            byName.remove(stop.getStopName());
+        }
+
+        String key = normalize(stop.getStopName());
+        TrieNode[] path = new TrieNode[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].children.get(key.charAt(i));
+        }
+
+        path[key.length()].vertices.remove(vertex);
+        for (int i = key.length(); i >= 0; i--) {
+            path[i].size--;
+            if (i > 0 && path[i].size == 0) {
+                path[i - 1].children.remove(key.charAt(i - 1));
+            }
+        }
+    }
+
+    /**
+     * Obtém o vértice de uma Stop pelo seu código.
+     *
+     * @param stopCode o código da Stop.
+     * @return o vértice correspondente, ou {@code null} se não existir.
+     */
+    public Vertex<Stop> getByCode(String stopCode) {
+        return byCode.get(stopCode);
+    }
+
+    /**
+     * Obtém o vértice de uma Stop pelo seu nome.
+     *
+     * @param stopName o nome da Stop.
+     * @return o primeiro vértice indexado com esse nome, ou {@code null} se não existir.
+     */
+    public Vertex<Stop> getByName(String stopName) {
+        List<Vertex<Stop>> sameName = byName.get(stopName);
+        return sameName == null ? null : sameName.get(0);
+    }
+
+    /**
+     * Procura as Stops cujo nome começa pelo prefixo fornecido, ignorando maiúsculas e minúsculas.
+     * <p>
+     * Os resultados são devolvidos por ordem alfabética e a pesquisa termina assim que {@code limit} Stops
+     * forem encontradas, pelo que o custo depende do tamanho do prefixo e do limite, e não do número de Stops.
+     *
+     * @param prefix o prefixo a procurar (uma String vazia corresponde a todas as Stops).
+     * @param limit  o número máximo de resultados.
+     * @return lista das Stops encontradas.
+     */
+    public List<Stop> findByPrefix(String prefix, int limit) {
+        List<Stop> result = new ArrayList<>();
+        if (prefix == null || limit <= 0) {
+            return result;
+        }
+
+        TrieNode node = root;
+        for (char c : normalize(prefix).toCharArray()) {
+            node = node.children.get(c);
+            if (node == null) {
+                return result;
+            }
+        }
+
+        collect(node, result, limit);
+        return result;
+    }
+
+    /**
+     * Percorre uma subárvore da trie por ordem alfabética, acumulando Stops até atingir o limite.
+     *
+     * @param node   a raiz da subárvore.
+     * @param result a lista onde os resultados são acumulados.
+     * @param limit  o número máximo de resultados.
+     */
+    private void collect(TrieNode node, List<Stop> result, int limit) {
+        for (Vertex<Stop> vertex : node.vertices) {
+            if (result.size() >= limit) {
+                return;
+            }
+            result.add(vertex.element());
+        }
+        for (TrieNode child : node.children.values()) {
+            if (result.size() >= limit) {
+                return;
+            }
+            collect(child, result, limit);
+        }
+    }
+
+    /**
+     * Normaliza um nome para ser usado como chave da trie.
+     *
+     * @param name o nome a normalizar.
+     * @return o nome em minúsculas.
+     */
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Nó da árvore de prefixos.
+     */
+    private static class TrieNode {
+        private final TreeMap<Character, TrieNode> children = new TreeMap<>();
+        private final List<Vertex<Stop>> vertices = new ArrayList<>(1);
+        private int size;
+    }
+}
@@ -0,0 +1,117 @@
+package pt.pa;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code TransferPenalties} representa as penalizações de transbordo entre tipos de transporte
+ * ({@link TransportType}): o custo somado a um Path sempre que a Route de um troço é de um tipo diferente da Route do
+ * troço anterior, por exemplo ao sair do comboio para apanhar o barco.
+ *
+ * As penalizações são definidas por par ordenado de tipos de transporte e ficam numa tabela primitiva indexada por
+ * {@code de * MODES + para}, na mesma unidade da estratégia de cálculo de peso usada na pesquisa. Continuar no mesmo
+ * tipo de transporte não é penalizado, salvo indicação em contrário. As instâncias são imutáveis.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public final class TransferPenalties {
+
+    /**
+     * Número de tipos de transporte.
+     */
+    public static final int MODES = TransportType.values().length;
+
+    private static final TransferPenalties NONE = new TransferPenalties(new double[MODES * MODES]);
+
+    private final double[] penalties;
+
+    /**
+     * Construtor privado; as instâncias são obtidas através de {@link #none()}, {@link #uniform(double)} e
+     * {@link #with(TransportType, TransportType, double)}.
+     *
+     * @param penalties a tabela de penalizações.
+     */
+    private TransferPenalties(double[] penalties) {
+        this.penalties = penalties;
+    }
+
+    /**
+     * Obtém as penalizações nulas, com as quais mudar de tipo de transporte não tem custo.
+     *
+     * @return as penalizações nulas.
+     */
+    public static TransferPenalties none() {
+        return NONE;
+    }
+
+    /**
+     * Obtém penalizações iguais para todas as mudanças de tipo de transporte.
+     *
+     * @param penalty penalização de cada transbordo.
+     * @return as penalizações correspondentes.
+     * @throws IllegalArgumentException se a penalização for negativa ou não for um número finito.
+     */
+    public static TransferPenalties uniform(double penalty) {
+        validate(penalty);
+        double[] penalties = new double[MODES * MODES];
+        for (int from = 0; from < MODES; from++) {
+            for (int to = 0; to < MODES; to++) {
+                penalties[from * MODES + to] = from == to ? 0.0 : penalty;
+            }
+        }
+        return new TransferPenalties(penalties);
+    }
+
+    /**
+     * Obtém uma cópia destas penalizações com outro valor para um par de tipos de transporte.
+     *
+     * @param from    tipo de transporte do troço anterior.
+     * @param to      tipo de transporte do troço seguinte.
+     * @param penalty penalização do transbordo.
+     * @return as novas penalizações.
+     * @throws IllegalArgumentException se a penalização for negativa ou não for um número finito.
+     */
+    public TransferPenalties with(TransportType from, TransportType to, double penalty) {
+        validate(penalty);
+        double[] copy = penalties.clone();
+        copy[from.ordinal() * MODES + to.ordinal()] = penalty;
+        return new TransferPenalties(copy);
+    }
+
+    /**
+     * Retorna a penalização de um transbordo.
+     *
+     * @param from tipo de transporte do troço anterior.
+     * @param to   tipo de transporte do troço seguinte.
+     * @return a penalização.
+     */
+    public double get(TransportType from, TransportType to) {
+        return penalties[from.ordinal() * MODES + to.ordinal()];
+    }
+
+    /**
+     * Retorna a penalização de um transbordo a partir dos ordinais dos tipos de transporte, sem criar objetos.
+     *
+     * @param from ordinal do tipo de transporte do troço anterior.
+     * @param to   ordinal do tipo de transporte do troço seguinte.
+     * @return a penalização.
+     */
+    public double get(int from, int to) {
+        return penalties[from * MODES + to];
+    }
+
+    private static void validate(double penalty) {
+        if (!(penalty >= 0) || penalty == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("Transfer penalties must be finite and non-negative.");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TransferPenalties && Arrays.equals(((TransferPenalties) o).penalties, penalties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(penalties);
+    }
+}
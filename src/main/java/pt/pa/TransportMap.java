@@ -2,33 +2,51 @@ package pt.pa;
 
 import com.brunomnsilva.smartgraph.graph.Edge;
 import com.brunomnsilva.smartgraph.graph.Graph;
-import com.brunomnsilva.smartgraph.graph.GraphEdgeList;
 import com.brunomnsilva.smartgraph.graph.Vertex;
 import com.brunomnsilva.smartgraph.graphview.SmartGraphPanel;
+import pt.pa.graph.GraphAdjacencyList;
 import pt.pa.patterns.memento.Memento;
 import pt.pa.patterns.memento.Originator;
 import pt.pa.patterns.strategy.*;
+import pt.pa.routing.*;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
 /**
  * A classe {@code TransportMap} representa um mapa de transporte baseado num grafo que modela Stops
  * ({@link Stop}) e as suas Routes ({@link Route}). Esta classe fornece métodos para manipulação, cálculo e análise
  * de Stops e Routes.
  *
- * A estrutura principal é um grafo do tipo {@code GraphEdgeList} que armazena os Stops como vértices
+ * A estrutura principal é um grafo do tipo {@link GraphAdjacencyList} que armazena os Stops como vértices
  * e as conexões entre eles como arestas, onde cada aresta pode conter uma lista de Routes disponíveis.
+ * Os cálculos de caminhos e de análise são feitos sobre uma fotografia compacta desse grafo ({@link RoutingGraph}),
+ * reconstruída sempre que a topologia muda.
  *
  * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
  */
 public class TransportMap implements Originator {
+    private static final ShortestPathEngine DIJKSTRA = new DijkstraEngine();
+    private static final ShortestPathEngine SHIFTED_DIJKSTRA = new ShiftedDijkstraEngine();
+
     private Graph<Stop, List<Route>> graph;
+    private RoutingGraph routingGraph;
+    private ShortestPathEngine shortestPathEngine;
+    private final StopIndex stopIndex;
+    private final ConnectionIndex connectionIndex;
+    private final PathCache pathCache;
+    private long version;
 
     /**
      * Construtor de um novo mapa de transportes inicializando o grafo e carregando as Stops e Routes disponíveis.
      */
     public TransportMap() {
-        this.graph = new GraphEdgeList<>();
+        this.graph = new GraphAdjacencyList<>();
+        this.stopIndex = new StopIndex();
+        this.connectionIndex = new ConnectionIndex();
+        this.pathCache = new PathCache(PathCache.DEFAULT_CAPACITY);
         loadToGraph();
     }
 
@@ -41,20 +59,151 @@ public class TransportMap implements Originator {
         return this.graph;
     }
 
+    /**
+     * Obtém a fotografia compacta ({@link RoutingGraph}) do grafo, construindo-a caso a topologia
+     * tenha sido alterada desde a última construção.
+     *
+     * @return fotografia do mapa de transporte usada nos cálculos de caminhos.
+     */
+    public RoutingGraph getRoutingGraph() {
+        if (routingGraph == null) {
+            routingGraph = RoutingGraph.of(graph);
+        }
+        return routingGraph;
+    }
+
+    /**
+     * Define o algoritmo usado por {@link #leastCostBetweenStops}, por exemplo um {@link AStarEngine}.
+     *
+     * @param engine o motor de pesquisa, ou {@code null} para escolher automaticamente em função dos pesos.
+     */
+    public void setShortestPathEngine(ShortestPathEngine engine) {
+        this.shortestPathEngine = engine;
+    }
+
+    /**
+     * Obtém o algoritmo definido para {@link #leastCostBetweenStops}.
+     *
+     * @return o motor de pesquisa, ou {@code null} se for escolhido automaticamente.
+     */
+    public ShortestPathEngine getShortestPathEngine() {
+        return shortestPathEngine;
+    }
+
+    /**
+     * Retorna a versão do mapa, que aumenta sempre que uma Stop ou Route é inserida ou removida, uma Route é
+     * desativada ou muda de duração através do mapa, ou um estado anterior é reposto ({@link #setMemento}).
+     *
+     * @return a versão atual.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Retorna a cache dos Paths de menor custo, por exemplo para consultar os seus contadores.
+     *
+     * @return a cache de Paths.
+     */
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Grava em disco a hierarquia de contração da fotografia atual, construindo-a se necessário.
+     *
+     * @param file o ficheiro de destino.
+     * @throws IOException se ocorrer um erro de escrita.
+     */
+    public void saveContractionHierarchy(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            getRoutingGraph().contractionHierarchy().write(out);
+        }
+    }
+
+    /**
+     * Lê do disco uma hierarquia de contração e associa-a à fotografia atual, evitando construí-la no arranque.
+     *
+     * @param file o ficheiro de origem.
+     * @throws IOException se ocorrer um erro de leitura ou a hierarquia não corresponder ao mapa atual.
+     */
+    public void loadContractionHierarchy(File file) throws IOException {
+        RoutingGraph routing = getRoutingGraph();
+        try (InputStream in = new FileInputStream(file)) {
+            routing.setContractionHierarchy(ContractionHierarchy.read(in, routing));
+        }
+    }
+
+    /**
+     * Grava em disco os rótulos de hubs de uma estratégia e máscara de transportes, construindo-os se necessário.
+     *
+     * @param file       o ficheiro de destino.
+     * @param strategy   a estratégia de cálculo de peso.
+     * @param transports máscara dos tipos de transporte.
+     * @throws IOException           se ocorrer um erro de escrita.
+     * @throws IllegalStateException se alguma Route tiver peso negativo para os transportes indicados.
+     */
+    public void saveHubLabels(File file, WeightCalculationStrategy strategy, TransportMask transports) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            getRoutingGraph().weightTable(strategy).hubLabels(transports.bits()).write(out);
+        }
+    }
+
+    /**
+     * Lê do disco os rótulos de hubs de uma estratégia e máscara de transportes e associa-os à fotografia atual,
+     * evitando construí-los no arranque.
+     *
+     * @param file       o ficheiro de origem.
+     * @param strategy   a estratégia de cálculo de peso.
+     * @param transports máscara dos tipos de transporte.
+     * @throws IOException se ocorrer um erro de leitura ou os rótulos não corresponderem ao mapa atual.
+     */
+    public void loadHubLabels(File file, WeightCalculationStrategy strategy, TransportMask transports) throws IOException {
+        RoutingGraph routing = getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(strategy);
+        try (InputStream in = new FileInputStream(file)) {
+            weights.setHubLabels(HubLabels.read(in, routing, weights, transports.bits()));
+        }
+    }
+
+    /**
+     * Descarta a fotografia compacta do grafo, obrigando a que seja reconstruída no próximo cálculo, e aumenta a
+     * versão do mapa.
+     */
+    private void invalidateRoutingGraph() {
+        version++;
+        if (routingGraph != null) {
+            routingGraph.release();
+            routingGraph = null;
+        }
+    }
+
     /**
      * Carrega as Stops ({@link Stop}) e Routes genéricas ({@link GenericRoute}) para o grafo.
+     * <p>
+     * Se o ficheiro tiver várias linhas para o mesmo par de Stops, as suas Routes são juntas numa única aresta, como
+     * em {@link #addRoute}, para que o índice de ligações ({@link ConnectionIndex}) aponte sempre para a única aresta
+     * entre as Stops.
      */
     public void loadToGraph() {
         List<Stop> stopList = DataImporter.loadStops();
 
         for (Stop s : stopList) {
-            graph.insertVertex(s);
+            stopIndex.add(graph.insertVertex(s));
         }
 
         List<GenericRoute> genericRouteList = DataImporter.loadRoutes();
         for (GenericRoute gr : genericRouteList) {
-            graph.insertEdge(getStopByDesignation(gr.getStopStart(), stopList), getStopByDesignation(gr.getStopEnd(), stopList), gr.getRoutes());
+            Vertex<Stop> start = stopIndex.getByCode(gr.getStopStart());
+            Vertex<Stop> end = stopIndex.getByCode(gr.getStopEnd());
+            Edge<List<Route>, Stop> edge = getConnection(start, end);
+            if (edge != null) {
+                edge.element().addAll(gr.getRoutes());
+            } else {
+                connectionIndex.add(graph.insertEdge(start, end, gr.getRoutes()));
+            }
         }
+        invalidateRoutingGraph();
     }
 
     /**
@@ -63,14 +212,15 @@ public class TransportMap implements Originator {
      * @param smartGraph Painel gráfico ({@link SmartGraphPanel}) onde os vértices serão posicionados.
      */
     public void positionVertex(SmartGraphPanel<Stop, List<Route>> smartGraph) {
-        DataImporter.loadCordinates(smartGraph, this.graph);
+        DataImporter.loadCordinates(smartGraph, this.stopIndex);
     }
 
     /**
      * Adiciona uma nova Stop.
      * <p>
      * Este método permite criar e adicionar uma nova Stop (vértice) ao grafo que representa a rede de transportes.
-     * Antes de adicionar, valida os valores fornecidos para garantir que o código, nome, latitude e longitude são válidos.
+     * Antes de adicionar, valida os valores fornecidos para garantir que o código, nome, latitude e longitude são válidos
+     * e que o código ainda não está a ser usado por outra Stop.
      * Se os valores forem inválidos, é lançada uma exceção com uma mensagem de erro.
      *
      * @param stopCode  o código único da Stop (não pode ser vazio).
@@ -89,7 +239,14 @@ public class TransportMap implements Originator {
             throw new IllegalArgumentException("Latitude and Longitude must be valid numbers.");
         }
 
-        return graph.insertVertex(new Stop(stopCode, stopName, Double.parseDouble(latitude), Double.parseDouble(longitude)));
+        if (stopIndex.containsCode(stopCode)) {
+            throw new IllegalArgumentException("There's already a Stop with code " + stopCode + ".");
+        }
+
+        Vertex<Stop> vertex = graph.insertVertex(new Stop(stopCode, stopName, Double.parseDouble(latitude), Double.parseDouble(longitude)));
+        stopIndex.add(vertex);
+        invalidateRoutingGraph();
+        return vertex;
     }
 
     /**
@@ -98,7 +255,8 @@ public class TransportMap implements Originator {
      * Este método permite criar ou atualizar uma Route entre os Stops especificadas (vértices `v1` e `v2`),
      * adicionando um novo meio de transporte com os parâmetros fornecidos.
      * Se os valores de distância, duração ou custo não forem numéricos, é lançada uma exceção com mensagem de erro.
-     * Caso a Route seja adicionada com sucesso, será inserida no grafo.
+     * Caso já exista uma aresta entre as Stops, a Route é acrescentada à sua lista; caso contrário, é inserida
+     * uma nova aresta no grafo.
      *
      * @param v1       vértice de origem representando a Stop inicial.
      * @param v2       vértice de destino representando a Stop final.
@@ -114,10 +272,20 @@ public class TransportMap implements Originator {
             throw new IllegalArgumentException("Distance, Duration and Cost must be valid numbers.");
         }
 
-        List<Route> list = getOrCreateRouteList(v1, v2);
         TransportType transportType = TransportType.valueOf(type.toUpperCase());
-        list.add(new Route(transportType, Double.parseDouble(distance), Integer.parseInt(duration), Double.parseDouble(cost)));
-        return graph.insertEdge(v1, v2, list);
+        Route route = new Route(transportType, Double.parseDouble(distance), Integer.parseInt(duration), Double.parseDouble(cost));
+
+        Edge<List<Route>, Stop> edge = getConnection(v1, v2);
+        if (edge != null) {
+            edge.element().add(route);
+        } else {
+            List<Route> list = new ArrayList<>();
+            list.add(route);
+            edge = graph.insertEdge(v1, v2, list);
+            connectionIndex.add(edge);
+        }
+        invalidateRoutingGraph();
+        return edge;
     }
 
     /**
@@ -129,6 +297,9 @@ public class TransportMap implements Originator {
      */
     public void removeStop(Vertex<Stop> vertex) {
         graph.removeVertex(vertex);
+        stopIndex.remove(vertex);
+        connectionIndex.remove(vertex);
+        invalidateRoutingGraph();
     }
 
     /**
@@ -140,61 +311,52 @@ public class TransportMap implements Originator {
      */
     public void removeRoute(Edge<List<Route>, Stop> edge) {
         graph.removeEdge(edge);
+        connectionIndex.remove(edge);
+        invalidateRoutingGraph();
     }
 
     /**
-     * Encontra uma Stop ({@link Stop}) pelo código de designação
+     * Obtém o vértice de uma Stop pelo seu código, em tempo constante.
      *
-     * @param code     Código da Stop.
-     * @param stopList Lista de Stops disponíveis.
-     * @return uma instância de ({@link Stop}) correspondente ao código, ou null se não for encontrada.
+     * @param stopCode código da Stop.
+     * @return vértice correspondente, ou {@code null} se não for encontrado.
      */
-    private static Stop getStopByDesignation(String code, List<Stop> stopList) {
-        for (Stop s : stopList) {
-            if (s.getStopCode().equals(code)) {
-                return s;
-            }
-        }
-        return null;
+    public Vertex<Stop> getVertexByCode(String stopCode) {
+        return stopIndex.getByCode(stopCode);
     }
 
     /**
-     * Obtém a lista de Routes associadas à conexão entre duas Stops.
-     * <p>
-     * Este método verifica todas as arestas incidentes no vértice de origem (`stopStart`)
-     * e retorna a lista de Routes associadas à aresta que conecta o vértice de origem
-     * ao vértice de destino (`stopEnd`). Se nenhuma conexão for encontrada, retorna {@code null}.
-     *
-     * @param stopStart vértice representando a Stop de origem.
-     * @param stopEnd   vértice representando a Stop de destino.
-     * @return lista de Routes associadas à conexão entre as Stops, ou {@code null} se não houver conexão.
-     */
-    private List<Route> getEdgeByConnection(Vertex<Stop> stopStart, Vertex<Stop> stopEnd) {
-        for (Edge<List<Route>, Stop> edge : graph.incidentEdges(stopStart)) {
-            if (graph.opposite(stopStart, edge).equals(stopEnd)) {
-                return edge.element();
-            }
-        }
-        return null;
+     * Obtém o vértice de uma Stop pelo seu nome, em tempo constante.
+     *
+     * @param stopName nome da Stop.
+     * @return vértice correspondente, ou {@code null} se não for encontrado.
+     */
+    public Vertex<Stop> getVertexByName(String stopName) {
+        return stopIndex.getByName(stopName);
+    }
+
+    /**
+     * Procura, por ordem alfabética, as Stops cujo nome começa pelo prefixo fornecido.
+     *
+     * @param prefix prefixo do nome (sem distinção entre maiúsculas e minúsculas).
+     * @param limit  número máximo de resultados.
+     * @return lista de Stops encontradas.
+     */
+    public List<Stop> findStopsByPrefix(String prefix, int limit) {
+        return stopIndex.findByPrefix(prefix, limit);
     }
 
     /**
-     * Obtém a lista de Routes entre dois Stops ou cria uma nova lista vazia.
+     * Obtém a aresta que liga duas Stops, em tempo constante.
      * <p>
-     * Este método verifica se existe uma lista de Routes entre as Stops especificadas
-     * (representadas pelos vértices fornecidos). Se nenhuma lista de Routes for encontrada,
-     * retorna uma nova lista vazia.
+     * A pesquisa é feita no índice de ligações ({@link ConnectionIndex}) e não depende da ordem das Stops.
      *
-     * @param stopStart vértice que representa a Stop de origem.
-     * @param stopEnd   vértice que representa a Stop de destino.
-     * @return a lista de Routes entre as Stops, ou uma nova lista vazia se não existir nenhuma.
+     * @param stopA vértice representando uma das Stops.
+     * @param stopB vértice representando a outra Stop.
+     * @return aresta entre as Stops, ou {@code null} se não houver conexão.
      */
-    private List<Route> getOrCreateRouteList(Vertex<Stop> stopStart, Vertex<Stop> stopEnd) {
-        List<Route> routeList = getEdgeByConnection(stopStart, stopEnd);
-        if (routeList == null) {
-            return new ArrayList<>();
-        }
-        return routeList;
+    public Edge<List<Route>, Stop> getConnection(Vertex<Stop> stopA, Vertex<Stop> stopB) {
+        return connectionIndex.get(stopA, stopB);
     }
 
     /**
@@ -212,11 +374,11 @@ public class TransportMap implements Originator {
      * @return número de Stops sem conexões.
      */
     public int numberOfIsolatedStops() {
-        List<Vertex<Stop>> vertexList = (List<Vertex<Stop>>) graph.vertices();
+        RoutingGraph routing = getRoutingGraph();
         int isolatedCounter = 0;
 
-        for (Vertex<Stop> v : vertexList) {
-            if (graph.incidentEdges(v).isEmpty()) {
+        for (int v = 0; v < routing.numStops(); v++) {
+            if (routing.degree(v) == 0) {
                 isolatedCounter++;
             }
         }
@@ -286,11 +448,11 @@ public class TransportMap implements Originator {
      * @return mapa ordenado de Stops e os seus valores de centralidade.
      */
     public LinkedHashMap<Vertex<Stop>, Integer> centrality() {
-        HashMap<Vertex<Stop>, Integer> map = new HashMap<>();
-        List<Vertex<Stop>> vertexList = (List<Vertex<Stop>>) graph.vertices();
+        LinkedHashMap<Vertex<Stop>, Integer> map = new LinkedHashMap<>();
+        RoutingGraph routing = getRoutingGraph();
 
-        for (Vertex<Stop> v : vertexList) {
-            map.put(v, graph.incidentEdges(v).size());
+        for (int v = 0; v < routing.numStops(); v++) {
+            map.put(routing.vertex(v), routing.degree(v));
         }
 
         // Ordena o mapa por valores decrescentes
@@ -334,33 +496,42 @@ public class TransportMap implements Originator {
     }
 
     private List<Stop> calculateStopsAtDistance(Vertex<Stop> start, int N) {
-        Set<Stop> result = new LinkedHashSet<>();
-        Queue<Vertex<Stop>> queue = new LinkedList<>();
-        Map<Vertex<Stop>, Integer> distances = new HashMap<>();
+        RoutingGraph routing = getRoutingGraph();
+        int origin = routing.indexOf(start);
+        if (origin < 0) {
+            throw new IllegalArgumentException("Stop does not belong to this map.");
+        }
 
-        queue.add(start);
-        distances.put(start, 0);
+        List<Stop> result = new ArrayList<>();
+        int[] distances = new int[routing.numStops()];
+        int[] queue = new int[routing.numStops()];
+        Arrays.fill(distances, -1);
 
-        while (!queue.isEmpty()) {
-            Vertex<Stop> current = queue.poll();
-            int currentDistance = distances.get(current);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = origin;
+        distances[origin] = 0;
+
+        while (head < tail) {
+            int current = queue[head++];
+            int currentDistance = distances[current];
 
             if (currentDistance < N) {
-                for (Edge<List<Route>, Stop> edge : graph.incidentEdges(current)) {
-                    Vertex<Stop> neighbor = graph.opposite(current, edge);
-                    if (!distances.containsKey(neighbor)) {
+                for (int arc = routing.firstArc(current); arc < routing.endArc(current); arc++) {
+                    int neighbor = routing.arcTarget(arc);
+                    if (distances[neighbor] < 0) {
                         int neighborDistance = currentDistance + 1;
-                        distances.put(neighbor, neighborDistance);
-                        queue.add(neighbor);
+                        distances[neighbor] = neighborDistance;
+                        queue[tail++] = neighbor;
                         if (neighborDistance == N) {
-                            result.add(neighbor.element());
+                            result.add(routing.vertex(neighbor).element());
                         }
                     }
                 }
             }
         }
 
-        return new ArrayList<>(result);
+        return result;
     }
 
     /**
@@ -373,186 +544,547 @@ public class TransportMap implements Originator {
      * @return Path de menor custo como um objeto {@link Path}.
      */
     public Path leastCostBetweenStops(String origin, String destination, WeightCalculationStrategy strategy, List<TransportType> transports) {
-        Map<Vertex<Stop>, Double> costs = new HashMap<>();
-        Map<Vertex<Stop>, Vertex<Stop>> predecessors = new HashMap<>();
-        List<Vertex<Stop>> vertices = new ArrayList<>(graph.vertices());
+        return leastCostBetweenStops(origin, destination, strategy, TransportMask.of(transports));
+    }
+
+    /**
+     * Encontra o Path de menor custo entre duas Stops com base num critério, usando apenas os tipos de
+     * transporte da máscara fornecida.
+     * <p>
+     * Sem motor definido e sem pesos negativos, a primeira consulta de uma origem usa o {@link DijkstraEngine}, que
+     * para ao estabelecer o destino. Quando a mesma origem volta a ser consultada, o Path é lido da árvore de caminhos
+     * mais curtos da origem ({@link ShortestPathTree}), construída nessa altura e reparada quando uma Route é
+     * desativada ou a sua duração muda, em vez de ser calculada de novo.
+     * <p>
+     * Sem motor definido, os Paths calculados ficam na cache do mapa ({@link #getPathCache()}) até à próxima
+     * alteração do mapa, pelo que repetir uma consulta não repete o cálculo.
+     * <p>
+     * Se alguma Route dos transportes escolhidos tiver peso negativo (sustentabilidade a pé ou de bicicleta), o
+     * menor custo não está definido e o Path devolvido é uma aproximação ({@link ShiftedDijkstraEngine}).
+     *
+     * @param origin      Stop de origem.
+     * @param destination Stop de destino.
+     * @param strategy    estratégia de otimização ("distance", "duration", "sustainability").
+     * @param transports  máscara dos tipos de transporte disponíveis.
+     * @return Path de menor custo como um objeto {@link Path}.
+     */
+    public Path leastCostBetweenStops(String origin, String destination, WeightCalculationStrategy strategy, TransportMask transports) {
+        return leastCostBetweenStops(origin, destination, strategy, transports, null);
+    }
+
+    /**
+     * Encontra o Path de menor custo entre duas Stops com um motor escolhido apenas para esta consulta, por exemplo o
+     * {@link DeltaSteppingEngine} para consultas em redes grandes, sem alterar o motor do mapa.
+     *
+     * @param origin      Stop de origem.
+     * @param destination Stop de destino.
+     * @param strategy    estratégia de otimização ("distance", "duration", "sustainability").
+     * @param transports  máscara dos tipos de transporte disponíveis.
+     * @param engine      o motor a usar, ou {@code null} para o comportamento de
+     *                    {@link #leastCostBetweenStops(String, String, WeightCalculationStrategy, TransportMask)}.
+     * @return Path de menor custo como um objeto {@link Path}.
+     */
+    public Path leastCostBetweenStops(String origin, String destination, WeightCalculationStrategy strategy,
+                                      TransportMask transports, ShortestPathEngine engine) {
+        ShortestPathEngine chosen = engine != null ? engine : shortestPathEngine;
+        if (chosen == null) {
+            Path cached = pathCache.get(version, origin, destination, strategy, transports);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        RoutingGraph routing = getRoutingGraph();
 
-        Vertex<Stop> originVertex = getVertexByDesignation(origin, vertices);
-        Vertex<Stop> destinationVertex = getVertexByDesignation(destination, vertices);
+        int originStop = routing.indexOf(getVertexByName(origin));
+        int destinationStop = routing.indexOf(getVertexByName(destination));
 
-        if (originVertex == null || destinationVertex == null) {
+        if (originStop < 0 || destinationStop < 0) {
             throw new IllegalArgumentException("Invalid origin or destination stop.");
         }
 
-        for (Vertex<Stop> vertex : vertices) {
-            costs.put(vertex, Double.POSITIVE_INFINITY);
-            predecessors.put(vertex, null);
+        EdgeWeightTable edgeWeights = routing.weightTable(strategy);
+        int mask = transports.bits();
+        SearchResult result;
+        if (chosen != null) {
+            result = chosen.findPath(routing, edgeWeights, mask, originStop, destinationStop);
+        } else if (edgeWeights.isNonNegative(mask)) {
+            ShortestPathTree tree = edgeWeights.repeatedOriginTree(mask, originStop);
+            result = tree != null ? tree.findPath(destinationStop)
+                    : DIJKSTRA.findPath(routing, edgeWeights, mask, originStop, destinationStop);
+        } else {
+            result = SHIFTED_DIJKSTRA.findPath(routing, edgeWeights, mask, originStop, destinationStop);
         }
-        costs.put(originVertex, 0.0);
 
-        for (int i = 0; i < vertices.size() - 1; i++) {
-            for (Vertex<Stop> vertex : vertices) {
-                for (Edge<List<Route>, Stop> edge : graph.incidentEdges(vertex)) {
-                    relaxEdge(vertex, edge, costs, predecessors, transports, strategy);
-                }
-            }
+        Path path = makePath(result, routing, edgeWeights, mask);
+        if (chosen == null) {
+            pathCache.put(version, origin, destination, strategy, transports, path);
         }
+        return path;
+    }
 
-        for (Vertex<Stop> vertex : vertices) {
-            for (Edge<List<Route>, Stop> edge : graph.incidentEdges(vertex)) {
-                if (hasNegativeCycle(vertex, edge, costs, transports, strategy)) {
-                    throw new IllegalStateException("The graph contains a negative weight cycle.");
-                }
-            }
+    /**
+     * Encontra até {@code k} Paths alternativos sem ciclos entre duas Stops, por ordem crescente de custo, através
+     * do algoritmo de Yen ({@link KShortestPaths}).
+     *
+     * @param origin      Stop de origem.
+     * @param destination Stop de destino.
+     * @param strategy    estratégia de otimização ("distance", "duration", "sustainability").
+     * @param transports  máscara dos tipos de transporte disponíveis.
+     * @param k           número máximo de Paths.
+     * @return os Paths encontrados, o primeiro dos quais é o de menor custo.
+     * @throws IllegalArgumentException se alguma das Stops não existir ou {@code k} não for positivo.
+     * @throws IllegalStateException    se não houver Path entre a origem e o destino ou se alguma Route tiver peso
+     *                                  negativo para os transportes indicados.
+     */
+    public List<Path> kLeastCostPaths(String origin, String destination, WeightCalculationStrategy strategy, TransportMask transports, int k) {
+        RoutingGraph routing = getRoutingGraph();
+
+        int originStop = routing.indexOf(getVertexByName(origin));
+        int destinationStop = routing.indexOf(getVertexByName(destination));
+
+        if (originStop < 0 || destinationStop < 0) {
+            throw new IllegalArgumentException("Invalid origin or destination stop.");
         }
 
-        List<Vertex<Stop>> path = makeStopPath(destinationVertex, originVertex, predecessors);
-        double totalCost = calculateTotalCost(path, transports, strategy);
+        EdgeWeightTable edgeWeights = routing.weightTable(strategy);
+        int mask = transports.bits();
+        List<SearchResult> results = KShortestPaths.find(routing, edgeWeights, mask, originStop, destinationStop, k);
+        if (results.isEmpty()) {
+            throw new IllegalStateException("There is no possible path between the given stops.");
+        }
 
-        return new Path(path, totalCost);
+        List<Path> paths = new ArrayList<>(results.size());
+        for (SearchResult result : results) {
+            paths.add(makePath(result, routing, edgeWeights, mask));
+        }
+        return paths;
     }
 
     /**
-     * Relaxa uma aresta no algoritmo de Bellman-Ford, atualizando custos e predecessores.
+     * Calcula, numa única pesquisa, a frente de Pareto dos Paths entre duas Stops segundo a distância, a duração e a
+     * sustentabilidade ({@link MultiCriteriaSearch}): nenhum dos Paths devolvidos é pior do que outro nos três
+     * critérios.
+     * <p>
+     * Os Paths são devolvidos por ordem crescente de distância, que é também o seu custo total; os totais de cada
+     * critério estão disponíveis em {@link Path#getTotalDuration()} e {@link Path#getTotalSustainability()}.
      *
-     * @param u            o vértice de origem.
-     * @param edge         a aresta a ser relaxada.
-     * @param costs        o mapa de custos acumulados.
-     * @param predecessors o mapa de predecessores no Path.
-     * @param transports   a lista de tipos de transporte permitidos.
-     * @param strategy     a estratégia de cálculo de peso.
+     * @param origin      Stop de origem.
+     * @param destination Stop de destino.
+     * @param transports  máscara dos tipos de transporte disponíveis.
+     * @param maxFront    número máximo de Paths da frente.
+     * @return os Paths da frente de Pareto.
+     * @throws IllegalArgumentException se alguma das Stops não existir ou {@code maxFront} não for positivo.
+     * @throws IllegalStateException    se não houver Path entre a origem e o destino.
      */
-    private void relaxEdge(
-            Vertex<Stop> u,
-            Edge<List<Route>, Stop> edge,
-            Map<Vertex<Stop>, Double> costs,
-            Map<Vertex<Stop>, Vertex<Stop>> predecessors,
-            List<TransportType> transports,
-            WeightCalculationStrategy strategy
-    ) {
-        Vertex<Stop> v = graph.opposite(u, edge);
-        double minWeight = Double.POSITIVE_INFINITY;
+    public List<Path> paretoPaths(String origin, String destination, TransportMask transports, int maxFront) {
+        RoutingGraph routing = getRoutingGraph();
 
-        for (Route route : edge.element()) {
-            if (!route.getState() || !transports.contains(route.getTransportType())) {
-                continue;
-            }
+        int originStop = routing.indexOf(getVertexByName(origin));
+        int destinationStop = routing.indexOf(getVertexByName(destination));
 
-            double weight = strategy.calculateWeight(route);
-            if (weight < minWeight) {
-                minWeight = weight;
-            }
+        if (originStop < 0 || destinationStop < 0) {
+            throw new IllegalArgumentException("Invalid origin or destination stop.");
         }
 
-        if (minWeight == Double.POSITIVE_INFINITY) {
-            return;
+        List<MultiCriteriaPath> front = MultiCriteriaSearch.paretoFront(routing, transports.bits(), originStop, destinationStop, maxFront);
+        if (front.isEmpty()) {
+            throw new IllegalStateException("There is no possible path between the given stops.");
         }
 
-        double newCost = costs.get(u) + minWeight;
-        if (newCost < costs.get(v)) {
-            costs.put(v, newCost);
-            predecessors.put(v, u);
+        EdgeWeightTable distances = routing.weightTable(new DistanceStrategy());
+        List<Path> paths = new ArrayList<>(front.size());
+        for (MultiCriteriaPath criteriaPath : front) {
+            paths.add(makePath(criteriaPath, routing, distances, criteriaPath.distance()));
         }
+        return paths;
     }
 
     /**
-     * Verifica a existência de ciclos de peso negativo no grafo.
+     * Calcula o Path de menor custo entre duas Stops cujo total segundo outra estratégia não ultrapassa um orçamento
+     * ({@link ResourceConstrainedSearch}), por exemplo o Path mais rápido com custo de sustentabilidade limitado ou
+     * o Path mais curto que não demora mais de um dado número de minutos.
+     * <p>
+     * O custo total do Path é o da estratégia minimizada; os totais de cada critério estão disponíveis em
+     * {@link Path#getTotalDistance()}, {@link Path#getTotalDuration()} e {@link Path#getTotalSustainability()}.
      *
-     * @param u          vértice de origem.
-     * @param edge       aresta a ser verificada.
-     * @param costs      mapa de custos acumulados.
-     * @param transports lista de tipos de transporte permitidos.
-     * @param strategy   estratégia de cálculo de peso.
-     * @return {@code true} se houver um ciclo de peso negativo; caso contrário, {@code false}.
-     */
-    private boolean hasNegativeCycle(
-            Vertex<Stop> u,
-            Edge<List<Route>, Stop> edge,
-            Map<Vertex<Stop>, Double> costs,
-            List<TransportType> transports,
-            WeightCalculationStrategy strategy
-    ) {
-        Vertex<Stop> v = graph.opposite(u, edge);
-
-        for (Route route : edge.element()) {
-            if (!transports.contains(route.getTransportType()) || !route.getState()) {
-                continue;
-            }
+     * @param origin      Stop de origem.
+     * @param destination Stop de destino.
+     * @param strategy    estratégia do critério a minimizar.
+     * @param constraint  estratégia do critério limitado.
+     * @param budget      valor máximo do total segundo {@code constraint}.
+     * @param transports  máscara dos tipos de transporte disponíveis.
+     * @return o Path de menor custo dentro do orçamento.
+     * @throws IllegalArgumentException se alguma das Stops não existir ou o orçamento for negativo.
+     * @throws IllegalStateException    se alguma das estratégias tiver pesos negativos para os transportes escolhidos
+     *                                  ou se nenhum Path respeitar o orçamento.
+     */
+    public Path constrainedLeastCostPath(String origin, String destination, WeightCalculationStrategy strategy,
+                                         WeightCalculationStrategy constraint, double budget, TransportMask transports) {
+        RoutingGraph routing = getRoutingGraph();
 
-            double weight = strategy.calculateWeight(route);
+        int originStop = routing.indexOf(getVertexByName(origin));
+        int destinationStop = routing.indexOf(getVertexByName(destination));
 
-            if (costs.get(u) + weight < costs.get(v)) {
-                return true;
-            }
+        if (originStop < 0 || destinationStop < 0) {
+            throw new IllegalArgumentException("Invalid origin or destination stop.");
+        }
+
+        EdgeWeightTable objective = routing.weightTable(strategy);
+        MultiCriteriaPath result = ResourceConstrainedSearch.find(routing, objective, routing.weightTable(constraint),
+                transports.bits(), originStop, destinationStop, budget);
+        if (result == null) {
+            throw new IllegalStateException("There is no possible path between the given stops within the budget.");
         }
-        return false;
+
+        double totalCost = 0.0;
+        for (int route : result.routes()) {
+            totalCost += objective.routeWeight(route);
+        }
+        return makePath(result, routing, objective, totalCost);
     }
 
     /**
-     * Constrói o Path de Stops do destino para a origem com base no mapa de predecessores.
+     * Calcula o Path de menor custo entre duas Stops quando cada mudança de tipo de transporte entre dois troços
+     * consecutivos soma uma penalização ao custo ({@link ModeTransferSearch}).
+     * <p>
+     * O custo total do Path inclui as penalizações dos transbordos feitos; os totais de cada critério são os das
+     * Routes escolhidas.
      *
-     * @param destinationVertex vértice de destino.
-     * @param originVertex      vértice de origem.
-     * @param predecessors      mapa de predecessores no Path.
-     * @return lista ordenada de vértices representando o Path.
-     * @throws IllegalStateException se não houver Path entre a origem e o destino.
+     * @param origin      Stop de origem.
+     * @param destination Stop de destino.
+     * @param strategy    estratégia de cálculo de peso.
+     * @param transports  máscara dos tipos de transporte disponíveis.
+     * @param penalties   penalizações de transbordo, na unidade da estratégia.
+     * @return o Path de menor custo com transbordos.
+     * @throws IllegalArgumentException se alguma das Stops não existir.
+     * @throws IllegalStateException    se não houver Path entre a origem e o destino ou se alguma Route tiver peso
+     *                                  negativo para os transportes indicados.
      */
-    private List<Vertex<Stop>> makeStopPath(Vertex<Stop> destinationVertex, Vertex<Stop> originVertex, Map<Vertex<Stop>, Vertex<Stop>> predecessors) {
-        List<Vertex<Stop>> path = new ArrayList<>();
-        Vertex<Stop> step = destinationVertex;
+    public Path leastCostWithTransfers(String origin, String destination, WeightCalculationStrategy strategy,
+                                       TransportMask transports, TransferPenalties penalties) {
+        RoutingGraph routing = getRoutingGraph();
+
+        int originStop = routing.indexOf(getVertexByName(origin));
+        int destinationStop = routing.indexOf(getVertexByName(destination));
 
-        while (step != null) {
-            path.add(0, step);
-            step = predecessors.get(step);
+        if (originStop < 0 || destinationStop < 0) {
+            throw new IllegalArgumentException("Invalid origin or destination stop.");
         }
 
-        if (path.isEmpty() || !path.get(0).equals(originVertex)) {
+        EdgeWeightTable edgeWeights = routing.weightTable(strategy);
+        MultiCriteriaPath result = ModeTransferSearch.find(routing, edgeWeights, transports.bits(), penalties, originStop, destinationStop);
+        if (result == null) {
             throw new IllegalStateException("There is no possible path between the given stops.");
         }
 
-        return path;
+        double totalCost = 0.0;
+        int[] routes = result.routes();
+        for (int i = 0; i < routes.length; i++) {
+            totalCost += edgeWeights.routeWeight(routes[i]);
+            if (i > 0) {
+                totalCost += penalties.get(routing.routeTransport(routes[i - 1]), routing.routeTransport(routes[i]));
+            }
+        }
+        return makePath(result, routing, edgeWeights, totalCost);
     }
 
     /**
-     * Calcula o custo total de um Path com base nos tipos de transporte e na estratégia de cálculo de peso.
+     * Entrega, por ordem crescente de custo, todas as Stops alcançáveis a partir de uma Stop de origem com custo não
+     * superior a um orçamento ({@link IsochroneSearch}), por exemplo todas as Stops a menos de 20 minutos de
+     * autocarro ou a pé. Cada Stop é entregue assim que a pesquisa a estabelece, para que possa ser apresentada
+     * antes de a pesquisa terminar; a pesquisa não percorre as Stops fora do orçamento.
      *
-     * @param path       a lista de vértices que compõem o Path.
-     * @param transports a lista de tipos de transporte permitidos.
-     * @param strategy   a estratégia de cálculo de peso.
-     * @return o custo total do Path.
-     * @throws IllegalStateException se não houver Routes válidas para o Path escolhido.
+     * @param origin     Stop de origem.
+     * @param strategy   estratégia de cálculo de peso.
+     * @param transports máscara dos tipos de transporte disponíveis.
+     * @param budget     custo máximo, na unidade da estratégia.
+     * @param consumer   quem recebe cada Stop e o seu custo, arredondado a duas casas decimais.
+     * @return número de Stops alcançáveis, incluindo a origem.
+     * @throws IllegalArgumentException se a Stop não existir ou o orçamento for negativo.
+     * @throws IllegalStateException    se a estratégia tiver pesos negativos para os transportes escolhidos.
      */
-    private double calculateTotalCost(List<Vertex<Stop>> path, List<TransportType> transports, WeightCalculationStrategy strategy) {
+    public int isochrone(String origin, WeightCalculationStrategy strategy, TransportMask transports, double budget,
+                         BiConsumer<Vertex<Stop>, Double> consumer) {
+        RoutingGraph routing = getRoutingGraph();
+
+        int originStop = routing.indexOf(getVertexByName(origin));
+        if (originStop < 0) {
+            throw new IllegalArgumentException("Invalid origin stop.");
+        }
+
+        return IsochroneSearch.search(routing, routing.weightTable(strategy), transports.bits(), originStop, budget,
+                (stop, cost) -> consumer.accept(routing.vertex(stop), round(cost)));
+    }
+
+    /**
+     * Calcula todas as Stops alcançáveis a partir de uma Stop de origem com custo não superior a um orçamento.
+     *
+     * @param origin     Stop de origem.
+     * @param strategy   estratégia de cálculo de peso.
+     * @param transports máscara dos tipos de transporte disponíveis.
+     * @param budget     custo máximo, na unidade da estratégia.
+     * @return as Stops alcançáveis e os seus custos, por ordem crescente de custo.
+     * @throws IllegalArgumentException se a Stop não existir ou o orçamento for negativo.
+     * @throws IllegalStateException    se a estratégia tiver pesos negativos para os transportes escolhidos.
+     */
+    public LinkedHashMap<Vertex<Stop>, Double> isochrone(String origin, WeightCalculationStrategy strategy,
+                                                         TransportMask transports, double budget) {
+        LinkedHashMap<Vertex<Stop>, Double> reachable = new LinkedHashMap<>();
+        isochrone(origin, strategy, transports, budget, reachable::put);
+        return reachable;
+    }
+
+    /**
+     * Calcula apenas o custo do Path de menor custo entre duas Stops, sem construir o Path.
+     * <p>
+     * Quando nenhuma Route dos transportes permitidos tem peso negativo, o custo é obtido pela interseção dos rótulos
+     * de hubs ({@link HubLabels}), construídos na primeira consulta de cada estratégia e máscara; caso contrário, é
+     * feita uma pesquisa com o motor escolhido por {@link #leastCostBetweenStops}.
+     *
+     * @param originCode      código da Stop de origem.
+     * @param destinationCode código da Stop de destino.
+     * @param strategy        a estratégia de cálculo de peso.
+     * @param transports      máscara dos tipos de transporte disponíveis.
+     * @return o custo mínimo, ou {@link Double#POSITIVE_INFINITY} se não houver Path entre as Stops.
+     * @throws IllegalArgumentException se algum dos códigos não corresponder a uma Stop.
+     */
+    public double leastCost(String originCode, String destinationCode, WeightCalculationStrategy strategy, TransportMask transports) {
+        RoutingGraph routing = getRoutingGraph();
+        Vertex<Stop> origin = getVertexByCode(originCode);
+        Vertex<Stop> destination = getVertexByCode(destinationCode);
+
+        if (origin == null || destination == null) {
+            throw new IllegalArgumentException("Invalid origin or destination stop.");
+        }
+
+        EdgeWeightTable edgeWeights = routing.weightTable(strategy);
+        int mask = transports.bits();
+        if (edgeWeights.isNonNegative(mask)) {
+            return edgeWeights.hubLabels(mask).cost(routing.indexOf(origin), routing.indexOf(destination));
+        }
+
+        SearchResult result = selectEngine(edgeWeights, mask).findPath(routing, edgeWeights, mask, routing.indexOf(origin), routing.indexOf(destination));
+        if (!result.isFound()) {
+            return Double.POSITIVE_INFINITY;
+        }
         double totalCost = 0.0;
+        for (int edge : result.edges()) {
+            totalCost += edgeWeights.weight(edge, mask);
+        }
+        return totalCost;
+    }
 
-        for (int i = 0; i < path.size() - 1; i++) {
-            Vertex<Stop> u = path.get(i);
-            Vertex<Stop> v = path.get(i + 1);
+    /**
+     * Calcula os custos mínimos entre várias Stops de origem e várias Stops de destino.
+     *
+     * @param originCodes      códigos das Stops de origem.
+     * @param destinationCodes códigos das Stops de destino.
+     * @param strategy         a estratégia de cálculo de peso.
+     * @param transports       tipos de transporte disponíveis.
+     * @return a matriz de custos.
+     * @throws IllegalArgumentException se algum dos códigos não corresponder a uma Stop.
+     */
+    public CostMatrix leastCostMatrix(List<String> originCodes, List<String> destinationCodes, WeightCalculationStrategy strategy, List<TransportType> transports) {
+        return leastCostMatrix(originCodes, destinationCodes, strategy, TransportMask.of(transports));
+    }
 
-            double edgeCost = calculateCostBetweenStops(u, v, transports, strategy);
-            totalCost += edgeCost;
+    /**
+     * Calcula os custos mínimos entre várias Stops de origem e várias Stops de destino, numa única chamada.
+     * <p>
+     * Os códigos são convertidos uma única vez e é feita uma pesquisa por origem, que termina quando todos os
+     * destinos forem alcançados; as origens são distribuídas pelos núcleos disponíveis
+     * ({@link ForkJoinPool#commonPool()}). As linhas e as colunas da matriz seguem a ordem das listas fornecidas.
+     *
+     * @param originCodes      códigos das Stops de origem.
+     * @param destinationCodes códigos das Stops de destino.
+     * @param strategy         a estratégia de cálculo de peso.
+     * @param transports       máscara dos tipos de transporte disponíveis.
+     * @return a matriz de custos, com {@link Double#POSITIVE_INFINITY} nos pares sem Path.
+     * @throws IllegalArgumentException se algum dos códigos não corresponder a uma Stop.
+     */
+    public CostMatrix leastCostMatrix(List<String> originCodes, List<String> destinationCodes, WeightCalculationStrategy strategy, TransportMask transports) {
+        RoutingGraph routing = getRoutingGraph();
+        int[] origins = stopIds(routing, originCodes);
+        int[] destinations = stopIds(routing, destinationCodes);
+        return CostMatrix.compute(routing, routing.weightTable(strategy), transports.bits(), origins, destinations, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converte códigos de Stops nos seus identificadores na fotografia do grafo.
+     *
+     * @param routing   a fotografia do grafo.
+     * @param stopCodes os códigos das Stops.
+     * @return os identificadores, pela mesma ordem.
+     * @throws IllegalArgumentException se algum dos códigos não corresponder a uma Stop.
+     */
+    private int[] stopIds(RoutingGraph routing, List<String> stopCodes) {
+        int[] ids = new int[stopCodes.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Vertex<Stop> vertex = getVertexByCode(stopCodes.get(i));
+            if (vertex == null) {
+                throw new IllegalArgumentException("There's no Stop with code " + stopCodes.get(i) + ".");
+            }
+            ids[i] = routing.indexOf(vertex);
         }
+        return ids;
+    }
 
-        if (strategy instanceof SustainabilityStrategy) {
-            totalCost -= SustainabilityStrategy.OFFSET * (path.size() - 1);
+    /**
+     * Obtém a matriz de custos mínimos e de próximos saltos entre todos os pares de Stops, para relatórios de
+     * planeamento. A matriz é calculada em paralelo na primeira chamada e reutilizada até uma Route ser alterada;
+     * os identificadores das Stops são os da fotografia atual ({@link RoutingGraph#indexOf(Vertex)}).
+     *
+     * @param strategy   a estratégia de cálculo de peso.
+     * @param transports máscara dos tipos de transporte disponíveis.
+     * @return a matriz de todos os pares.
+     * @throws IllegalStateException se a rede tiver demasiadas Stops para uma matriz em memória.
+     */
+    public AllPairsMatrix allPairsMatrix(WeightCalculationStrategy strategy, TransportMask transports) {
+        return getRoutingGraph().weightTable(strategy).allPairs(transports.bits());
+    }
+
+    /**
+     * Escolhe o algoritmo de caminho mais curto: o motor definido com {@link #setShortestPathEngine} ou, por omissão,
+     * Dijkstra quando nenhuma aresta tem peso negativo para os transportes permitidos e, caso contrário, Dijkstra
+     * sobre os pesos deslocados ({@link ShiftedWeights}), que dão uma aproximação.
+     *
+     * @param edgeWeights a tabela de menores pesos por aresta.
+     * @param mask        a máscara dos tipos de transporte permitidos.
+     * @return o motor de pesquisa a usar.
+     */
+    private ShortestPathEngine selectEngine(EdgeWeightTable edgeWeights, int mask) {
+        if (shortestPathEngine != null) {
+            return shortestPathEngine;
         }
+        return edgeWeights.isNonNegative(mask) ? DIJKSTRA : SHIFTED_DIJKSTRA;
+    }
 
-        return Math.round(totalCost * 100.0) / 100.0;
+    /**
+     * Converte o resultado de uma pesquisa num {@link Path}, registando de uma só vez, da origem para o destino, o
+     * troço de cada aresta percorrida com a Route de menor peso e somando os custos e os critérios dos troços.
+     *
+     * @param result      o resultado da pesquisa.
+     * @param routing     a fotografia do grafo.
+     * @param edgeWeights a tabela de menores pesos por aresta.
+     * @param mask        a máscara dos tipos de transporte permitidos.
+     * @return o Path com o custo total arredondado a duas casas decimais.
+     * @throws IllegalStateException se não houver Path entre a origem e o destino.
+     */
+    private Path makePath(SearchResult result, RoutingGraph routing, EdgeWeightTable edgeWeights, int mask) {
+        if (!result.isFound()) {
+            throw new IllegalStateException("There is no possible path between the given stops.");
+        }
+
+        int[] edges = result.edges();
+        int[] routes = new int[edges.length];
+        double[] costs = new double[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            routes[i] = edgeWeights.bestRoute(edges[i], mask);
+            costs[i] = edgeWeights.weight(edges[i], mask);
+        }
+        return makePath(result.stops(), edges, routes, costs, routing, Double.NaN, result.settled());
     }
 
+    /**
+     * Converte o resultado de uma pesquisa multicritério num {@link Path} com os totais de cada critério. O custo de
+     * cada troço é o peso da sua Route na tabela indicada; o custo total pode incluir custos que não pertencem a
+     * nenhum troço, como penalizações de transbordo.
+     *
+     * @param result      o resultado da pesquisa.
+     * @param routing     a fotografia do grafo onde a pesquisa foi feita.
+     * @param edgeWeights a tabela de pesos da estratégia de custo.
+     * @param totalCost   custo total do Path.
+     * @return o Path correspondente.
+     */
+    private Path makePath(MultiCriteriaPath result, RoutingGraph routing, EdgeWeightTable edgeWeights, double totalCost) {
+        int[] routes = result.routes();
+        double[] costs = new double[routes.length];
+        for (int i = 0; i < routes.length; i++) {
+            costs[i] = edgeWeights.routeWeight(routes[i]);
+        }
+        return makePath(result.stops(), result.edges(), routes, costs, routing, totalCost, 0);
+    }
+
+    /**
+     * Constrói um {@link Path} e os seus troços a partir das Stops, das arestas e das Routes escolhidas.
+     *
+     * @param stops     identificadores das Stops do Path.
+     * @param edges     identificadores das arestas percorridas.
+     * @param routes    identificador da Route escolhida em cada aresta.
+     * @param costs     custo de cada troço.
+     * @param routing   a fotografia do grafo.
+     * @param totalCost custo total do Path, ou {@link Double#NaN} para usar a soma dos custos dos troços.
+     * @param settled   número de Stops estabelecidas pela pesquisa.
+     * @return o Path com os totais arredondados a duas casas decimais.
+     */
+    private Path makePath(int[] stops, int[] edges, int[] routes, double[] costs, RoutingGraph routing,
+                          double totalCost, int settled) {
+        List<Vertex<Stop>> path = new ArrayList<>(stops.length);
+        for (int stop : stops) {
+            path.add(routing.vertex(stop));
+        }
+
+        List<PathLeg> legs = new ArrayList<>(edges.length);
+        double legCosts = 0.0;
+        double totalDistance = 0.0;
+        int totalDuration = 0;
+        double totalSustainability = 0.0;
+        for (int i = 0; i < edges.length; i++) {
+            int route = routes[i];
+            Route chosen = routing.route(route);
+            PathLeg leg = new PathLeg(path.get(i), path.get(i + 1), routing.edge(edges[i]), chosen,
+                    chosen.getTransportType(), costs[i], routing.routeDistance(route), routing.routeDuration(route),
+                    routing.routeSustainability(route));
+            legs.add(leg);
+            legCosts += leg.getCost();
+            totalDistance += leg.getDistance();
+            totalDuration += leg.getDuration();
+            totalSustainability += leg.getSustainability();
+        }
+
+        return new Path(path, legs, round(Double.isNaN(totalCost) ? legCosts : totalCost), settled, round(totalDistance),
+                totalDuration, round(totalSustainability));
+    }
+
+    /**
+     * Arredonda um custo a duas casas decimais.
+     *
+     * @param value o valor a arredondar.
+     * @return o valor arredondado.
+     */
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
 
     public double calculateCostBetweenStops(Vertex<Stop> start, Vertex<Stop> end, List<TransportType> transports, WeightCalculationStrategy strategy) {
+        return calculateCostBetweenStops(start, end, TransportMask.of(transports), strategy);
+    }
+
+    /**
+     * Calcula o menor custo de uma ligação direta entre duas Stops, consultando a tabela de pesos da aresta.
+     *
+     * @param start      Stop de partida.
+     * @param end        Stop de chegada.
+     * @param transports máscara dos tipos de transporte permitidos.
+     * @param strategy   a estratégia de cálculo de peso.
+     * @return o menor peso entre as Routes ativas dos tipos de transporte permitidos.
+     * @throws IllegalArgumentException se alguma das Stops for nula.
+     * @throws IllegalStateException    se não existir nenhuma Route válida entre as Stops.
+     */
+    public double calculateCostBetweenStops(Vertex<Stop> start, Vertex<Stop> end, TransportMask transports, WeightCalculationStrategy strategy) {
         if (start == null || end == null) {
             throw new IllegalArgumentException("Start or end Stop cannot be null.");
         }
 
-        return graph.incidentEdges(start).stream()
-                .filter(edge -> graph.opposite(start, edge).equals(end))
-                .flatMap(edge -> edge.element().stream())
-                .filter(route -> route.getState() && transports.contains(route.getTransportType()))
-                .mapToDouble(strategy::calculateWeight)
-                .min()
-                .orElseThrow(() -> new IllegalStateException("No valid routes found between " + start.element().getStopName() + " and " + end.element().getStopName()));
+        Edge<List<Route>, Stop> edge = getConnection(start, end);
+        RoutingGraph routing = getRoutingGraph();
+        double weight = edge == null ? Double.POSITIVE_INFINITY : routing.weightTable(strategy).weight(routing.indexOf(edge), transports.bits());
+
+        if (weight == Double.POSITIVE_INFINITY) {
+            throw new IllegalStateException("No valid routes found between " + start.element().getStopName() + " and " + end.element().getStopName());
+        }
+        return weight;
     }
 
     /**
@@ -574,22 +1106,6 @@ public class TransportMap implements Originator {
         };
     }
 
-    /**
-     * Obtém um vértice no grafo com base no nome da Stop.
-     *
-     * @param stopName   nome da Stop.
-     * @param vertexList lista de vértices do grafo.
-     * @return vértice correspondente, ou {@code null} se não for encontrado.
-     */
-    private Vertex<Stop> getVertexByDesignation(String stopName, Collection<Vertex<Stop>> vertexList) {
-        for (Vertex<Stop> v : vertexList) {
-            if (v.element().getStopName().equals(stopName)) {
-                return v;
-            }
-        }
-        return null;
-    }
-
     /**
      * Verifica se dois vértices estão diretamente conectados no grafo.
      *
@@ -598,9 +1114,8 @@ public class TransportMap implements Originator {
      * @return {@code true} se os vértices forem adjacentes; caso contrário, {@code false}.
      */
     public boolean isAdjacent(Vertex<Stop> current, Vertex<Stop> next) {
-        return graph.incidentEdges(current).stream()
-                .filter(edge -> !edge.element().isEmpty())
-                .anyMatch(edge -> graph.opposite(current, edge).equals(next));
+        Edge<List<Route>, Stop> edge = getConnection(current, next);
+        return edge != null && !edge.element().isEmpty();
     }
 
     /**
@@ -626,7 +1141,7 @@ public class TransportMap implements Originator {
      * @return uma nova instância do grafo com os mesmos vértices e arestas do original.
      */
     public Graph<Stop, List<Route>> copyGraph(Graph<Stop, List<Route>> original) {
-        Graph<Stop, List<Route>> copy = new GraphEdgeList<>();
+        Graph<Stop, List<Route>> copy = new GraphAdjacencyList<>();
 
         Map<Stop, Stop> stopMap = new HashMap<>();
         for (Vertex<Stop> stop : original.vertices()) {
@@ -659,6 +1174,7 @@ public class TransportMap implements Originator {
         for (Route route : routesToDisable) {
             route.setState(false);
         }
+        version++;
     }
 
     /**
@@ -669,6 +1185,7 @@ public class TransportMap implements Originator {
      */
     public void changeBicycleRouteDuration(Route route, int duration) {
         route.setDuration(duration);
+        version++;
     }
 
     /**
@@ -690,6 +1207,9 @@ public class TransportMap implements Originator {
     public void setMemento(Memento savedState) {
         if (savedState instanceof TransportMapMemento) {
             this.graph = ((TransportMapMemento) savedState).getGraph();
+            stopIndex.rebuild(this.graph);
+            connectionIndex.rebuild(this.graph);
+            invalidateRoutingGraph();
         }
     }
 
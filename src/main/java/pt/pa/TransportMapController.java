@@ -4,10 +4,13 @@ import com.brunomnsilva.smartgraph.graph.Vertex;
 import com.brunomnsilva.smartgraph.graphview.SmartGraphEdge;
 import com.brunomnsilva.smartgraph.graphview.SmartGraphVertex;
 import pt.pa.patterns.memento.Caretaker;
-import pt.pa.patterns.strategy.SustainabilityStrategy;
 import pt.pa.patterns.strategy.WeightCalculationStrategy;
 import pt.pa.view.MapView;
+import javafx.application.Platform;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Logger;
 
 /**
@@ -23,6 +26,9 @@ public class TransportMapController {
     private MapView view;
     private Logger logger;
     private Caretaker caretaker;
+    private RouteQueryService queryService;
+    private CompletableFuture<Path> pendingRoute;
+    private CompletableFuture<Double> pendingCustomStop;
 
     /**
      * Construtor para criar uma instância do Controller, configura os observadores no modelo e na visualização.
@@ -36,6 +42,7 @@ public class TransportMapController {
         this.view = view;
         this.logger = logger;
         this.caretaker = new Caretaker(model);
+        this.queryService = new RouteQueryService(model);
     }
 
     /**
@@ -85,6 +92,8 @@ public class TransportMapController {
 
     /**
      * Calcula e exibe o caminho de menor custo entre duas paragens com base em um critério e nos tipos de transporte selecionados.
+     * O cálculo corre fora da thread da interface ({@link RouteQueryService}) e o resultado é exibido com
+     * {@link Platform#runLater(Runnable)}; um novo pedido substitui o anterior, cujo resultado é ignorado.
      */
     public void doShowLeastCostRoute() {
         String origin = view.getOriginDropdown().getValue();
@@ -99,14 +108,48 @@ public class TransportMapController {
             logger.info("User has clicked the Calculate Cost button");
 
             WeightCalculationStrategy strategy = model.createStrategy(criteria);
+            TransportMask transports = TransportMask.of(transportTypes);
+
+            view.updateCostLabel("Calculating...");
+            CompletableFuture<Path> query = queryService.leastCostBetweenStops(origin, destination, strategy, transports);
+            pendingRoute = query;
+            query.whenComplete((path, error) -> Platform.runLater(() -> {
+                if (query != pendingRoute) {
+                    return;
+                }
+                pendingRoute = null;
+                showLeastCostRoute(path, error);
+            }));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            view.showWarning(e.getMessage());
+        }
+    }
 
-            Path path = model.leastCostBetweenStops(origin, destination, strategy, transportTypes);
+    private void showLeastCostRoute(Path path, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException) {
+            return;
+        }
+        if (cause != null) {
+            view.updateCostLabel("");
+            view.showWarning(cause.getMessage());
+            return;
+        }
 
-            view.updateCostLabel("Total Path Cost: " + Math.round(path.getTotalCost() * 100.0) / 100.0);
+        view.updateCostLabel("Total Path Cost: " + Math.round(path.getTotalCost() * 100.0) / 100.0);
 
-            view.highlightPath(path.getPath(), transportTypes, strategy);
-        } catch (IllegalStateException | IllegalArgumentException e) {
-            view.showWarning(e.getMessage());
+        view.highlightPath(path);
+    }
+
+    /**
+     * Cancela o cálculo do caminho de menor custo em curso, por exemplo quando o utilizador muda a origem, o destino
+     * ou o critério antes de o resultado chegar.
+     */
+    public void doCancelLeastCostRoute() {
+        if (pendingRoute != null) {
+            pendingRoute = null;
+            queryService.cancel();
+            view.updateCostLabel("");
         }
     }
 
@@ -137,30 +180,52 @@ public class TransportMapController {
         }
     }
 
+    /**
+     * Acrescenta uma Stop ao caminho personalizado. O custo da ligação à Stop anterior é lido através do
+     * {@link RouteQueryService}, fora da thread da interface, e a Stop só é acrescentada quando o custo chega, através
+     * de {@link Platform#runLater(Runnable)}; enquanto isso, novas seleções são recusadas.
+     *
+     * @param selectedVertex vértice selecionado.
+     */
     private void handleCustomPath(Vertex<Stop> selectedVertex) {
+        if (pendingCustomStop != null) {
+            throw new IllegalStateException("The cost of the previous Stop is still being calculated.");
+        }
         List<Vertex<Stop>> customPath = view.getCustomPath();
         Vertex<Stop> lastVertex = customPath.isEmpty() ? null : customPath.get(customPath.size() - 1);
 
-        if (lastVertex != null) {
-            WeightCalculationStrategy strategy = model.createStrategy(view.getCriteriaDropdown().getValue().toLowerCase());
+        if (lastVertex == null) {
+            addToCustomPath(selectedVertex);
+            return;
+        }
 
-            // Considerar todos os transportes
-            List<TransportType> allTransportTypes = List.of(TransportType.values());
+        WeightCalculationStrategy strategy = model.createStrategy(view.getCriteriaDropdown().getValue().toLowerCase());
 
-            double edgeCost = model.calculateCostBetweenStops(lastVertex, selectedVertex, allTransportTypes, strategy);
+        // Considerar todos os transportes
+        List<TransportType> allTransportTypes = List.of(TransportType.values());
 
-            if (strategy instanceof SustainabilityStrategy) {
-                edgeCost -= SustainabilityStrategy.OFFSET;
+        CompletableFuture<Double> query = queryService.read(() -> model.calculateCostBetweenStops(lastVertex, selectedVertex, allTransportTypes, strategy));
+        pendingCustomStop = query;
+        query.whenComplete((edgeCost, error) -> Platform.runLater(() -> {
+            pendingCustomStop = null;
+            List<Vertex<Stop>> currentPath = view.getCustomPath();
+            if (!view.getIsSelectingCustomPath() || currentPath.isEmpty() || currentPath.get(currentPath.size() - 1) != lastVertex) {
+                return;
             }
-
-            if (edgeCost == Double.POSITIVE_INFINITY) {
-                throw new IllegalArgumentException("No valid route between " + lastVertex.element().getStopName() + " and " + selectedVertex.element().getStopName());
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause != null) {
+                view.showWarning(cause.getMessage());
+            } else if (edgeCost == Double.POSITIVE_INFINITY) {
+                view.showWarning("No valid route between " + lastVertex.element().getStopName() + " and " + selectedVertex.element().getStopName());
+            } else {
+                view.updateCurrentCustomPathCost(edgeCost);
+                view.highlightEdge(lastVertex, selectedVertex, strategy);
+                addToCustomPath(selectedVertex);
             }
+        }));
+    }
 
-            view.updateCurrentCustomPathCost(edgeCost);
-            view.highlightEdge(lastVertex, selectedVertex, strategy);
-        }
-
+    private void addToCustomPath(Vertex<Stop> selectedVertex) {
         view.addToCustomPath(selectedVertex);
         view.showNotification("Vertex added to custom path: " + selectedVertex.element().getStopName());
     }
@@ -172,8 +237,11 @@ public class TransportMapController {
      */
     public void doDisableRoute(List<Route> routesToDisable) {
         logger.info("INFO: User disabled an edge");
-        caretaker.saveState();
-        model.disableRoute(routesToDisable);
+        doCancelLeastCostRoute();
+        queryService.update(() -> {
+            caretaker.saveState();
+            model.disableRoute(routesToDisable);
+        });
     }
 
     /**
@@ -192,9 +260,11 @@ public class TransportMapController {
             throw new IllegalArgumentException("The duration has to be greater than zero");
         }
         logger.info("INFO: User has changed the duration of a Route");
-        caretaker.saveState();
-
-        model.changeBicycleRouteDuration(route, duration);
+        doCancelLeastCostRoute();
+        queryService.update(() -> {
+            caretaker.saveState();
+            model.changeBicycleRouteDuration(route, duration);
+        });
     }
 
     /**
@@ -203,7 +273,8 @@ public class TransportMapController {
      * @throws IllegalStateException se não houver estados para restaurar.
      */
     public void undo() {
-        caretaker.restoreState();
+        doCancelLeastCostRoute();
+        queryService.update(caretaker::restoreState);
     }
 
     /**
@@ -0,0 +1,161 @@
+package pt.pa;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A classe {@code TransportMask} representa, de forma compacta, um conjunto de tipos de transporte
+ * ({@link TransportType}) como uma máscara de bits, onde o bit {@code i} corresponde ao tipo com ordinal {@code i}.
+ *
+ * Com os cinco tipos de transporte existem {@link #SUBSETS} máscaras possíveis, o que permite indexar
+ * diretamente tabelas pré-calculadas por subconjunto de transportes. As instâncias são imutáveis.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public final class TransportMask {
+
+    /**
+     * Número de subconjuntos possíveis de tipos de transporte.
+     */
+    public static final int SUBSETS = 1 << TransportType.values().length;
+
+    private static final TransportMask[] CACHE = new TransportMask[SUBSETS];
+
+    static {
+        for (int bits = 0; bits < SUBSETS; bits++) {
+            CACHE[bits] = new TransportMask(bits);
+        }
+    }
+
+    private final int bits;
+
+    /**
+     * Construtor privado; as instâncias são obtidas através dos métodos {@code of}.
+     *
+     * @param bits a máscara de bits.
+     */
+    private TransportMask(int bits) {
+        this.bits = bits;
+    }
+
+    /**
+     * Obtém a máscara correspondente a um valor de bits.
+     *
+     * @param bits a máscara de bits (entre {@code 0} e {@code SUBSETS - 1}).
+     * @return a máscara correspondente.
+     * @throws IllegalArgumentException se o valor não corresponder a um subconjunto válido.
+     */
+    public static TransportMask ofBits(int bits) {
+        if (bits < 0 || bits >= SUBSETS) {
+            throw new IllegalArgumentException("Invalid transport mask: " + bits);
+        }
+        return CACHE[bits];
+    }
+
+    /**
+     * Obtém a máscara que contém os tipos de transporte fornecidos.
+     *
+     * @param types os tipos de transporte.
+     * @return a máscara correspondente.
+     */
+    public static TransportMask of(TransportType... types) {
+        return of(List.of(types));
+    }
+
+    /**
+     * Obtém a máscara que contém os tipos de transporte fornecidos.
+     *
+     * @param types os tipos de transporte.
+     * @return a máscara correspondente.
+     */
+    public static TransportMask of(Collection<TransportType> types) {
+        int bits = 0;
+        for (TransportType type : types) {
+            bits |= bit(type);
+        }
+        return CACHE[bits];
+    }
+
+    /**
+     * Obtém a máscara com todos os tipos de transporte.
+     *
+     * @return a máscara completa.
+     */
+    public static TransportMask all() {
+        return CACHE[SUBSETS - 1];
+    }
+
+    /**
+     * Retorna o bit correspondente a um tipo de transporte.
+     *
+     * @param type o tipo de transporte.
+     * @return o bit do tipo de transporte.
+     */
+    public static int bit(TransportType type) {
+        return 1 << type.ordinal();
+    }
+
+    /**
+     * Retorna o valor de bits da máscara, que pode ser usado como índice de tabelas por subconjunto.
+     *
+     * @return a máscara de bits.
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * Verifica se a máscara contém um tipo de transporte.
+     *
+     * @param type o tipo de transporte.
+     * @return {@code true} se o tipo estiver incluído; caso contrário, {@code false}.
+     */
+    public boolean contains(TransportType type) {
+        return (bits & bit(type)) != 0;
+    }
+
+    /**
+     * Verifica se a máscara não contém nenhum tipo de transporte.
+     *
+     * @return {@code true} se a máscara estiver vazia.
+     */
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    /**
+     * Converte a máscara na lista de tipos de transporte que contém.
+     *
+     * @return lista de tipos de transporte, pela ordem de {@link TransportType#values()}.
+     */
+    public List<TransportType> toList() {
+        List<TransportType> types = new ArrayList<>();
+        for (TransportType type : TransportType.values()) {
+            if (contains(type)) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TransportMask && ((TransportMask) o).bits == bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return bits;
+    }
+
+    /**
+     * Retorna uma representação em String da máscara.
+     *
+     * @return os tipos de transporte incluídos.
+     */
+    @Override
+    public String toString() {
+        return "TransportMask" + toList();
+    }
+}
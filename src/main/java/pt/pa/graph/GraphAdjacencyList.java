@@ -0,0 +1,405 @@
+package pt.pa.graph;
+
+import com.brunomnsilva.smartgraph.graph.Edge;
+import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.InvalidEdgeException;
+import com.brunomnsilva.smartgraph.graph.InvalidVertexException;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * A classe {@code GraphAdjacencyList} é uma implementação do ADT {@link Graph} (não orientado) baseada em
+ * mapas de adjacência por vértice.
+ *
+ * Ao contrário da {@code GraphEdgeList}, onde {@code incidentEdges} percorre todas as arestas do grafo,
+ * cada vértice guarda as suas arestas agrupadas pelo vértice oposto. Assim:
+ * <ul>
+ *     <li>{@link #incidentEdges(Vertex)} tem custo O(grau);</li>
+ *     <li>{@link #opposite(Vertex, Edge)} e {@link #areAdjacent(Vertex, Vertex)} têm custo O(1);</li>
+ *     <li>{@link #removeVertex(Vertex)} tem custo O(grau).</li>
+ * </ul>
+ *
+ * Os elementos das arestas são comparados por identidade, porque listas de Routes podem ser alteradas depois
+ * de inseridas e o seu {@code hashCode} deixaria de ser estável.
+ *
+ * @param <V> tipo dos elementos guardados nos vértices.
+ * @param <E> tipo dos elementos guardados nas arestas.
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class GraphAdjacencyList<V, E> implements Graph<V, E> {
+    private final Map<V, MyVertex> vertices;
+    private final Map<E, MyEdge> edgeElements;
+    private final Set<MyEdge> edges;
+
+    /**
+     * Construtor de um grafo vazio.
+     */
+    public GraphAdjacencyList() {
+        this.vertices = new LinkedHashMap<>();
+        this.edgeElements = new IdentityHashMap<>();
+        this.edges = new LinkedHashSet<>();
+    }
+
+    @Override
+    public int numVertices() {
+        return vertices.size();
+    }
+
+    @Override
+    public int numEdges() {
+        return edges.size();
+    }
+
+    @Override
+    public Collection<Vertex<V>> vertices() {
+        return new ArrayList<>(vertices.values());
+    }
+
+    @Override
+    public Collection<Edge<E, V>> edges() {
+        return new ArrayList<>(edges);
+    }
+
+    @Override
+    public Collection<Edge<E, V>> incidentEdges(Vertex<V> v) throws InvalidVertexException {
+        MyVertex vertex = checkVertex(v);
+
+        List<Edge<E, V>> incident = new ArrayList<>(vertex.degree);
+        for (List<MyEdge> connection : vertex.adjacency.values()) {
+            incident.addAll(connection);
+        }
+        return incident;
+    }
+
+    @Override
+    public Vertex<V> opposite(Vertex<V> v, Edge<E, V> e) throws InvalidVertexException, InvalidEdgeException {
+        MyVertex vertex = checkVertex(v);
+        MyEdge edge = checkEdge(e);
+
+        if (edge.vertexOutbound == vertex) {
+            return edge.vertexInbound;
+        }
+        if (edge.vertexInbound == vertex) {
+            return edge.vertexOutbound;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean areAdjacent(Vertex<V> u, Vertex<V> v) throws InvalidVertexException {
+        MyVertex first = checkVertex(u);
+        MyVertex second = checkVertex(v);
+
+        return first.adjacency.containsKey(second);
+    }
+
+    /**
+     * Obtém uma aresta que liga dois vértices, em tempo constante.
+     *
+     * @param u um dos vértices.
+     * @param v o outro vértice.
+     * @return uma aresta entre {@code u} e {@code v}, ou {@code null} se os vértices não forem adjacentes.
+     * @throws InvalidVertexException se algum dos vértices for inválido.
+     */
+    public Edge<E, V> edgeBetween(Vertex<V> u, Vertex<V> v) throws InvalidVertexException {
+        MyVertex first = checkVertex(u);
+        MyVertex second = checkVertex(v);
+
+        List<MyEdge> connection = first.adjacency.get(second);
+        return connection == null ? null : connection.get(0);
+    }
+
+    @Override
+    public Vertex<V> insertVertex(V vElement) throws InvalidVertexException {
+        if (vertices.containsKey(vElement)) {
+            throw new InvalidVertexException("There's already a vertex with this element.");
+        }
+
+        MyVertex vertex = new MyVertex(vElement);
+        vertices.put(vElement, vertex);
+        return vertex;
+    }
+
+    @Override
+    public Edge<E, V> insertEdge(Vertex<V> u, Vertex<V> v, E edgeElement) throws InvalidVertexException, InvalidEdgeException {
+        if (edgeElements.containsKey(edgeElement)) {
+            throw new InvalidEdgeException("There's already an edge with this element.");
+        }
+
+        MyVertex outbound = checkVertex(u);
+        MyVertex inbound = checkVertex(v);
+
+        return link(new MyEdge(edgeElement, outbound, inbound));
+    }
+
+    @Override
+    public Edge<E, V> insertEdge(V vElement1, V vElement2, E edgeElement) throws InvalidVertexException, InvalidEdgeException {
+        if (edgeElements.containsKey(edgeElement)) {
+            throw new InvalidEdgeException("There's already an edge with this element.");
+        }
+
+        MyVertex outbound = vertices.get(vElement1);
+        if (outbound == null) {
+            throw new InvalidVertexException("No vertex contains " + vElement1);
+        }
+        MyVertex inbound = vertices.get(vElement2);
+        if (inbound == null) {
+            throw new InvalidVertexException("No vertex contains " + vElement2);
+        }
+
+        return link(new MyEdge(edgeElement, outbound, inbound));
+    }
+
+    @Override
+    public V removeVertex(Vertex<V> v) throws InvalidVertexException {
+        MyVertex vertex = checkVertex(v);
+
+        for (Edge<E, V> edge : incidentEdges(vertex)) {
+            unlink((MyEdge) edge);
+        }
+        vertices.remove(vertex.element);
+        return vertex.element;
+    }
+
+    @Override
+    public E removeEdge(Edge<E, V> e) throws InvalidEdgeException {
+        MyEdge edge = checkEdge(e);
+
+        unlink(edge);
+        return edge.element;
+    }
+
+    @Override
+    public V replace(Vertex<V> v, V newElement) throws InvalidVertexException {
+        if (vertices.containsKey(newElement)) {
+            throw new InvalidVertexException("There's already a vertex with this element.");
+        }
+
+        MyVertex vertex = checkVertex(v);
+        V oldElement = vertex.element;
+
+        vertices.remove(oldElement);
+        vertex.element = newElement;
+        vertices.put(newElement, vertex);
+        return oldElement;
+    }
+
+    @Override
+    public E replace(Edge<E, V> e, E newElement) throws InvalidEdgeException {
+        if (edgeElements.containsKey(newElement)) {
+            throw new InvalidEdgeException("There's already an edge with this element.");
+        }
+
+        MyEdge edge = checkEdge(e);
+        E oldElement = edge.element;
+
+        edgeElements.remove(oldElement);
+        edge.element = newElement;
+        edgeElements.put(newElement, edge);
+        return oldElement;
+    }
+
+    /**
+     * Liga uma nova aresta aos mapas de adjacência dos seus extremos.
+     *
+     * @param edge a aresta a ligar.
+     * @return a aresta ligada.
+     */
+    private MyEdge link(MyEdge edge) {
+        edges.add(edge);
+        edgeElements.put(edge.element, edge);
+
+        edge.vertexOutbound.attach(edge.vertexInbound, edge);
+        if (edge.vertexOutbound != edge.vertexInbound) {
+            edge.vertexInbound.attach(edge.vertexOutbound, edge);
+        }
+        return edge;
+    }
+
+    /**
+     * Remove uma aresta dos mapas de adjacência dos seus extremos.
+     *
+     * @param edge a aresta a remover.
+     */
+    private void unlink(MyEdge edge) {
+        edges.remove(edge);
+        edgeElements.remove(edge.element);
+
+        edge.vertexOutbound.detach(edge.vertexInbound, edge);
+        if (edge.vertexOutbound != edge.vertexInbound) {
+            edge.vertexInbound.detach(edge.vertexOutbound, edge);
+        }
+    }
+
+    /**
+     * Verifica se um vértice é válido e pertence a este grafo.
+     *
+     * @param v o vértice a verificar.
+     * @return o vértice convertido para a representação interna.
+     * @throws InvalidVertexException se o vértice for nulo, de outro tipo ou de outro grafo.
+     */
+    private MyVertex checkVertex(Vertex<V> v) throws InvalidVertexException {
+        if (v == null) {
+            throw new InvalidVertexException("Null vertex.");
+        }
+        if (!(v instanceof GraphAdjacencyList<?, ?>.MyVertex)) {
+            throw new InvalidVertexException("Not a vertex.");
+        }
+
+        @SuppressWarnings("unchecked")
+        MyVertex vertex = (MyVertex) v;
+        if (vertices.get(vertex.element) != vertex) {
+            throw new InvalidVertexException("Vertex does not belong to this graph.");
+        }
+        return vertex;
+    }
+
+    /**
+     * Verifica se uma aresta é válida e pertence a este grafo.
+     *
+     * @param e a aresta a verificar.
+     * @return a aresta convertida para a representação interna.
+     * @throws InvalidEdgeException se a aresta for nula, de outro tipo ou de outro grafo.
+     */
+    private MyEdge checkEdge(Edge<E, V> e) throws InvalidEdgeException {
+        if (e == null) {
+            throw new InvalidEdgeException("Null edge.");
+        }
+        if (!(e instanceof GraphAdjacencyList<?, ?>.MyEdge)) {
+            throw new InvalidEdgeException("Not an edge.");
+        }
+
+        @SuppressWarnings("unchecked")
+        MyEdge edge = (MyEdge) e;
+        if (edgeElements.get(edge.element) != edge) {
+            throw new InvalidEdgeException("Edge does not belong to this graph.");
+        }
+        return edge;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("Graph with %d vertices and %d edges:\n", numVertices(), numEdges()));
+
+        sb.append("--- Vertices: \n");
+        for (MyVertex v : vertices.values()) {
+            sb.append("\t").append(v).append("\n");
+        }
+        sb.append("\n--- Edges: \n");
+        for (MyEdge e : edges) {
+            sb.append("\t").append(e).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Cria um array de um tipo genérico, cujos elementos são instâncias da classe indicada.
+     *
+     * @param type   classe dos elementos.
+     * @param length tamanho do array.
+     * @param <T>    tipo dos elementos.
+     * @return o array criado.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> type, int length) {
+        return (T[]) Array.newInstance(type, length);
+    }
+
+    /**
+     * Vértice com o mapa das arestas incidentes agrupadas pelo vértice oposto.
+     */
+    private class MyVertex implements Vertex<V> {
+        private V element;
+        private final Map<MyVertex, List<MyEdge>> adjacency;
+        private int degree;
+
+        /**
+         * Construtor de um vértice isolado.
+         *
+         * @param element o elemento guardado no vértice.
+         */
+        public MyVertex(V element) {
+            this.element = element;
+            this.adjacency = new LinkedHashMap<>();
+        }
+
+        @Override
+        public V element() {
+            return this.element;
+        }
+
+        /**
+         * Regista uma aresta incidente que liga este vértice a {@code opposite}.
+         *
+         * @param opposite o vértice oposto.
+         * @param edge     a aresta incidente.
+         */
+        private void attach(MyVertex opposite, MyEdge edge) {
+            adjacency.computeIfAbsent(opposite, key -> new ArrayList<>(1)).add(edge);
+            degree++;
+        }
+
+        /**
+         * Remove o registo de uma aresta incidente que liga este vértice a {@code opposite}.
+         *
+         * @param opposite o vértice oposto.
+         * @param edge     a aresta incidente.
+         */
+        private void detach(MyVertex opposite, MyEdge edge) {
+            List<MyEdge> connection = adjacency.get(opposite);
+            if (connection != null && connection.remove(edge)) {
+                degree--;
+                if (connection.isEmpty()) {
+                    adjacency.remove(opposite);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Vertex{" + element + '}';
+        }
+    }
+
+    /**
+     * Aresta não orientada entre dois vértices.
+     */
+    private class MyEdge implements Edge<E, V> {
+        private E element;
+        private final MyVertex vertexOutbound;
+        private final MyVertex vertexInbound;
+
+        /**
+         * Construtor de uma aresta.
+         *
+         * @param element        o elemento guardado na aresta.
+         * @param vertexOutbound o primeiro extremo.
+         * @param vertexInbound  o segundo extremo.
+         */
+        public MyEdge(E element, MyVertex vertexOutbound, MyVertex vertexInbound) {
+            this.element = element;
+            this.vertexOutbound = vertexOutbound;
+            this.vertexInbound = vertexInbound;
+        }
+
+        @Override
+        public E element() {
+            return this.element;
+        }
+
+        @Override
+        public Vertex<V>[] vertices() {
+            Vertex<V>[] endpoints = newArray(Vertex.class, 2);
+            endpoints[0] = vertexOutbound;
+            endpoints[1] = vertexInbound;
+            return endpoints;
+        }
+
+        @Override
+        public String toString() {
+            return "Edge{{" + element + "}, vertexOutbound=" + vertexOutbound + ", vertexInbound=" + vertexInbound + '}';
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package pt.pa.patterns.observer;
+
+/**
+ * A interface {@code Observer} define o contrato para objetos que pretendem ser notificados
+ * quando o estado de um {@link Subject} é alterado, segundo o padrão Observer.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public interface Observer {
+
+    /**
+     * Método invocado pelo {@link Subject} observado sempre que o seu estado é alterado.
+     *
+     * @param subject o objeto cujo estado foi alterado.
+     */
+    void update(Subject subject);
+}
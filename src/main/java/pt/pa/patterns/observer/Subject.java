@@ -0,0 +1,43 @@
+package pt.pa.patterns.observer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A classe {@code Subject} representa um objeto observável, segundo o padrão Observer.
+ * Mantém a lista de {@link Observer} registados e notifica-os quando o seu estado é alterado.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public abstract class Subject {
+    private final List<Observer> observers = new ArrayList<>(1);
+
+    /**
+     * Regista um observador.
+     *
+     * @param observer o observador a registar.
+     */
+    public void attach(Observer observer) {
+        if (!observers.contains(observer)) {
+            observers.add(observer);
+        }
+    }
+
+    /**
+     * Remove um observador previamente registado.
+     *
+     * @param observer o observador a remover.
+     */
+    public void detach(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Notifica todos os observadores registados de que o estado foi alterado.
+     */
+    protected void notifyObservers() {
+        for (Observer observer : List.copyOf(observers)) {
+            observer.update(this);
+        }
+    }
+}
@@ -4,29 +4,26 @@ import pt.pa.Route;
 
 /**
  * A classe {@code SustainabilityStrategy} implementa a interface {@link WeightCalculationStrategy}.
- * Esta estratégia calcula o peso de uma rota com base na sua sustentabilidade, adicionando um valor de desvio
- * definido pela constante {@code OFFSET}.
+ * Esta estratégia calcula o peso de uma rota com base na sua sustentabilidade.
  *
- * O objetivo é utilizar a métrica de sustentabilidade como critério principal, aplicando uma penalização
- * ou ajuste padrão.
+ * O custo de sustentabilidade pode ser negativo. Como as Routes não são orientadas, uma Route de peso negativo forma
+ * um ciclo negativo e o Path de menor custo deixa de estar bem definido. Os algoritmos de caminhos ordenam então a
+ * pesquisa com um deslocamento uniforme dos pesos ({@link pt.pa.routing.ShiftedWeights}): o resultado é uma
+ * aproximação que favorece Paths com menos Routes. O valor devolvido por esta estratégia não é alterado e o custo do
+ * Path é a soma dos pesos reais.
  *
  * @author Rafael Quintas
  */
 public class SustainabilityStrategy implements WeightCalculationStrategy {
 
     /**
-     * Constante que define o valor de desvio a ser adicionado à sustentabilidade da rota.
-     */
-    public static final int OFFSET = 10000;
-
-    /**
-     * Calcula o peso de uma rota utilizando a sustentabilidade como critério, adicionando o valor de {@code OFFSET}.
+     * Calcula o peso de uma rota utilizando a sustentabilidade como critério.
      *
      * @param route A rota cuja sustentabilidade será utilizada para calcular o peso.
-     * @return O valor da sustentabilidade da rota acrescido de {@code OFFSET}.
+     * @return O valor da sustentabilidade da rota.
      */
     @Override
     public double calculateWeight(Route route) {
-        return route.getSustainability() + OFFSET;
+        return route.getSustainability();
     }
 }
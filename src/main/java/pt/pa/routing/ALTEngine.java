@@ -0,0 +1,22 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code ALTEngine} implementa a pesquisa ALT (A*, <i>landmarks</i> e desigualdade triangular): uma pesquisa
+ * A* cuja estimativa do custo até ao destino é obtida das distâncias aos landmarks ({@link LandmarkIndex}).
+ *
+ * Ao contrário do {@link AStarEngine}, não depende das coordenadas, pelo que serve para qualquer estratégia. Com pesos
+ * negativos, a pesquisa e os landmarks usam os pesos deslocados ({@link ShiftedWeights}) do
+ * {@link ShiftedDijkstraEngine}, com a mesma aproximação: o caminho minimiza o custo deslocado e não o custo real. O
+ * índice de landmarks de cada máscara é construído na primeira consulta e reconstruído depois de qualquer alteração
+ * ao mapa.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ALTEngine extends DijkstraEngine {
+
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        StopPotential bound = weights.landmarks(mask).lowerBound(destination);
+        return search(routing, weights, mask, origin, destination, weights.shiftedWeights(mask).shift(), bound);
+    }
+}
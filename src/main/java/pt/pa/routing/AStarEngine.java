@@ -0,0 +1,127 @@
+package pt.pa.routing;
+
+import pt.pa.TransportMask;
+import pt.pa.TransportType;
+import pt.pa.patterns.strategy.DistanceStrategy;
+import pt.pa.patterns.strategy.DurationStrategy;
+import pt.pa.utils.PropertiesUtil;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A classe {@code AStarEngine} implementa a pesquisa A* sobre um {@link RoutingGraph}, usando como estimativa do
+ * custo até ao destino a distância de círculo máximo entre as coordenadas das Stops.
+ *
+ * Para a {@link DistanceStrategy} a estimativa é a própria distância geodésica, em Kms. Para a
+ * {@link DurationStrategy} é o tempo, em minutos, necessário para percorrer essa distância à velocidade máxima dos
+ * tipos de transporte permitidos, configurável por {@link TransportType} no ficheiro {@code config.properties}
+ * (chaves {@code astar.max.speed.<tipo>}, em km/h). Para as restantes estratégias a pesquisa equivale a Dijkstra.
+ *
+ * Para garantir que a estimativa nunca sobrestima o custo real, mesmo que os dados tenham Routes mais curtas do
+ * que a linha reta ou mais rápidas do que a velocidade configurada, o fator de escala é limitado pela menor razão
+ * entre peso e distância geodésica das arestas ({@link EdgeWeightTable#geodesicRatio(int)}). A estimativa é assim
+ * consistente e o custo do Path é o mesmo de Dijkstra, estabelecendo normalmente muito menos Stops.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class AStarEngine extends DijkstraEngine {
+    private static final String SPEED_PROPERTY = "astar.max.speed.";
+    private static final Map<TransportType, Double> DEFAULT_MAX_SPEEDS = Map.of(
+            TransportType.BUS, 100.0,
+            TransportType.TRAIN, 220.0,
+            TransportType.BOAT, 80.0,
+            TransportType.WALK, 7.0,
+            TransportType.BICYCLE, 40.0);
+
+    private final double[] maxSpeeds;
+
+    /**
+     * Construtor que lê as velocidades máximas do ficheiro {@code config.properties}, usando os valores por omissão
+     * para os tipos de transporte não configurados.
+     */
+    public AStarEngine() {
+        this(loadMaxSpeeds());
+    }
+
+    /**
+     * Construtor com as velocidades máximas de cada tipo de transporte.
+     *
+     * @param maxSpeeds velocidade máxima, em km/h, de cada tipo de transporte.
+     * @throws IllegalArgumentException se faltar a velocidade de algum tipo ou se alguma não for positiva.
+     */
+    public AStarEngine(Map<TransportType, Double> maxSpeeds) {
+        this.maxSpeeds = new double[TransportType.values().length];
+        for (TransportType type : TransportType.values()) {
+            Double speed = maxSpeeds.get(type);
+            if (speed == null || !(speed > 0)) {
+                throw new IllegalArgumentException("Maximum speed must be positive for " + type + ".");
+            }
+            this.maxSpeeds[type.ordinal()] = speed;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("A* requires non-negative edge weights.");
+        }
+
+        double scale = Math.min(unitsPerKm(weights, mask), weights.geodesicRatio(mask));
+        if (!(scale > 0) || Double.isInfinite(scale)) {
+            return search(routing, weights, mask, origin, destination, 0.0, null);
+        }
+        return search(routing, weights, mask, origin, destination, 0.0,
+                stop -> scale * routing.greatCircleDistance(stop, destination));
+    }
+
+    /**
+     * Retorna o custo mínimo, nas unidades da estratégia, por cada Km de distância geodésica.
+     *
+     * @param weights a tabela de pesos da estratégia.
+     * @param mask    bits da máscara de transportes.
+     * @return o custo por Km, ou {@code 0} se a estratégia não tiver relação com a distância.
+     */
+    private double unitsPerKm(EdgeWeightTable weights, int mask) {
+        if (weights.getStrategy() instanceof DistanceStrategy) {
+            return 1.0;
+        }
+        if (weights.getStrategy() instanceof DurationStrategy) {
+            double maxSpeed = 0.0;
+            for (TransportType type : TransportType.values()) {
+                if ((mask & TransportMask.bit(type)) != 0) {
+                    maxSpeed = Math.max(maxSpeed, maxSpeeds[type.ordinal()]);
+                }
+            }
+            return maxSpeed > 0 ? 60.0 / maxSpeed : 0.0;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Lê as velocidades máximas configuradas, usando os valores por omissão quando o ficheiro ou a chave não existem.
+     *
+     * @return velocidade máxima de cada tipo de transporte.
+     */
+    private static Map<TransportType, Double> loadMaxSpeeds() {
+        Map<TransportType, Double> speeds = new EnumMap<>(DEFAULT_MAX_SPEEDS);
+        try {
+            PropertiesUtil properties = PropertiesUtil.getInstance();
+            for (TransportType type : TransportType.values()) {
+                String value = properties.getProperty(SPEED_PROPERTY + type.name().toLowerCase());
+                if (value != null) {
+                    speeds.put(type, Double.parseDouble(value.trim()));
+                }
+            }
+        } catch (IOException e) {
+            // Sem ficheiro de configuração, ficam os valores por omissão
+        }
+        return speeds;
+    }
+}
@@ -0,0 +1,24 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code AllPairsEngine} responde às consultas de caminho mais curto a partir da matriz de todos os pares
+ * ({@link AllPairsMatrix}) da tabela de pesos, calculada na primeira consulta de cada máscara de transportes. Cada
+ * caminho é obtido seguindo os próximos saltos, em tempo proporcional ao seu comprimento.
+ *
+ * É indicado para relatórios que consultam muitos pares de Stops de uma rede pequena, pois a matriz ocupa memória
+ * proporcional ao quadrado do número de Stops.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class AllPairsEngine implements ShortestPathEngine {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se a rede tiver demasiadas Stops para uma matriz em memória.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        return weights.allPairs(mask).findPath(origin, destination);
+    }
+}
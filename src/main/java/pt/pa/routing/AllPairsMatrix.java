@@ -0,0 +1,222 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A classe {@code AllPairsMatrix} guarda o custo mínimo entre todos os pares de Stops de um {@link RoutingGraph}, para
+ * uma tabela de pesos e uma máscara de transportes, juntamente com a matriz de próximos saltos que permite obter
+ * qualquer caminho em tempo proporcional ao seu comprimento, sem repetir a pesquisa.
+ *
+ * A matriz é calculada com uma pesquisa de Dijkstra por Stop, distribuídas pelas threads de um {@link ForkJoinPool}.
+ * Como as Routes não são orientadas, a árvore de caminhos mais curtos com raiz num destino dá, para cada Stop, a
+ * aresta pela qual se sai dessa Stop em direção ao destino: a linha de cada destino é, ao mesmo tempo, a coluna de
+ * custos e de próximos saltos desse destino. Os dados ficam em dois arrays primitivos de {@code numStops²} elementos.
+ *
+ * Quando a máscara tem pesos negativos, as árvores são calculadas sobre os pesos deslocados de
+ * {@link ShiftedWeights}, como no {@link ShiftedDijkstraEngine}, com a mesma aproximação; os custos guardados são a
+ * soma dos pesos originais das arestas de cada caminho.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class AllPairsMatrix {
+    private static final long MAX_ENTRIES = Integer.MAX_VALUE - 8;
+    private static final int SOURCES_PER_TASK = 16;
+
+    private final RoutingGraph routing;
+    private final int numStops;
+    private final double[] costs;
+    private final int[] nextEdges;
+
+    /**
+     * Construtor privado; as instâncias são criadas através de {@link #compute}.
+     *
+     * @param routing   a fotografia do grafo.
+     * @param costs     custos agrupados por destino ({@code costs[destino * numStops + origem]}).
+     * @param nextEdges próximo salto agrupado por destino ({@code -1} no destino ou sem caminho).
+     */
+    private AllPairsMatrix(RoutingGraph routing, double[] costs, int[] nextEdges) {
+        this.routing = routing;
+        this.numStops = routing.numStops();
+        this.costs = costs;
+        this.nextEdges = nextEdges;
+    }
+
+    /**
+     * Calcula a matriz de custos e de próximos saltos.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos.
+     * @param mask    bits da máscara de transportes.
+     * @param pool    o conjunto de threads onde as pesquisas são executadas.
+     * @return a matriz calculada.
+     * @throws IllegalStateException se a rede tiver demasiadas Stops para uma matriz em memória.
+     */
+    public static AllPairsMatrix compute(RoutingGraph routing, EdgeWeightTable weights, int mask, ForkJoinPool pool) {
+        int numStops = routing.numStops();
+        if ((long) numStops * numStops > MAX_ENTRIES) {
+            throw new IllegalStateException("Too many stops for an all-pairs matrix.");
+        }
+
+        double shift = weights.shiftedWeights(mask).shift();
+
+        double[] costs = new double[numStops * numStops];
+        int[] nextEdges = new int[numStops * numStops];
+        pool.invoke(new SourceRange(routing, weights, mask, shift, costs, nextEdges, 0, numStops));
+        return new AllPairsMatrix(routing, costs, nextEdges);
+    }
+
+    /**
+     * Retorna a fotografia do grafo a que a matriz pertence.
+     *
+     * @return a fotografia do grafo.
+     */
+    public RoutingGraph getRoutingGraph() {
+        return routing;
+    }
+
+    /**
+     * Retorna o custo mínimo entre duas Stops.
+     *
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o custo, ou {@link Double#POSITIVE_INFINITY} se não houver caminho.
+     */
+    public double cost(int origin, int destination) {
+        return costs[destination * numStops + origin];
+    }
+
+    /**
+     * Retorna a aresta pela qual se sai de uma Stop no caminho de menor custo até ao destino.
+     *
+     * @param from        identificador da Stop atual.
+     * @param destination identificador da Stop de destino.
+     * @return identificador da aresta, ou {@code -1} se a Stop for o destino ou não houver caminho.
+     */
+    public int nextHop(int from, int destination) {
+        return nextEdges[destination * numStops + from];
+    }
+
+    /**
+     * Obtém o caminho de menor custo entre duas Stops seguindo os próximos saltos, em tempo proporcional ao número
+     * de arestas do caminho.
+     *
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o resultado; o número de Stops estabelecidas é {@code 0}, pois não é feita nenhuma pesquisa.
+     */
+    public SearchResult findPath(int origin, int destination) {
+        int row = destination * numStops;
+        if (costs[row + origin] == Double.POSITIVE_INFINITY) {
+            return SearchResult.notFound(0);
+        }
+
+        int hops = 0;
+        for (int stop = origin; stop != destination; stop = routing.opposite(nextEdges[row + stop], stop)) {
+            hops++;
+        }
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        stops[0] = origin;
+        for (int i = 0; i < hops; i++) {
+            edges[i] = nextEdges[row + stops[i]];
+            stops[i + 1] = routing.opposite(edges[i], stops[i]);
+        }
+        return new SearchResult(stops, edges, 0);
+    }
+
+    /**
+     * Retorna a memória ocupada pelas matrizes, em bytes.
+     *
+     * @return número aproximado de bytes.
+     */
+    public long memoryBytes() {
+        return (long) costs.length * Double.BYTES + (long) nextEdges.length * Integer.BYTES;
+    }
+
+    /**
+     * Tarefa que calcula as árvores de um intervalo de destinos, dividindo-se enquanto o intervalo for grande.
+     */
+    private static class SourceRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RoutingGraph routing;
+        private final EdgeWeightTable weights;
+        private final int mask;
+        private final double shift;
+        private final double[] costs;
+        private final int[] nextEdges;
+        private final int from;
+        private final int to;
+
+        private SourceRange(RoutingGraph routing, EdgeWeightTable weights, int mask, double shift,
+                            double[] costs, int[] nextEdges, int from, int to) {
+            this.routing = routing;
+            this.weights = weights;
+            this.mask = mask;
+            this.shift = shift;
+            this.costs = costs;
+            this.nextEdges = nextEdges;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SOURCES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SourceRange(routing, weights, mask, shift, costs, nextEdges, from, middle),
+                        new SourceRange(routing, weights, mask, shift, costs, nextEdges, middle, to));
+                return;
+            }
+
+            int numStops = routing.numStops();
+            double[] searchCosts = new double[numStops];
+            boolean[] settled = new boolean[numStops];
+            IndexedMinHeap queue = new IndexedMinHeap(numStops);
+            for (int root = from; root < to; root++) {
+                tree(root, root * numStops, searchCosts, settled, queue);
+            }
+        }
+
+        /**
+         * Calcula com Dijkstra a árvore de caminhos mais curtos com raiz numa Stop, preenchendo a sua linha.
+         *
+         * @param root        identificador da Stop raiz.
+         * @param row         início da linha da raiz nas matrizes.
+         * @param searchCosts custos usados pela pesquisa (com deslocamento).
+         * @param settled     Stops já estabelecidas.
+         * @param queue       a fila de prioridade.
+         */
+        private void tree(int root, int row, double[] searchCosts, boolean[] settled, IndexedMinHeap queue) {
+            Arrays.fill(searchCosts, Double.POSITIVE_INFINITY);
+            Arrays.fill(settled, false);
+            Arrays.fill(costs, row, row + searchCosts.length, Double.POSITIVE_INFINITY);
+            Arrays.fill(nextEdges, row, row + searchCosts.length, -1);
+
+            searchCosts[root] = 0.0;
+            costs[row + root] = 0.0;
+            queue.insertOrDecrease(root, 0.0);
+            while (!queue.isEmpty()) {
+                int u = queue.poll();
+                settled[u] = true;
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    int v = routing.arcTarget(arc);
+                    if (settled[v]) {
+                        continue;
+                    }
+                    int edge = routing.arcEdge(arc);
+                    double weight = weights.weight(edge, mask);
+                    double newCost = searchCosts[u] + weight + shift;
+                    if (newCost < searchCosts[v]) {
+                        searchCosts[v] = newCost;
+                        costs[row + v] = costs[row + u] + weight;
+                        nextEdges[row + v] = edge;
+                        queue.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code BidirectionalDijkstraEngine} implementa a pesquisa de Dijkstra bidirecional sobre um
+ * {@link RoutingGraph}: uma pesquisa parte da origem e outra do destino, avançando alternadamente pela fila com
+ * a menor prioridade.
+ *
+ * Como as Routes não são orientadas, as duas pesquisas usam a mesma adjacência. Sempre que uma pesquisa alcança uma
+ * Stop já alcançada pela outra, é atualizado o melhor custo conhecido {@code mu}; a pesquisa termina quando a soma
+ * das menores prioridades das duas filas é maior ou igual a {@code mu}, o que garante que nenhum caminho mais barato
+ * pode ainda ser encontrado. Só é correta para pesos não negativos.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class BidirectionalDijkstraEngine implements ShortestPathEngine {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Bidirectional Dijkstra requires non-negative edge weights.");
+        }
+
+        int numStops = routing.numStops();
+        if (origin == destination) {
+            return new SearchResult(new int[]{origin}, new int[0], 1);
+        }
+
+        Side forward = new Side(numStops, origin);
+        Side backward = new Side(numStops, destination);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        int settledCount = 0;
+
+        while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+            if (forward.queue.peekKey() + backward.queue.peekKey() >= best) {
+                break;
+            }
+
+            Side current = forward.queue.peekKey() <= backward.queue.peekKey() ? forward : backward;
+            Side other = current == forward ? backward : forward;
+
+            int u = current.queue.poll();
+            current.settled[u] = true;
+            settledCount++;
+
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                if (current.settled[v]) {
+                    continue;
+                }
+                int edge = routing.arcEdge(arc);
+                double newCost = current.costs[u] + weights.weight(edge, mask);
+                if (newCost < current.costs[v]) {
+                    current.costs[v] = newCost;
+                    current.predecessors[v] = u;
+                    current.predecessorEdges[v] = edge;
+                    current.queue.insertOrDecrease(v, newCost);
+                }
+                if (current.costs[v] + other.costs[v] < best) {
+                    best = current.costs[v] + other.costs[v];
+                    meeting = v;
+                }
+            }
+        }
+
+        if (meeting < 0) {
+            return SearchResult.notFound(settledCount);
+        }
+        return join(forward, backward, meeting, origin, settledCount);
+    }
+
+    /**
+     * Junta os caminhos das duas pesquisas na Stop de encontro.
+     *
+     * @param forward  a pesquisa a partir da origem.
+     * @param backward a pesquisa a partir do destino.
+     * @param meeting  a Stop de encontro.
+     * @param origin   identificador da Stop de origem.
+     * @param settled  número de Stops estabelecidas pelas duas pesquisas.
+     * @return o caminho completo, da origem para o destino.
+     */
+    private SearchResult join(Side forward, Side backward, int meeting, int origin, int settled) {
+        SearchResult head = SearchResult.fromTree(meeting, forward.predecessors, forward.predecessorEdges, origin, settled);
+
+        int tailHops = 0;
+        for (int step = meeting; backward.predecessors[step] >= 0; step = backward.predecessors[step]) {
+            tailHops++;
+        }
+
+        int headHops = head.edges().length;
+        int[] stops = Arrays.copyOf(head.stops(), headHops + tailHops + 1);
+        int[] edges = Arrays.copyOf(head.edges(), headHops + tailHops);
+        int i = headHops;
+        for (int step = meeting; backward.predecessors[step] >= 0; step = backward.predecessors[step]) {
+            edges[i] = backward.predecessorEdges[step];
+            stops[++i] = backward.predecessors[step];
+        }
+        return new SearchResult(stops, edges, settled);
+    }
+
+    /**
+     * Estado de uma das direções da pesquisa.
+     */
+    private static class Side {
+        private final double[] costs;
+        private final int[] predecessors;
+        private final int[] predecessorEdges;
+        private final boolean[] settled;
+        private final IndexedMinHeap queue;
+
+        private Side(int numStops, int root) {
+            this.costs = new double[numStops];
+            this.predecessors = new int[numStops];
+            this.predecessorEdges = new int[numStops];
+            this.settled = new boolean[numStops];
+            this.queue = new IndexedMinHeap(numStops);
+            Arrays.fill(costs, Double.POSITIVE_INFINITY);
+            Arrays.fill(predecessors, -1);
+            Arrays.fill(predecessorEdges, -1);
+            costs[root] = 0.0;
+            queue.insertOrDecrease(root, 0.0);
+        }
+    }
+}
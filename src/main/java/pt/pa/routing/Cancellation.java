@@ -0,0 +1,34 @@
+package pt.pa.routing;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A classe {@code Cancellation} permite interromper cooperativamente as pesquisas longas: os ciclos principais
+ * verificam periodicamente se a thread que os executa foi interrompida e, nesse caso, abandonam a pesquisa com uma
+ * {@link CancellationException}. As estruturas guardadas em cache só são registadas depois de calculadas, pelo que
+ * uma pesquisa abandonada não deixa nenhum estado incompleto.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+final class Cancellation {
+
+    /**
+     * Número de iterações entre duas verificações (potência de dois).
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    private Cancellation() {
+    }
+
+    /**
+     * Verifica, a cada {@link #CHECK_INTERVAL} iterações, se a thread atual foi interrompida.
+     *
+     * @param iteration número da iteração atual.
+     * @throws CancellationException se a thread atual tiver sido interrompida.
+     */
+    static void checkpoint(int iteration) {
+        if ((iteration & (CHECK_INTERVAL - 1)) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The route query was cancelled.");
+        }
+    }
+}
@@ -0,0 +1,762 @@
+package pt.pa.routing;
+
+import pt.pa.TransportMask;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A classe {@code ContractionHierarchy} implementa uma hierarquia de contração personalizável (<i>customizable
+ * contraction hierarchy</i>) sobre um {@link RoutingGraph}.
+ *
+ * A preparação divide-se em duas fases:
+ * <ul>
+ *     <li><b>Contração</b> (independente dos pesos): as Stops são ordenadas por dissecção aninhada, dividindo
+ *     recursivamente a rede pela mediana das coordenadas e colocando os separadores no topo da ordem. O grafo é depois
+ *     completado com os atalhos necessários para que a ordem de eliminação não crie novos caminhos. Esta fase depende
+ *     apenas da topologia e é partilhada por todas as estratégias e máscaras de transportes.</li>
+ *     <li><b>Personalização</b>: para cada estratégia e máscara de transportes são calculados os pesos de todos os
+ *     arcos (originais e atalhos), percorrendo os triângulos inferiores por ordem crescente. Quando o estado ou a
+ *     duração de uma Route mudam, apenas esta fase é repetida; a contração não é refeita.</li>
+ * </ul>
+ *
+ * As consultas percorrem apenas os antecessores da origem e do destino na árvore de eliminação, sem fila de
+ * prioridade. A topologia pode ser gravada em disco ({@link #write(OutputStream)}) e lida no arranque
+ * ({@link #read(InputStream, RoutingGraph)}), evitando repetir a contração.
+ *
+ * Só suporta pesos não negativos.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ContractionHierarchy {
+    private static final int MAGIC = 0x43434832;
+    private static final int LEAF_SIZE = 16;
+
+    private final RoutingGraph routing;
+    private final int[] rank;
+    private final int[] parent;
+    private final int[] upStart;
+    private final int[] upTarget;
+    private final int[] arcTail;
+    private final int[] arcEdgeStart;
+    private final int[] arcEdges;
+    private final Map<Class<?>, Metric[]> metrics;
+    private final ThreadLocal<Workspace> workspaces;
+
+    /**
+     * Construtor privado a partir da ordem e da topologia já calculadas.
+     *
+     * @param routing      a fotografia do grafo.
+     * @param rank         posição de cada Stop na ordem de contração.
+     * @param upStart      início dos arcos ascendentes de cada posição.
+     * @param upTarget     posição do extremo superior de cada arco.
+     * @param arcEdgeStart início das arestas originais de cada arco.
+     * @param arcEdges     arestas originais de cada arco.
+     */
+    private ContractionHierarchy(RoutingGraph routing, int[] rank, int[] upStart, int[] upTarget, int[] arcEdgeStart, int[] arcEdges) {
+        int numStops = routing.numStops();
+        this.routing = routing;
+        this.rank = rank;
+        this.upStart = upStart;
+        this.upTarget = upTarget;
+        this.arcEdgeStart = arcEdgeStart;
+        this.arcEdges = arcEdges;
+        this.metrics = new HashMap<>();
+        this.workspaces = ThreadLocal.withInitial(() -> new Workspace(routing.numStops()));
+
+        this.parent = new int[numStops];
+        this.arcTail = new int[upTarget.length];
+        for (int r = 0; r < numStops; r++) {
+            parent[r] = upStart[r] < upStart[r + 1] ? upTarget[upStart[r]] : -1;
+            for (int arc = upStart[r]; arc < upStart[r + 1]; arc++) {
+                arcTail[arc] = r;
+            }
+        }
+    }
+
+    /**
+     * Constrói a hierarquia (fase de contração) de uma fotografia do grafo.
+     *
+     * @param routing a fotografia do grafo.
+     * @return a hierarquia, ainda sem pesos personalizados.
+     */
+    public static ContractionHierarchy build(RoutingGraph routing) {
+        int numStops = routing.numStops();
+        int[] rank = nestedDissectionOrder(routing);
+
+        int[][] up = new int[numStops][];
+        for (int stop = 0; stop < numStops; stop++) {
+            int[] neighbours = new int[routing.degree(stop)];
+            int count = 0;
+            for (int arc = routing.firstArc(stop); arc < routing.endArc(stop); arc++) {
+                int neighbour = rank[routing.arcTarget(arc)];
+                if (neighbour > rank[stop]) {
+                    neighbours[count++] = neighbour;
+                }
+            }
+            up[rank[stop]] = distinctSorted(neighbours, count);
+        }
+
+        for (int r = 0; r < numStops; r++) {
+            if (up[r].length > 1) {
+                int p = up[r][0];
+                up[p] = union(up[p], up[r], 1);
+            }
+        }
+
+        int[] upStart = new int[numStops + 1];
+        for (int r = 0; r < numStops; r++) {
+            upStart[r + 1] = upStart[r] + up[r].length;
+        }
+        int[] upTarget = new int[upStart[numStops]];
+        for (int r = 0; r < numStops; r++) {
+            System.arraycopy(up[r], 0, upTarget, upStart[r], up[r].length);
+        }
+
+        int[] arcEdgeStart = new int[upTarget.length + 1];
+        int[] edgeArc = new int[routing.numEdges()];
+        for (int e = 0; e < routing.numEdges(); e++) {
+            int a = rank[routing.edgeSource(e)];
+            int b = rank[routing.edgeTarget(e)];
+            edgeArc[e] = a == b ? -1 : findArc(upStart, upTarget, Math.min(a, b), Math.max(a, b));
+            if (edgeArc[e] >= 0) {
+                arcEdgeStart[edgeArc[e] + 1]++;
+            }
+        }
+        for (int arc = 0; arc < upTarget.length; arc++) {
+            arcEdgeStart[arc + 1] += arcEdgeStart[arc];
+        }
+        int[] arcEdges = new int[arcEdgeStart[upTarget.length]];
+        int[] next = Arrays.copyOf(arcEdgeStart, upTarget.length);
+        for (int e = 0; e < routing.numEdges(); e++) {
+            if (edgeArc[e] >= 0) {
+                arcEdges[next[edgeArc[e]]++] = e;
+            }
+        }
+
+        return new ContractionHierarchy(routing, rank, upStart, upTarget, arcEdgeStart, arcEdges);
+    }
+
+    /**
+     * Retorna a fotografia do grafo a que a hierarquia pertence.
+     *
+     * @return a fotografia do grafo.
+     */
+    public RoutingGraph getRoutingGraph() {
+        return routing;
+    }
+
+    /**
+     * Retorna a posição de uma Stop na ordem de contração. As Stops contraídas por último, nos separadores de topo
+     * da dissecção, são as que cobrem mais caminhos mais curtos.
+     *
+     * @param stop identificador da Stop.
+     * @return a posição da Stop, entre {@code 0} e {@code numStops - 1}.
+     */
+    public int rank(int stop) {
+        return rank[stop];
+    }
+
+    /**
+     * Retorna o número de arcos da hierarquia (arestas originais e atalhos).
+     *
+     * @return número de arcos.
+     */
+    public int numArcs() {
+        return upTarget.length;
+    }
+
+    /**
+     * Retorna o número de atalhos, isto é, arcos sem aresta original correspondente.
+     *
+     * @return número de atalhos.
+     */
+    public int numShortcuts() {
+        int shortcuts = 0;
+        for (int arc = 0; arc < upTarget.length; arc++) {
+            if (arcEdgeStart[arc] == arcEdgeStart[arc + 1]) {
+                shortcuts++;
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Marca os pesos personalizados como desatualizados, obrigando a repetir a fase de personalização na próxima
+     * consulta. Chamado pela fotografia quando o estado ou a duração de uma Route mudam.
+     */
+    void invalidateMetrics() {
+        for (Metric[] byMask : metrics.values()) {
+            for (Metric metric : byMask) {
+                if (metric != null) {
+                    metric.stale = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Procura o caminho de menor custo entre duas Stops, personalizando os pesos da estratégia e máscara se necessário.
+     *
+     * @param weights     a tabela de pesos da estratégia.
+     * @param mask        bits da máscara de transportes.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o resultado da pesquisa; o número de Stops estabelecidas é o número de Stops percorridas.
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public SearchResult findPath(EdgeWeightTable weights, int mask, int origin, int destination) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Contraction hierarchies require non-negative edge weights.");
+        }
+        Metric metric = customize(weights, mask);
+
+        Workspace workspace = workspaces.get();
+        try {
+            return search(metric, workspace, origin, destination);
+        } finally {
+            workspace.reset(parent, rank[origin], rank[destination]);
+        }
+    }
+
+    /**
+     * Executa a consulta sobre os antecessores da origem e do destino na árvore de eliminação.
+     *
+     * @param metric      os pesos personalizados.
+     * @param workspace   os arrays de trabalho da thread atual.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o resultado da pesquisa.
+     */
+    private SearchResult search(Metric metric, Workspace workspace, int origin, int destination) {
+        double[] forward = workspace.forward;
+        double[] backward = workspace.backward;
+        int[] forwardArc = workspace.forwardArc;
+        int[] backwardArc = workspace.backwardArc;
+
+        int source = rank[origin];
+        int target = rank[destination];
+        forward[source] = 0.0;
+        backward[target] = 0.0;
+        int scanned = upwardSearch(metric, source, forward, forwardArc) + upwardSearch(metric, target, backward, backwardArc);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        for (int r = source; r >= 0; r = parent[r]) {
+            if (forward[r] + backward[r] < best) {
+                best = forward[r] + backward[r];
+                meeting = r;
+            }
+        }
+        if (meeting < 0) {
+            return SearchResult.notFound(scanned);
+        }
+
+        IntList edges = new IntList();
+        int[] chain = new int[0];
+        int length = 0;
+        for (int r = meeting; r != source; r = arcTail[forwardArc[r]]) {
+            if (length == chain.length) {
+                chain = Arrays.copyOf(chain, Math.max(8, length * 2));
+            }
+            chain[length++] = forwardArc[r];
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            unpack(metric, chain[i], true, edges);
+        }
+        for (int r = meeting; r != target; r = arcTail[backwardArc[r]]) {
+            unpack(metric, backwardArc[r], false, edges);
+        }
+
+        int[] pathEdges = edges.toArray();
+        int[] stops = new int[pathEdges.length + 1];
+        stops[0] = origin;
+        for (int i = 0; i < pathEdges.length; i++) {
+            stops[i + 1] = routing.opposite(pathEdges[i], stops[i]);
+        }
+        return new SearchResult(stops, pathEdges, scanned);
+    }
+
+    /**
+     * Percorre os antecessores de uma posição na árvore de eliminação, relaxando os seus arcos ascendentes.
+     *
+     * @param metric     os pesos personalizados.
+     * @param start      posição inicial.
+     * @param costs      custos por posição.
+     * @param arcs       arco usado para chegar a cada posição.
+     * @return número de posições percorridas.
+     */
+    private int upwardSearch(Metric metric, int start, double[] costs, int[] arcs) {
+        int scanned = 0;
+        for (int r = start; r >= 0; r = parent[r]) {
+            scanned++;
+            double cost = costs[r];
+            if (cost == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            for (int arc = upStart[r]; arc < upStart[r + 1]; arc++) {
+                double newCost = cost + metric.weight[arc];
+                int next = upTarget[arc];
+                if (newCost < costs[next]) {
+                    costs[next] = newCost;
+                    arcs[next] = arc;
+                }
+            }
+        }
+        return scanned;
+    }
+
+    /**
+     * Desdobra um arco nas arestas originais que representa.
+     *
+     * @param metric    os pesos personalizados.
+     * @param arc       o arco a desdobrar.
+     * @param fromLower {@code true} para percorrer do extremo inferior para o superior.
+     * @param edges     lista onde são acumuladas as arestas, pela ordem de percurso.
+     */
+    private void unpack(Metric metric, int arc, boolean fromLower, IntList edges) {
+        int middle = metric.middle[arc];
+        if (middle < 0) {
+            edges.add(metric.edge[arc]);
+            return;
+        }
+        int lowerArc = findArc(upStart, upTarget, middle, arcTail[arc]);
+        int upperArc = findArc(upStart, upTarget, middle, upTarget[arc]);
+        if (fromLower) {
+            unpack(metric, lowerArc, false, edges);
+            unpack(metric, upperArc, true, edges);
+        } else {
+            unpack(metric, upperArc, false, edges);
+            unpack(metric, lowerArc, true, edges);
+        }
+    }
+
+    /**
+     * Obtém os pesos personalizados de uma estratégia e máscara, repetindo a fase de personalização se ainda não
+     * existirem ou estiverem desatualizados.
+     *
+     * @param weights a tabela de pesos da estratégia.
+     * @param mask    bits da máscara de transportes.
+     * @return os pesos personalizados.
+     */
+    private Metric customize(EdgeWeightTable weights, int mask) {
+        Metric[] byMask = metrics.computeIfAbsent(weights.getStrategy().getClass(), key -> new Metric[TransportMask.SUBSETS]);
+        Metric metric = byMask[mask];
+        if (metric == null) {
+            metric = new Metric(upTarget.length);
+            byMask[mask] = metric;
+        } else if (!metric.stale) {
+            return metric;
+        }
+
+        for (int arc = 0; arc < upTarget.length; arc++) {
+            metric.weight[arc] = Double.POSITIVE_INFINITY;
+            metric.edge[arc] = -1;
+            metric.middle[arc] = -1;
+            for (int i = arcEdgeStart[arc]; i < arcEdgeStart[arc + 1]; i++) {
+                double weight = weights.weight(arcEdges[i], mask);
+                if (weight < metric.weight[arc] || metric.edge[arc] < 0) {
+                    metric.weight[arc] = weight;
+                    metric.edge[arc] = arcEdges[i];
+                }
+            }
+        }
+
+        // Triângulos inferiores: os vizinhos superiores de r seguintes a v são também vizinhos superiores de v,
+        // pelo que o arco v -> u é encontrado percorrendo as duas listas ordenadas em simultâneo
+        for (int r = 0; r < rank.length; r++) {
+            for (int i = upStart[r]; i < upStart[r + 1]; i++) {
+                double lower = metric.weight[i];
+                if (lower == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int arc = upStart[upTarget[i]];
+                for (int j = i + 1; j < upStart[r + 1]; j++) {
+                    while (upTarget[arc] < upTarget[j]) {
+                        arc++;
+                    }
+                    double candidate = lower + metric.weight[j];
+                    if (candidate < metric.weight[arc]) {
+                        metric.weight[arc] = candidate;
+                        metric.middle[arc] = r;
+                    }
+                }
+            }
+        }
+
+        metric.stale = false;
+        return metric;
+    }
+
+    /**
+     * Grava a topologia da hierarquia (ordem, arcos e arestas originais) num formato binário compacto.
+     * Os pesos personalizados não são gravados, pois são recalculados rapidamente na primeira consulta.
+     *
+     * @param out o fluxo de saída.
+     * @throws IOException se ocorrer um erro de escrita.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(rank.length);
+        data.writeInt(routing.numEdges());
+        data.writeInt(upTarget.length);
+        data.writeInt(arcEdges.length);
+        data.writeLong(checksum(routing));
+        for (int stop = 0; stop < rank.length; stop++) {
+            data.writeUTF(routing.vertex(stop).element().getStopCode());
+            data.writeInt(rank[stop]);
+        }
+        for (int value : upStart) {
+            data.writeInt(value);
+        }
+        for (int value : upTarget) {
+            data.writeInt(value);
+        }
+        for (int value : arcEdgeStart) {
+            data.writeInt(value);
+        }
+        for (int value : arcEdges) {
+            data.writeInt(value);
+        }
+        data.flush();
+    }
+
+    /**
+     * Lê uma hierarquia gravada com {@link #write(OutputStream)}, validando que corresponde à fotografia fornecida
+     * (Stops, ordem das arestas e atributos das Routes) e que a topologia lida é consistente: a ordem é uma
+     * permutação, os índices estão dentro dos limites, os arcos de cada posição são ascendentes e ordenados, cada
+     * aresta original está no arco que liga os seus extremos e a árvore de eliminação está completa.
+     *
+     * @param in      o fluxo de entrada.
+     * @param routing a fotografia do grafo atual.
+     * @return a hierarquia lida.
+     * @throws IOException se ocorrer um erro de leitura, o ficheiro estiver corrompido ou a hierarquia não
+     *                     corresponder à fotografia.
+     */
+    public static ContractionHierarchy read(InputStream in, RoutingGraph routing) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a contraction hierarchy file.");
+        }
+        int numStops = data.readInt();
+        int numEdges = data.readInt();
+        int numArcs = data.readInt();
+        int numArcEdges = data.readInt();
+        long checksum = data.readLong();
+        if (numStops != routing.numStops() || numEdges != routing.numEdges() || checksum != checksum(routing)) {
+            throw new IOException("Contraction hierarchy does not match the routing graph.");
+        }
+        if (numArcs < 0 || numArcs > (long) numStops * (numStops - 1) / 2 || numArcEdges < 0 || numArcEdges > numEdges) {
+            throw new IOException("Malformed contraction hierarchy file.");
+        }
+
+        int[] rank = new int[numStops];
+        boolean[] ranked = new boolean[numStops];
+        for (int stop = 0; stop < numStops; stop++) {
+            if (!data.readUTF().equals(routing.vertex(stop).element().getStopCode())) {
+                throw new IOException("Contraction hierarchy does not match the routing graph.");
+            }
+            rank[stop] = readIndex(data, numStops);
+            if (ranked[rank[stop]]) {
+                throw new IOException("Malformed contraction hierarchy file.");
+            }
+            ranked[rank[stop]] = true;
+        }
+
+        int[] upStart = readOffsets(data, numStops + 1, numArcs);
+        int[] upTarget = readInts(data, numArcs);
+        for (int r = 0; r < numStops; r++) {
+            for (int arc = upStart[r]; arc < upStart[r + 1]; arc++) {
+                int lower = arc == upStart[r] ? r : upTarget[arc - 1];
+                if (upTarget[arc] <= lower || upTarget[arc] >= numStops) {
+                    throw new IOException("Malformed contraction hierarchy file.");
+                }
+            }
+        }
+        // As consultas e o desdobramento dos atalhos assumem a árvore de eliminação completa: os vizinhos superiores
+        // de cada posição, além do pai, são vizinhos superiores do pai
+        for (int r = 0; r < numStops; r++) {
+            for (int arc = upStart[r] + 1; arc < upStart[r + 1]; arc++) {
+                if (findArc(upStart, upTarget, upTarget[upStart[r]], upTarget[arc]) < 0) {
+                    throw new IOException("Malformed contraction hierarchy file.");
+                }
+            }
+        }
+
+        int[] arcEdgeStart = readOffsets(data, numArcs + 1, numArcEdges);
+        int[] arcEdges = new int[numArcEdges];
+        boolean[] listed = new boolean[numEdges];
+        for (int arc = 0; arc < numArcs; arc++) {
+            for (int i = arcEdgeStart[arc]; i < arcEdgeStart[arc + 1]; i++) {
+                int edge = readIndex(data, numEdges);
+                int a = rank[routing.edgeSource(edge)];
+                int b = rank[routing.edgeTarget(edge)];
+                if (listed[edge] || a == b || findArc(upStart, upTarget, Math.min(a, b), Math.max(a, b)) != arc) {
+                    throw new IOException("Contraction hierarchy does not match the routing graph.");
+                }
+                listed[edge] = true;
+                arcEdges[i] = edge;
+            }
+        }
+        for (int edge = 0; edge < numEdges; edge++) {
+            if (!listed[edge] && routing.edgeSource(edge) != routing.edgeTarget(edge)) {
+                throw new IOException("Contraction hierarchy does not match the routing graph.");
+            }
+        }
+        return new ContractionHierarchy(routing, rank, upStart, upTarget, arcEdgeStart, arcEdges);
+    }
+
+    /**
+     * Calcula uma soma de controlo da ordem das arestas e dos atributos das suas Routes, de que dependem os pesos de
+     * todas as estratégias.
+     */
+    private static long checksum(RoutingGraph routing) {
+        long hash = 17;
+        for (int e = 0; e < routing.numEdges(); e++) {
+            hash = hash * 31 + routing.edgeSource(e);
+            hash = hash * 31 + routing.edgeTarget(e);
+            for (int r = routing.firstRoute(e); r < routing.endRoute(e); r++) {
+                hash = hash * 31 + routing.routeTransport(r);
+                hash = hash * 31 + Double.doubleToLongBits(routing.routeDistance(r));
+                hash = hash * 31 + routing.routeDuration(r);
+                hash = hash * 31 + Double.doubleToLongBits(routing.routeSustainability(r));
+                hash = hash * 31 + (routing.routeState(r) ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    private static int[] readInts(DataInputStream data, int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = data.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Lê um array de inícios (CSR): começa em {@code 0}, nunca diminui e termina em {@code total}.
+     */
+    private static int[] readOffsets(DataInputStream data, int length, int total) throws IOException {
+        int[] offsets = readInts(data, length);
+        for (int i = 0; i < length; i++) {
+            int previous = i == 0 ? 0 : offsets[i - 1];
+            if (offsets[i] < previous || offsets[i] > total || (i == 0 && offsets[i] != 0)) {
+                throw new IOException("Malformed contraction hierarchy file.");
+            }
+        }
+        if (offsets[length - 1] != total) {
+            throw new IOException("Malformed contraction hierarchy file.");
+        }
+        return offsets;
+    }
+
+    private static int readIndex(DataInputStream data, int bound) throws IOException {
+        int value = data.readInt();
+        if (value < 0 || value >= bound) {
+            throw new IOException("Malformed contraction hierarchy file.");
+        }
+        return value;
+    }
+
+    /**
+     * Calcula a ordem de contração por dissecção aninhada geométrica.
+     *
+     * @param routing a fotografia do grafo.
+     * @return a posição de cada Stop na ordem.
+     */
+    private static int[] nestedDissectionOrder(RoutingGraph routing) {
+        int numStops = routing.numStops();
+        double[] x = new double[numStops];
+        double[] y = new double[numStops];
+        for (int stop = 0; stop < numStops; stop++) {
+            double latitude = routing.vertex(stop).element().getLatitude();
+            x[stop] = routing.vertex(stop).element().getLongitude() * Math.cos(Math.toRadians(latitude));
+            y[stop] = latitude;
+        }
+
+        int[] rank = new int[numStops];
+        int[] stamp = new int[numStops];
+        int[] counter = {0, 0};
+        Integer[] stops = new Integer[numStops];
+        for (int stop = 0; stop < numStops; stop++) {
+            stops[stop] = stop;
+        }
+        dissect(routing, stops, 0, numStops, x, y, stamp, counter, rank);
+        return rank;
+    }
+
+    /**
+     * Ordena recursivamente um subconjunto de Stops: primeiro as duas metades e depois o separador entre elas.
+     *
+     * @param routing a fotografia do grafo.
+     * @param stops   array de Stops; o subconjunto é {@code stops[from, to)}.
+     * @param from    início do subconjunto.
+     * @param to      fim do subconjunto (exclusive).
+     * @param x       coordenada horizontal de cada Stop.
+     * @param y       coordenada vertical de cada Stop.
+     * @param stamp   marca da metade a que cada Stop pertence.
+     * @param counter próxima posição livre ({@code counter[0]}) e última marca usada ({@code counter[1]}).
+     * @param rank    posição atribuída a cada Stop.
+     */
+    private static void dissect(RoutingGraph routing, Integer[] stops, int from, int to, double[] x, double[] y,
+                                int[] stamp, int[] counter, int[] rank) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                rank[stops[i]] = counter[0]++;
+            }
+            return;
+        }
+
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minX = Math.min(minX, x[stops[i]]);
+            maxX = Math.max(maxX, x[stops[i]]);
+            minY = Math.min(minY, y[stops[i]]);
+            maxY = Math.max(maxY, y[stops[i]]);
+        }
+        double[] key = maxX - minX >= maxY - minY ? x : y;
+        Arrays.sort(stops, from, to, Comparator.comparingDouble(stop -> key[stop]));
+
+        int middle = (from + to) >>> 1;
+        int mark = ++counter[1];
+        for (int i = middle; i < to; i++) {
+            stamp[stops[i]] = mark;
+        }
+
+        // O separador é formado pelas Stops da primeira metade com vizinhos na segunda
+        int separatorStart = middle;
+        for (int i = middle - 1; i >= from; i--) {
+            int stop = stops[i];
+            for (int arc = routing.firstArc(stop); arc < routing.endArc(stop); arc++) {
+                if (stamp[routing.arcTarget(arc)] == mark) {
+                    stops[i] = stops[--separatorStart];
+                    stops[separatorStart] = stop;
+                    break;
+                }
+            }
+        }
+
+        Integer[] separator = Arrays.copyOfRange(stops, separatorStart, middle);
+        dissect(routing, stops, from, separatorStart, x, y, stamp, counter, rank);
+        dissect(routing, stops, middle, to, x, y, stamp, counter, rank);
+        for (int stop : separator) {
+            rank[stop] = counter[0]++;
+        }
+    }
+
+    /**
+     * Procura o arco entre duas posições.
+     *
+     * @param upStart  início dos arcos ascendentes de cada posição.
+     * @param upTarget posição do extremo superior de cada arco (ordenado por posição).
+     * @param lower    a posição inferior.
+     * @param upper    a posição superior.
+     * @return o índice do arco, ou um valor negativo se não existir.
+     */
+    private static int findArc(int[] upStart, int[] upTarget, int lower, int upper) {
+        int arc = Arrays.binarySearch(upTarget, upStart[lower], upStart[lower + 1], upper);
+        return arc >= 0 ? arc : -1;
+    }
+
+    /**
+     * Retorna os primeiros {@code count} valores, ordenados e sem repetições.
+     */
+    private static int[] distinctSorted(int[] values, int count) {
+        Arrays.sort(values, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || values[distinct - 1] != values[i]) {
+                values[distinct++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, distinct);
+    }
+
+    /**
+     * Retorna a união ordenada de {@code a} com {@code b[from..]}, ambos ordenados.
+     */
+    private static int[] union(int[] a, int[] b, int from) {
+        int[] result = new int[a.length + b.length - from];
+        int i = 0, j = from, k = 0;
+        while (i < a.length || j < b.length) {
+            int value;
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                value = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                value = b[j++];
+            } else {
+                value = a[i++];
+                j++;
+            }
+            result[k++] = value;
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /**
+     * Pesos personalizados de uma estratégia e máscara de transportes.
+     */
+    private static class Metric {
+        private final double[] weight;
+        private final int[] middle;
+        private final int[] edge;
+        private boolean stale;
+
+        private Metric(int numArcs) {
+            this.weight = new double[numArcs];
+            this.middle = new int[numArcs];
+            this.edge = new int[numArcs];
+        }
+    }
+
+    /**
+     * Arrays de trabalho de uma thread, reutilizados entre consultas. Como uma consulta só altera os antecessores
+     * da origem e do destino, basta repor essas posições no fim.
+     */
+    private static class Workspace {
+        private final double[] forward;
+        private final double[] backward;
+        private final int[] forwardArc;
+        private final int[] backwardArc;
+
+        private Workspace(int numStops) {
+            this.forward = new double[numStops];
+            this.backward = new double[numStops];
+            this.forwardArc = new int[numStops];
+            this.backwardArc = new int[numStops];
+            Arrays.fill(forward, Double.POSITIVE_INFINITY);
+            Arrays.fill(backward, Double.POSITIVE_INFINITY);
+        }
+
+        private void reset(int[] parent, int source, int target) {
+            for (int r = source; r >= 0; r = parent[r]) {
+                forward[r] = Double.POSITIVE_INFINITY;
+            }
+            for (int r = target; r >= 0; r = parent[r]) {
+                backward[r] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * Lista de inteiros em crescimento, usada no desdobramento dos atalhos.
+     */
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code ContractionHierarchyEngine} responde às consultas de caminho mais curto através da
+ * {@link ContractionHierarchy} da fotografia do grafo, construída na primeira consulta (ou lida do disco) e
+ * personalizada para cada estratégia e máscara de transportes.
+ *
+ * Só suporta pesos não negativos.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ContractionHierarchyEngine implements ShortestPathEngine {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        return routing.contractionHierarchy().findPath(weights, mask, origin, destination);
+    }
+}
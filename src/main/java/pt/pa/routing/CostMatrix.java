@@ -0,0 +1,238 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A classe {@code CostMatrix} guarda os custos mínimos entre um conjunto de Stops de origem e um conjunto de Stops de
+ * destino de um {@link RoutingGraph}, para uma tabela de pesos e uma máscara de transportes, num único array
+ * primitivo ordenado por linhas ({@code custos[linha * numDestinations() + coluna]}).
+ *
+ * A matriz é calculada com uma pesquisa de Dijkstra por origem, que termina assim que todos os destinos estão
+ * estabelecidos. As origens são distribuídas pelas threads de um {@link ForkJoinPool} e cada tarefa reutiliza os
+ * seus arrays de trabalho, repondo apenas as Stops alcançadas na pesquisa anterior.
+ *
+ * Quando a máscara tem pesos negativos, as pesquisas usam os pesos deslocados de {@link ShiftedWeights}, como no
+ * {@link ShiftedDijkstraEngine}, com a mesma aproximação; os custos guardados são a soma dos pesos originais das
+ * arestas do caminho encontrado.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class CostMatrix {
+    private static final int ORIGINS_PER_TASK = 4;
+
+    private final int[] origins;
+    private final int[] destinations;
+    private final double[] costs;
+
+    /**
+     * Construtor privado; as instâncias são criadas através de {@link #compute}.
+     *
+     * @param origins      identificadores das Stops de origem (uma por linha).
+     * @param destinations identificadores das Stops de destino (uma por coluna).
+     * @param costs        custos ordenados por linhas.
+     */
+    private CostMatrix(int[] origins, int[] destinations, double[] costs) {
+        this.origins = origins;
+        this.destinations = destinations;
+        this.costs = costs;
+    }
+
+    /**
+     * Calcula os custos mínimos entre cada origem e cada destino.
+     *
+     * @param routing      a fotografia do grafo.
+     * @param weights      a tabela de pesos.
+     * @param mask         bits da máscara de transportes.
+     * @param origins      identificadores das Stops de origem.
+     * @param destinations identificadores das Stops de destino.
+     * @param pool         o conjunto de threads onde as pesquisas são executadas.
+     * @return a matriz de custos.
+     */
+    public static CostMatrix compute(RoutingGraph routing, EdgeWeightTable weights, int mask,
+                                     int[] origins, int[] destinations, ForkJoinPool pool) {
+        double shift = weights.shiftedWeights(mask).shift();
+
+        boolean[] target = new boolean[routing.numStops()];
+        int numTargets = 0;
+        for (int destination : destinations) {
+            if (!target[destination]) {
+                target[destination] = true;
+                numTargets++;
+            }
+        }
+
+        int[] originCopy = origins.clone();
+        int[] destinationCopy = destinations.clone();
+        double[] costs = new double[origins.length * destinations.length];
+        pool.invoke(new OriginRange(routing, weights, mask, shift, originCopy, destinationCopy, target, numTargets,
+                costs, 0, origins.length));
+        return new CostMatrix(originCopy, destinationCopy, costs);
+    }
+
+    /**
+     * Retorna o número de origens (linhas).
+     *
+     * @return número de origens.
+     */
+    public int numOrigins() {
+        return origins.length;
+    }
+
+    /**
+     * Retorna o número de destinos (colunas).
+     *
+     * @return número de destinos.
+     */
+    public int numDestinations() {
+        return destinations.length;
+    }
+
+    /**
+     * Retorna a Stop de origem de uma linha.
+     *
+     * @param row índice da linha.
+     * @return identificador da Stop.
+     */
+    public int origin(int row) {
+        return origins[row];
+    }
+
+    /**
+     * Retorna a Stop de destino de uma coluna.
+     *
+     * @param column índice da coluna.
+     * @return identificador da Stop.
+     */
+    public int destination(int column) {
+        return destinations[column];
+    }
+
+    /**
+     * Retorna o custo mínimo entre a origem de uma linha e o destino de uma coluna.
+     *
+     * @param row    índice da linha.
+     * @param column índice da coluna.
+     * @return o custo, ou {@link Double#POSITIVE_INFINITY} se não houver caminho.
+     */
+    public double cost(int row, int column) {
+        return costs[row * destinations.length + column];
+    }
+
+    /**
+     * Retorna uma cópia dos custos, ordenados por linhas.
+     *
+     * @return array com {@code numOrigins() * numDestinations()} custos.
+     */
+    public double[] toArray() {
+        return costs.clone();
+    }
+
+    /**
+     * Tarefa que calcula as linhas de um intervalo de origens, dividindo-se enquanto o intervalo for grande.
+     */
+    private static class OriginRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RoutingGraph routing;
+        private final EdgeWeightTable weights;
+        private final int mask;
+        private final double shift;
+        private final int[] origins;
+        private final int[] destinations;
+        private final boolean[] target;
+        private final int numTargets;
+        private final double[] costs;
+        private final int from;
+        private final int to;
+
+        private OriginRange(RoutingGraph routing, EdgeWeightTable weights, int mask, double shift,
+                            int[] origins, int[] destinations, boolean[] target, int numTargets, double[] costs,
+                            int from, int to) {
+            this.routing = routing;
+            this.weights = weights;
+            this.mask = mask;
+            this.shift = shift;
+            this.origins = origins;
+            this.destinations = destinations;
+            this.target = target;
+            this.numTargets = numTargets;
+            this.costs = costs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ORIGINS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new OriginRange(routing, weights, mask, shift, origins, destinations, target, numTargets, costs, from, middle),
+                        new OriginRange(routing, weights, mask, shift, origins, destinations, target, numTargets, costs, middle, to));
+                return;
+            }
+
+            int numStops = routing.numStops();
+            double[] searchCosts = new double[numStops];
+            double[] pathCosts = new double[numStops];
+            boolean[] settled = new boolean[numStops];
+            int[] reached = new int[numStops];
+            Arrays.fill(searchCosts, Double.POSITIVE_INFINITY);
+            IndexedMinHeap queue = new IndexedMinHeap(numStops);
+
+            for (int row = from; row < to; row++) {
+                int numReached = search(origins[row], searchCosts, pathCosts, settled, reached, queue);
+                int base = row * destinations.length;
+                for (int column = 0; column < destinations.length; column++) {
+                    int destination = destinations[column];
+                    costs[base + column] = settled[destination] ? pathCosts[destination] : Double.POSITIVE_INFINITY;
+                }
+                for (int i = 0; i < numReached; i++) {
+                    searchCosts[reached[i]] = Double.POSITIVE_INFINITY;
+                    settled[reached[i]] = false;
+                }
+                queue.clear();
+            }
+        }
+
+        /**
+         * Executa Dijkstra a partir de uma origem até estabelecer todos os destinos.
+         *
+         * @return número de Stops alcançadas, guardadas em {@code reached}.
+         */
+        private int search(int origin, double[] searchCosts, double[] pathCosts, boolean[] settled, int[] reached,
+                           IndexedMinHeap queue) {
+            int numReached = 0;
+            int remaining = numTargets;
+            searchCosts[origin] = 0.0;
+            pathCosts[origin] = 0.0;
+            reached[numReached++] = origin;
+            queue.insertOrDecrease(origin, 0.0);
+
+            while (!queue.isEmpty()) {
+                int u = queue.poll();
+                settled[u] = true;
+                if (target[u] && --remaining == 0) {
+                    break;
+                }
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    int v = routing.arcTarget(arc);
+                    if (settled[v]) {
+                        continue;
+                    }
+                    double weight = weights.weight(routing.arcEdge(arc), mask);
+                    double newCost = searchCosts[u] + weight + shift;
+                    if (newCost < searchCosts[v]) {
+                        if (searchCosts[v] == Double.POSITIVE_INFINITY) {
+                            reached[numReached++] = v;
+                        }
+                        searchCosts[v] = newCost;
+                        pathCosts[v] = pathCosts[u] + weight;
+                        queue.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+            return numReached;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A classe {@code DeltaSteppingEngine} implementa o algoritmo <i>delta-stepping</i> de Meyer e Sanders sobre um
+ * {@link RoutingGraph}, com as relaxações de cada fase distribuídas pelas threads de um {@link ForkJoinPool}.
+ *
+ * As Stops alcançadas são agrupadas em baldes de largura {@code delta} segundo o seu custo. Os baldes são processados
+ * por ordem: as arestas leves (peso até {@code delta}) das Stops do balde atual são relaxadas em paralelo, repetindo
+ * enquanto o balde receber novas Stops, e no fim as arestas pesadas de todas as Stops retiradas do balde são relaxadas
+ * uma única vez. Os custos ficam num {@link AtomicLongArray} e são atualizados com {@code compareAndSet}; como os
+ * custos não são negativos, a ordem dos seus bits coincide com a ordem dos valores. Os baldes são circulares, com o
+ * número necessário para cobrir o maior peso de aresta.
+ *
+ * Os predecessores não são registados durante a pesquisa, para não haver escritas concorrentes por Stop: o caminho é
+ * reconstruído no fim por uma pesquisa em largura a partir do destino sobre as arestas justas
+ * ({@code custo(u) + peso = custo(v)}). A pesquisa de um caminho termina assim que o balde do destino é fechado.
+ *
+ * Só é correto para pesos não negativos, pelo que recusa tabelas com arestas de peso negativo para a máscara de
+ * transportes pedida. Compensa em redes grandes, em que cada balde tem Stops suficientes para dividir o trabalho.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class DeltaSteppingEngine implements ShortestPathEngine {
+    private static final int STOPS_PER_TASK = 256;
+    private static final int MAX_BUCKETS = 1 << 22;
+
+    private final ForkJoinPool pool;
+    private final double delta;
+
+    /**
+     * Construtor que usa o {@link ForkJoinPool#commonPool()} e uma largura de balde automática.
+     */
+    public DeltaSteppingEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construtor que usa um conjunto de threads e uma largura de balde automática, igual ao peso médio das arestas
+     * com Routes válidas.
+     *
+     * @param pool o conjunto de threads onde as relaxações são executadas.
+     */
+    public DeltaSteppingEngine(ForkJoinPool pool) {
+        this.pool = pool;
+        this.delta = Double.NaN;
+    }
+
+    /**
+     * Construtor que usa um conjunto de threads e uma largura de balde fixa.
+     *
+     * @param pool  o conjunto de threads onde as relaxações são executadas.
+     * @param delta largura de cada balde, na unidade dos pesos.
+     * @throws IllegalArgumentException se a largura não for positiva e finita.
+     */
+    public DeltaSteppingEngine(ForkJoinPool pool, double delta) {
+        if (!(delta > 0) || delta == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("Delta must be positive and finite.");
+        }
+        this.pool = pool;
+        this.delta = delta;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        Search search = start(routing, weights, mask);
+        search.run(origin, destination);
+        return search.path(origin, destination);
+    }
+
+    /**
+     * Calcula o custo mínimo de uma Stop de origem até todas as Stops.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos da estratégia.
+     * @param mask    bits da máscara de transportes.
+     * @param origin  identificador da Stop de origem.
+     * @return o custo de cada Stop ({@link Double#POSITIVE_INFINITY} se não for alcançável).
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public double[] costs(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin) {
+        Search search = start(routing, weights, mask);
+        search.run(origin, -1);
+        double[] costs = new double[routing.numStops()];
+        for (int v = 0; v < costs.length; v++) {
+            costs[v] = search.cost(v);
+        }
+        return costs;
+    }
+
+    /**
+     * Valida os pesos e prepara uma pesquisa com a largura de balde adequada.
+     */
+    private Search start(RoutingGraph routing, EdgeWeightTable weights, int mask) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Delta-stepping requires non-negative edge weights.");
+        }
+
+        double maxWeight = 0.0;
+        double sum = 0.0;
+        int count = 0;
+        for (int e = 0; e < routing.numEdges(); e++) {
+            double weight = weights.weight(e, mask);
+            if (weight != Double.POSITIVE_INFINITY) {
+                maxWeight = Math.max(maxWeight, weight);
+                sum += weight;
+                count++;
+            }
+        }
+        double width = delta;
+        if (Double.isNaN(width)) {
+            width = sum > 0 ? sum / count : 1.0;
+        }
+        double buckets = Math.floor(maxWeight / width) + 2;
+        if (buckets > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Delta is too small for the edge weights.");
+        }
+        return new Search(routing, weights, mask, width, (int) buckets, pool);
+    }
+
+    /**
+     * Estado de uma pesquisa.
+     */
+    private static class Search {
+        private final RoutingGraph routing;
+        private final EdgeWeightTable weights;
+        private final int mask;
+        private final double delta;
+        private final ForkJoinPool pool;
+        private final AtomicLongArray costs;
+        private final IntList[] buckets;
+        private final int[] frontierStamp;
+        private final int[] removedStamp;
+        private int stamp;
+        private int settled;
+
+        private Search(RoutingGraph routing, EdgeWeightTable weights, int mask, double delta, int numBuckets,
+                       ForkJoinPool pool) {
+            this.routing = routing;
+            this.weights = weights;
+            this.mask = mask;
+            this.delta = delta;
+            this.pool = pool;
+            this.costs = new AtomicLongArray(routing.numStops());
+            this.buckets = new IntList[numBuckets];
+            for (int i = 0; i < numBuckets; i++) {
+                buckets[i] = new IntList();
+            }
+            this.frontierStamp = new int[routing.numStops()];
+            this.removedStamp = new int[routing.numStops()];
+            long infinity = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+            for (int v = 0; v < routing.numStops(); v++) {
+                costs.set(v, infinity);
+            }
+        }
+
+        private double cost(int stop) {
+            return Double.longBitsToDouble(costs.get(stop));
+        }
+
+        private long bucket(double cost) {
+            return (long) Math.floor(cost / delta);
+        }
+
+        /**
+         * Processa os baldes por ordem até não restarem Stops ou, se houver destino, até o balde do destino fechar.
+         */
+        private void run(int origin, int destination) {
+            costs.set(origin, Double.doubleToRawLongBits(0.0));
+            buckets[0].add(origin);
+            int pending = 1;
+
+            IntList removed = new IntList();
+            for (long current = 0; pending > 0; current++) {
+                Cancellation.checkpoint((int) current);
+                IntList bucket = buckets[(int) (current % buckets.length)];
+                if (bucket.size == 0) {
+                    continue;
+                }
+
+                int phase = ++stamp;
+                removed.size = 0;
+                while (bucket.size > 0) {
+                    int[] frontier = new int[bucket.size];
+                    int size = 0;
+                    stamp++;
+                    for (int i = 0; i < bucket.size; i++) {
+                        int v = bucket.values[i];
+                        if (bucket(cost(v)) == current && frontierStamp[v] != stamp) {
+                            frontierStamp[v] = stamp;
+                            frontier[size++] = v;
+                            if (removedStamp[v] != phase) {
+                                removedStamp[v] = phase;
+                                removed.add(v);
+                            }
+                        }
+                    }
+                    pending -= bucket.size;
+                    bucket.size = 0;
+                    pending += insert(relax(frontier, size, true));
+                }
+                settled += removed.size;
+                pending += insert(relax(removed.values, removed.size, false));
+
+                if (destination >= 0 && bucket(cost(destination)) <= current) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Relaxa as arestas leves ou pesadas de um conjunto de Stops, em paralelo se o conjunto for grande.
+         *
+         * @return as Stops cujo custo melhorou.
+         */
+        private IntList relax(int[] stops, int size, boolean light) {
+            if (size <= STOPS_PER_TASK) {
+                return relaxRange(stops, 0, size, light);
+            }
+            return pool.invoke(new RelaxTask(this, stops, 0, size, light));
+        }
+
+        private IntList relaxRange(int[] stops, int from, int to, boolean light) {
+            IntList improved = new IntList();
+            for (int i = from; i < to; i++) {
+                int u = stops[i];
+                double cost = cost(u);
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    double weight = weights.weight(routing.arcEdge(arc), mask);
+                    if ((weight <= delta) != light || weight == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    int v = routing.arcTarget(arc);
+                    if (decrease(v, cost + weight)) {
+                        improved.add(v);
+                    }
+                }
+            }
+            return improved;
+        }
+
+        /**
+         * Baixa o custo de uma Stop se o novo custo for menor, de forma atómica.
+         */
+        private boolean decrease(int stop, double cost) {
+            long bits = Double.doubleToRawLongBits(cost);
+            long current = costs.get(stop);
+            while (bits < current) {
+                if (costs.compareAndSet(stop, current, bits)) {
+                    return true;
+                }
+                current = costs.get(stop);
+            }
+            return false;
+        }
+
+        /**
+         * Coloca as Stops melhoradas nos baldes do seu custo atual.
+         *
+         * @return número de entradas inseridas.
+         */
+        private int insert(IntList improved) {
+            for (int i = 0; i < improved.size; i++) {
+                int v = improved.values[i];
+                buckets[(int) (bucket(cost(v)) % buckets.length)].add(v);
+            }
+            return improved.size;
+        }
+
+        /**
+         * Reconstrói o caminho com uma pesquisa em largura a partir do destino sobre as arestas justas.
+         */
+        private SearchResult path(int origin, int destination) {
+            if (cost(destination) == Double.POSITIVE_INFINITY) {
+                return SearchResult.notFound(settled);
+            }
+
+            int numStops = routing.numStops();
+            int[] next = new int[numStops];
+            int[] nextEdge = new int[numStops];
+            Arrays.fill(next, -1);
+            int[] queue = new int[numStops];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = destination;
+            next[destination] = destination;
+            while (head < tail && next[origin] < 0) {
+                int v = queue[head++];
+                for (int arc = routing.firstArc(v); arc < routing.endArc(v); arc++) {
+                    int u = routing.arcTarget(arc);
+                    int edge = routing.arcEdge(arc);
+                    if (next[u] < 0 && cost(u) + weights.weight(edge, mask) == cost(v)) {
+                        next[u] = v;
+                        nextEdge[u] = edge;
+                        queue[tail++] = u;
+                    }
+                }
+            }
+
+            int hops = 0;
+            for (int stop = origin; stop != destination; stop = next[stop]) {
+                hops++;
+            }
+            int[] stops = new int[hops + 1];
+            int[] edges = new int[hops];
+            stops[0] = origin;
+            for (int i = 0; i < hops; i++) {
+                edges[i] = nextEdge[stops[i]];
+                stops[i + 1] = next[stops[i]];
+            }
+            return new SearchResult(stops, edges, settled);
+        }
+    }
+
+    /**
+     * Tarefa que relaxa as arestas de um intervalo de Stops, dividindo-se enquanto o intervalo for grande.
+     */
+    private static class RelaxTask extends RecursiveTask<IntList> {
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final int[] stops;
+        private final int from;
+        private final int to;
+        private final boolean light;
+
+        private RelaxTask(Search search, int[] stops, int from, int to, boolean light) {
+            this.search = search;
+            this.stops = stops;
+            this.from = from;
+            this.to = to;
+            this.light = light;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (to - from <= STOPS_PER_TASK) {
+                return search.relaxRange(stops, from, to, light);
+            }
+            int middle = (from + to) >>> 1;
+            RelaxTask left = new RelaxTask(search, stops, from, middle, light);
+            left.fork();
+            IntList right = new RelaxTask(search, stops, middle, to, light).compute();
+            IntList result = left.join();
+            result.addAll(right);
+            return result;
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        private void addAll(IntList other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+    }
+}
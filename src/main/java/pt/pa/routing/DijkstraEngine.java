@@ -0,0 +1,87 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code DijkstraEngine} implementa o algoritmo de Dijkstra sobre um {@link RoutingGraph}, usando uma
+ * fila de prioridade binária indexada ({@link IndexedMinHeap}).
+ *
+ * A pesquisa termina assim que o destino é estabelecido. Os custos, os predecessores e a fila vêm de um
+ * {@link SearchWorkspace} reutilizado pela thread, pelo que uma consulta não aloca arrays do tamanho do grafo. Só é
+ * correta para pesos não negativos, pelo que recusa tabelas com arestas de peso negativo para a máscara de transportes
+ * pedida.
+ *
+ * Quando há vários caminhos de menor custo, cada Stop fica com o predecessor que primeiro lhe deu o custo mínimo, pela
+ * ordem dos arcos do {@link RoutingGraph}. Entre caminhos de igual custo, a escolha pode por isso diferir da do
+ * Bellman-Ford sobre o grafo de Stops usado antes, que percorria as Stops por outra ordem.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class DijkstraEngine implements ShortestPathEngine {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Dijkstra requires non-negative edge weights.");
+        }
+        return search(routing, weights, mask, origin, destination, 0.0, null);
+    }
+
+    /**
+     * Executa a pesquisa de Dijkstra com um deslocamento uniforme dos pesos e um potencial por Stop.
+     * <p>
+     * A fila de prioridade é ordenada por {@code custo(v) + potential(v)}, onde o custo soma {@code peso + shift}
+     * de cada aresta. A pesquisa é correta desde que {@code peso + shift + potential(v) - potential(u)} seja não
+     * negativo em todos os arcos {@code u -> v}.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param weights     a tabela de pesos da estratégia.
+     * @param mask        bits da máscara de transportes.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @param shift       deslocamento somado ao peso de cada aresta.
+     * @param potential   potencial de cada Stop, ou {@code null} para potenciais nulos.
+     * @return o resultado da pesquisa.
+     */
+    protected SearchResult search(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination,
+                                  double shift, StopPotential potential) {
+        SearchWorkspace workspace = SearchWorkspace.acquire(routing.numStops());
+        try {
+            IndexedMinHeap queue = workspace.queue();
+            workspace.reach(origin, 0.0, -1, -1);
+            queue.insertOrDecrease(origin, potential == null ? 0.0 : potential.at(origin));
+
+            int settledCount = 0;
+            while (!queue.isEmpty()) {
+                Cancellation.checkpoint(settledCount);
+                int u = queue.poll();
+                workspace.settle(u);
+                settledCount++;
+                if (u == destination) {
+                    break;
+                }
+
+                double cost = workspace.cost(u);
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    int v = routing.arcTarget(arc);
+                    if (workspace.isSettled(v)) {
+                        continue;
+                    }
+                    int edge = routing.arcEdge(arc);
+                    double newCost = cost + weights.weight(edge, mask) + shift;
+                    if (newCost < workspace.cost(v)) {
+                        workspace.reach(v, newCost, u, edge);
+                        queue.insertOrDecrease(v, potential == null ? newCost : newCost + potential.at(v));
+                    }
+                }
+            }
+
+            return workspace.path(origin, destination, settledCount);
+        } finally {
+            workspace.release();
+        }
+    }
+}
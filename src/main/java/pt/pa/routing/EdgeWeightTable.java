@@ -0,0 +1,352 @@
+package pt.pa.routing;
+
+import pt.pa.TransportMask;
+import pt.pa.TransportType;
+import pt.pa.patterns.strategy.WeightCalculationStrategy;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A classe {@code EdgeWeightTable} guarda, para uma estratégia de cálculo de peso, o menor peso de cada aresta
+ * do {@link RoutingGraph} para cada um dos {@link TransportMask#SUBSETS} subconjuntos de tipos de transporte.
+ *
+ * As tabelas ficam num único array primitivo indexado por {@code (aresta << BITS) | máscara}, pelo que o peso de
+ * uma aresta para os transportes escolhidos é obtido com um único acesso, sem percorrer as Routes da aresta.
+ * Cada linha é calculada a partir do menor peso de cada tipo de transporte: o valor de uma máscara é o mínimo entre
+ * o valor da máscara sem o bit mais baixo e o menor peso do tipo correspondente a esse bit.
+ *
+ * A tabela é atualizada pelo {@link RoutingGraph} sempre que o estado ou a duração de uma Route mudam, descartando
+ * os pesos deslocados ({@link ShiftedWeights}), os limites geodésicos, os landmarks ({@link LandmarkIndex}),
+ * os rótulos de hubs ({@link HubLabels}) e as matrizes de todos os pares ({@link AllPairsMatrix}) calculados para cada
+ * máscara. As árvores de caminhos mais curtos já construídas para as origens usadas recentemente
+ * ({@link ShortestPathTree}) não são descartadas: são reparadas com a variação do peso da aresta alterada.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class EdgeWeightTable {
+    private static final int BITS = Integer.numberOfTrailingZeros(TransportMask.SUBSETS);
+    private static final int MODES = TransportType.values().length;
+    private static final int MAX_TREES = 8;
+    private static final int MAX_QUERIED = 64;
+
+    private final RoutingGraph routing;
+    private final WeightCalculationStrategy strategy;
+    private final double[] routeWeights;
+    private final double[] minWeight;
+    private final int[] bestRoute;
+    private final int[] negativeEdges;
+    private final ShiftedWeights[] shiftedWeights;
+    private final double[] geodesicRatio;
+    private final LandmarkIndex[] landmarks;
+    private final HubLabels[] hubLabels;
+    private final AllPairsMatrix[] allPairs;
+    private final Map<Integer, ShortestPathTree> trees;
+    private final Map<Integer, Boolean> queriedOrigins;
+
+    /**
+     * Construtor que calcula as tabelas de todas as arestas.
+     *
+     * @param routing  a fotografia do grafo.
+     * @param strategy a estratégia de cálculo de peso.
+     */
+    EdgeWeightTable(RoutingGraph routing, WeightCalculationStrategy strategy) {
+        this.routing = routing;
+        this.strategy = strategy;
+        this.routeWeights = new double[routing.numRoutes()];
+        this.minWeight = new double[routing.numEdges() << BITS];
+        this.bestRoute = new int[routing.numEdges() << BITS];
+        this.negativeEdges = new int[TransportMask.SUBSETS];
+        this.shiftedWeights = new ShiftedWeights[TransportMask.SUBSETS];
+        this.geodesicRatio = new double[TransportMask.SUBSETS];
+        Arrays.fill(geodesicRatio, Double.NaN);
+        this.landmarks = new LandmarkIndex[TransportMask.SUBSETS];
+        this.hubLabels = new HubLabels[TransportMask.SUBSETS];
+        this.allPairs = new AllPairsMatrix[TransportMask.SUBSETS];
+        this.trees = new LinkedHashMap<>(MAX_TREES * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ShortestPathTree> eldest) {
+                return size() > MAX_TREES;
+            }
+        };
+        this.queriedOrigins = new LinkedHashMap<>(MAX_QUERIED * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                return size() > MAX_QUERIED;
+            }
+        };
+
+        for (int e = 0; e < routing.numEdges(); e++) {
+            computeRow(e);
+        }
+    }
+
+    /**
+     * Retorna a estratégia de cálculo de peso usada na tabela.
+     *
+     * @return a estratégia.
+     */
+    public WeightCalculationStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Retorna o peso de uma Route segundo a estratégia da tabela.
+     *
+     * @param route índice da Route.
+     * @return o peso da Route.
+     */
+    public double routeWeight(int route) {
+        return routeWeights[route];
+    }
+
+    /**
+     * Retorna o menor peso de uma aresta entre as Routes ativas dos tipos de transporte da máscara.
+     *
+     * @param edge identificador da aresta.
+     * @param mask bits da máscara de transportes ({@link TransportMask#bits()}).
+     * @return o menor peso, ou {@link Double#POSITIVE_INFINITY} se a aresta não tiver Routes válidas.
+     */
+    public double weight(int edge, int mask) {
+        return minWeight[(edge << BITS) | mask];
+    }
+
+    /**
+     * Retorna a Route de menor peso de uma aresta entre as Routes ativas dos tipos de transporte da máscara.
+     *
+     * @param edge identificador da aresta.
+     * @param mask bits da máscara de transportes ({@link TransportMask#bits()}).
+     * @return índice da Route, ou {@code -1} se a aresta não tiver Routes válidas.
+     */
+    public int bestRoute(int edge, int mask) {
+        return bestRoute[(edge << BITS) | mask];
+    }
+
+    /**
+     * Indica se todas as arestas têm peso não negativo para os tipos de transporte da máscara.
+     *
+     * @param mask bits da máscara de transportes.
+     * @return {@code true} se nenhuma aresta tiver peso negativo; caso contrário, {@code false}.
+     */
+    public boolean isNonNegative(int mask) {
+        return negativeEdges[mask] == 0;
+    }
+
+    /**
+     * Obtém o deslocamento dos pesos para uma máscara de transportes, calculando-o apenas no primeiro pedido após a
+     * construção da tabela ou a última alteração de uma Route.
+     *
+     * @param mask bits da máscara de transportes.
+     * @return os pesos deslocados da máscara.
+     */
+    public ShiftedWeights shiftedWeights(int mask) {
+        if (shiftedWeights[mask] == null) {
+            shiftedWeights[mask] = ShiftedWeights.compute(routing, this, mask);
+        }
+        return shiftedWeights[mask];
+    }
+
+    /**
+     * Obtém a menor razão entre o peso de uma aresta e a distância de círculo máximo entre os seus extremos, para
+     * uma máscara de transportes. Multiplicar a distância geodésica por um valor não superior a esta razão dá um
+     * limite inferior consistente do custo entre duas Stops.
+     * <p>
+     * O valor é calculado apenas no primeiro pedido após a construção da tabela ou a última alteração de uma Route.
+     *
+     * @param mask bits da máscara de transportes.
+     * @return a menor razão, ou {@link Double#POSITIVE_INFINITY} se nenhuma aresta tiver extremos distintos.
+     */
+    public double geodesicRatio(int mask) {
+        if (Double.isNaN(geodesicRatio[mask])) {
+            double ratio = Double.POSITIVE_INFINITY;
+            for (int e = 0; e < routing.numEdges(); e++) {
+                double length = routing.greatCircleDistance(routing.edgeSource(e), routing.edgeTarget(e));
+                double weight = weight(e, mask);
+                if (length > 0 && weight != Double.POSITIVE_INFINITY) {
+                    ratio = Math.min(ratio, weight / length);
+                }
+            }
+            geodesicRatio[mask] = ratio;
+        }
+        return geodesicRatio[mask];
+    }
+
+    /**
+     * Obtém o índice de landmarks de uma máscara de transportes, construindo-o apenas no primeiro pedido após a
+     * construção da tabela ou a última alteração de uma Route.
+     *
+     * @param mask bits da máscara de transportes.
+     * @return o índice de landmarks da máscara.
+     */
+    public LandmarkIndex landmarks(int mask) {
+        if (landmarks[mask] == null) {
+            double shift = shiftedWeights(mask).shift();
+            landmarks[mask] = LandmarkIndex.build(routing, this, mask, shift, LandmarkIndex.DEFAULT_LANDMARKS);
+        }
+        return landmarks[mask];
+    }
+
+    /**
+     * Obtém os rótulos de hubs de uma máscara de transportes, construindo-os apenas no primeiro pedido após a
+     * construção da tabela ou a última alteração de uma Route.
+     *
+     * @param mask bits da máscara de transportes.
+     * @return os rótulos de hubs da máscara.
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public HubLabels hubLabels(int mask) {
+        if (hubLabels[mask] == null) {
+            hubLabels[mask] = HubLabels.build(routing, this, mask);
+        }
+        return hubLabels[mask];
+    }
+
+    /**
+     * Define os rótulos de hubs de uma máscara de transportes, por exemplo depois de os ler do disco.
+     *
+     * @param labels os rótulos de hubs.
+     * @throws IllegalArgumentException se os rótulos pertencerem a outra tabela de pesos.
+     */
+    public void setHubLabels(HubLabels labels) {
+        if (labels.getWeights() != this) {
+            throw new IllegalArgumentException("Hub labels belong to another weight table.");
+        }
+        hubLabels[labels.getMask()] = labels;
+    }
+
+    /**
+     * Obtém a matriz de custos e de próximos saltos entre todos os pares de Stops de uma máscara de transportes,
+     * calculando-a em paralelo no {@link ForkJoinPool#commonPool()} apenas no primeiro pedido após a construção da
+     * tabela ou a última alteração de uma Route.
+     *
+     * @param mask bits da máscara de transportes.
+     * @return a matriz da máscara.
+     * @throws IllegalStateException se a rede tiver demasiadas Stops para uma matriz em memória.
+     */
+    public AllPairsMatrix allPairs(int mask) {
+        if (allPairs[mask] == null) {
+            allPairs[mask] = AllPairsMatrix.compute(routing, this, mask, ForkJoinPool.commonPool());
+        }
+        return allPairs[mask];
+    }
+
+    /**
+     * Obtém a árvore de caminhos mais curtos com raiz numa Stop para uma máscara de transportes. As árvores das
+     * {@value #MAX_TREES} combinações de origem e máscara usadas mais recentemente são guardadas e reparadas quando
+     * o peso de uma aresta muda, em vez de serem recalculadas.
+     *
+     * @param mask   bits da máscara de transportes.
+     * @param origin identificador da Stop de origem.
+     * @return a árvore da origem.
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public ShortestPathTree shortestPathTree(int mask, int origin) {
+        if (!isNonNegative(mask)) {
+            throw new IllegalStateException("Shortest-path trees require non-negative edge weights.");
+        }
+        return trees.computeIfAbsent(origin * TransportMask.SUBSETS + mask,
+                key -> new ShortestPathTree(routing, this, mask, origin));
+    }
+
+    /**
+     * Obtém a árvore de caminhos mais curtos de uma origem que já foi consultada. Na primeira consulta de uma
+     * combinação de origem e máscara apenas a regista e retorna {@code null}, porque uma pesquisa que para no destino
+     * é mais barata do que a árvore completa; a árvore só é construída quando a mesma origem volta a ser consultada.
+     * São lembradas as {@value #MAX_QUERIED} combinações consultadas mais recentemente.
+     *
+     * @param mask   bits da máscara de transportes.
+     * @param origin identificador da Stop de origem.
+     * @return a árvore da origem, ou {@code null} se a origem ainda não tinha sido consultada.
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public ShortestPathTree repeatedOriginTree(int mask, int origin) {
+        if (!isNonNegative(mask)) {
+            throw new IllegalStateException("Shortest-path trees require non-negative edge weights.");
+        }
+        int key = origin * TransportMask.SUBSETS + mask;
+        ShortestPathTree tree = trees.get(key);
+        if (tree != null) {
+            return tree;
+        }
+        if (queriedOrigins.remove(key) == null) {
+            queriedOrigins.put(key, Boolean.TRUE);
+            return null;
+        }
+        return shortestPathTree(mask, origin);
+    }
+
+    /**
+     * Recalcula a linha de uma aresta depois de uma das suas Routes ter sido alterada e repara as árvores de
+     * caminhos mais curtos guardadas.
+     *
+     * @param edge identificador da aresta.
+     */
+    void refresh(int edge) {
+        int row = edge << BITS;
+        double[] oldWeights = Arrays.copyOfRange(minWeight, row, row + TransportMask.SUBSETS);
+        for (int mask = 0; mask < TransportMask.SUBSETS; mask++) {
+            if (minWeight[row | mask] < 0) {
+                negativeEdges[mask]--;
+            }
+        }
+        computeRow(edge);
+
+        Iterator<Map.Entry<Integer, ShortestPathTree>> iterator = trees.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, ShortestPathTree> entry = iterator.next();
+            int mask = entry.getKey() % TransportMask.SUBSETS;
+            if (!isNonNegative(mask)) {
+                iterator.remove();
+            } else {
+                entry.getValue().edgeChanged(edge, oldWeights[mask]);
+            }
+        }
+        Arrays.fill(shiftedWeights, null);
+        Arrays.fill(geodesicRatio, Double.NaN);
+        Arrays.fill(landmarks, null);
+        Arrays.fill(hubLabels, null);
+        Arrays.fill(allPairs, null);
+    }
+
+    /**
+     * Calcula o peso das Routes de uma aresta e a respetiva linha da tabela.
+     *
+     * @param edge identificador da aresta.
+     */
+    private void computeRow(int edge) {
+        double[] modeWeight = new double[MODES];
+        int[] modeRoute = new int[MODES];
+        Arrays.fill(modeWeight, Double.POSITIVE_INFINITY);
+        Arrays.fill(modeRoute, -1);
+
+        for (int r = routing.firstRoute(edge); r < routing.endRoute(edge); r++) {
+            routeWeights[r] = strategy.calculateWeight(routing.route(r));
+            int mode = routing.routeTransport(r);
+            if (routing.routeState(r) && routeWeights[r] < modeWeight[mode]) {
+                modeWeight[mode] = routeWeights[r];
+                modeRoute[mode] = r;
+            }
+        }
+
+        int row = edge << BITS;
+        minWeight[row] = Double.POSITIVE_INFINITY;
+        bestRoute[row] = -1;
+        for (int mask = 1; mask < TransportMask.SUBSETS; mask++) {
+            int mode = Integer.numberOfTrailingZeros(mask);
+            int rest = row | (mask & (mask - 1));
+            if (modeWeight[mode] < minWeight[rest]) {
+                minWeight[row | mask] = modeWeight[mode];
+                bestRoute[row | mask] = modeRoute[mode];
+            } else {
+                minWeight[row | mask] = minWeight[rest];
+                bestRoute[row | mask] = bestRoute[rest];
+            }
+            if (minWeight[row | mask] < 0) {
+                negativeEdges[mask]++;
+            }
+        }
+    }
+}
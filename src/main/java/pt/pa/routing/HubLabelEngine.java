@@ -0,0 +1,23 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code HubLabelEngine} responde às consultas de caminho mais curto através dos rótulos de hubs
+ * ({@link HubLabels}) da tabela de pesos, construídos na primeira consulta de cada máscara de transportes (ou lidos
+ * do disco). O custo é obtido pela interseção dos rótulos e o caminho é reconstruído a partir das arestas guardadas.
+ *
+ * Só suporta pesos não negativos.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class HubLabelEngine implements ShortestPathEngine {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        return weights.hubLabels(mask).findPath(origin, destination);
+    }
+}
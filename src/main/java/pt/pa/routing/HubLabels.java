@@ -0,0 +1,493 @@
+package pt.pa.routing;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * A classe {@code HubLabels} é um oráculo de distâncias por rotulagem de dois saltos (<i>2-hop hub labeling</i>)
+ * sobre um {@link RoutingGraph}, para uma tabela de pesos e uma máscara de transportes.
+ *
+ * Cada Stop guarda um rótulo: a lista das Stops centrais (<i>hubs</i>) que cobrem os seus caminhos mais curtos e o
+ * custo até cada uma. O custo mínimo entre duas Stops é o menor {@code custo(origem, h) + custo(h, destino)} sobre os
+ * hubs {@code h} comuns aos dois rótulos, obtido intersetando dois arrays ordenados, sem qualquer pesquisa no grafo.
+ *
+ * Os rótulos são construídos por rotulagem com poda (<i>pruned landmark labeling</i>): as Stops são processadas por
+ * ordem decrescente de importância (a ordem da {@link ContractionHierarchy}) e, a partir de cada uma, é feita uma
+ * pesquisa de Dijkstra que não expande as Stops cujo custo já é respondido pelos rótulos anteriores.
+ * Cada entrada guarda também a aresta para o predecessor na árvore do hub, pelo que o caminho completo pode ser
+ * reconstruído a pedido.
+ *
+ * Os rótulos ficam em arrays primitivos contíguos, agrupados por Stop e ordenados pela posição do hub.
+ * Só suporta pesos não negativos.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class HubLabels {
+    private static final int MAGIC = 0x484C4231;
+
+    private final RoutingGraph routing;
+    private final EdgeWeightTable weights;
+    private final int mask;
+    private final int[] order;
+    private final int[] labelStart;
+    private final int[] labelHub;
+    private final double[] labelCost;
+    private final int[] labelEdge;
+
+    /**
+     * Construtor privado; as instâncias são criadas através de {@link #build} ou {@link #read}.
+     *
+     * @param routing    a fotografia do grafo.
+     * @param weights    a tabela de pesos.
+     * @param mask       bits da máscara de transportes.
+     * @param order      Stop em cada posição da ordem de importância.
+     * @param labelStart início do rótulo de cada Stop ({@code numStops + 1} elementos).
+     * @param labelHub   posição do hub de cada entrada.
+     * @param labelCost  custo entre a Stop e o hub de cada entrada.
+     * @param labelEdge  aresta para o predecessor na árvore do hub ({@code -1} no próprio hub).
+     */
+    private HubLabels(RoutingGraph routing, EdgeWeightTable weights, int mask, int[] order,
+                      int[] labelStart, int[] labelHub, double[] labelCost, int[] labelEdge) {
+        this.routing = routing;
+        this.weights = weights;
+        this.mask = mask;
+        this.order = order;
+        this.labelStart = labelStart;
+        this.labelHub = labelHub;
+        this.labelCost = labelCost;
+        this.labelEdge = labelEdge;
+    }
+
+    /**
+     * Constrói os rótulos de todas as Stops por rotulagem com poda.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos.
+     * @param mask    bits da máscara de transportes.
+     * @return os rótulos construídos.
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public static HubLabels build(RoutingGraph routing, EdgeWeightTable weights, int mask) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Hub labels require non-negative edge weights.");
+        }
+
+        int numStops = routing.numStops();
+        ContractionHierarchy hierarchy = routing.contractionHierarchy();
+        int[] order = new int[numStops];
+        for (int stop = 0; stop < numStops; stop++) {
+            order[numStops - 1 - hierarchy.rank(stop)] = stop;
+        }
+
+        int[] size = new int[numStops];
+        int[][] hubs = new int[numStops][];
+        double[][] costs = new double[numStops][];
+        int[][] edges = new int[numStops][];
+
+        double[] hubCost = new double[numStops];
+        double[] tentative = new double[numStops];
+        int[] predecessorEdge = new int[numStops];
+        int[] reached = new int[numStops];
+        Arrays.fill(hubCost, Double.POSITIVE_INFINITY);
+        Arrays.fill(tentative, Double.POSITIVE_INFINITY);
+        IndexedMinHeap queue = new IndexedMinHeap(numStops);
+
+        for (int position = 0; position < numStops; position++) {
+            int root = order[position];
+            for (int i = 0; i < size[root]; i++) {
+                hubCost[hubs[root][i]] = costs[root][i];
+            }
+
+            int numReached = 0;
+            tentative[root] = 0.0;
+            predecessorEdge[root] = -1;
+            reached[numReached++] = root;
+            queue.insertOrDecrease(root, 0.0);
+
+            while (!queue.isEmpty()) {
+                int u = queue.poll();
+                double cost = tentative[u];
+                if (covered(hubs[u], costs[u], size[u], hubCost, cost)) {
+                    continue;
+                }
+
+                // Acrescenta a entrada ao rótulo de u; as posições chegam por ordem crescente
+                if (hubs[u] == null || size[u] == hubs[u].length) {
+                    int capacity = hubs[u] == null ? 4 : size[u] * 2;
+                    hubs[u] = hubs[u] == null ? new int[capacity] : Arrays.copyOf(hubs[u], capacity);
+                    costs[u] = costs[u] == null ? new double[capacity] : Arrays.copyOf(costs[u], capacity);
+                    edges[u] = edges[u] == null ? new int[capacity] : Arrays.copyOf(edges[u], capacity);
+                }
+                hubs[u][size[u]] = position;
+                costs[u][size[u]] = cost;
+                edges[u][size[u]] = predecessorEdge[u];
+                size[u]++;
+
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    int v = routing.arcTarget(arc);
+                    double newCost = cost + weights.weight(routing.arcEdge(arc), mask);
+                    if (newCost < tentative[v]) {
+                        if (tentative[v] == Double.POSITIVE_INFINITY) {
+                            reached[numReached++] = v;
+                        }
+                        tentative[v] = newCost;
+                        predecessorEdge[v] = routing.arcEdge(arc);
+                        queue.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+
+            for (int i = 0; i < numReached; i++) {
+                tentative[reached[i]] = Double.POSITIVE_INFINITY;
+            }
+            for (int i = 0; i < size[root]; i++) {
+                hubCost[hubs[root][i]] = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        int[] labelStart = new int[numStops + 1];
+        for (int stop = 0; stop < numStops; stop++) {
+            labelStart[stop + 1] = labelStart[stop] + size[stop];
+        }
+        int total = labelStart[numStops];
+        int[] labelHub = new int[total];
+        double[] labelCost = new double[total];
+        int[] labelEdge = new int[total];
+        for (int stop = 0; stop < numStops; stop++) {
+            if (size[stop] > 0) {
+                System.arraycopy(hubs[stop], 0, labelHub, labelStart[stop], size[stop]);
+                System.arraycopy(costs[stop], 0, labelCost, labelStart[stop], size[stop]);
+                System.arraycopy(edges[stop], 0, labelEdge, labelStart[stop], size[stop]);
+            }
+            hubs[stop] = null;
+            costs[stop] = null;
+            edges[stop] = null;
+        }
+        return new HubLabels(routing, weights, mask, order, labelStart, labelHub, labelCost, labelEdge);
+    }
+
+    /**
+     * Indica se o custo de uma Stop até à raiz da pesquisa atual já é respondido pelos rótulos existentes.
+     *
+     * @param hubs    posições dos hubs do rótulo da Stop.
+     * @param costs   custos do rótulo da Stop.
+     * @param size    número de entradas do rótulo da Stop.
+     * @param hubCost custo da raiz a cada hub do seu rótulo, indexado pela posição do hub.
+     * @param cost    custo encontrado pela pesquisa.
+     * @return {@code true} se a Stop puder ser podada.
+     */
+    private static boolean covered(int[] hubs, double[] costs, int size, double[] hubCost, double cost) {
+        for (int i = 0; i < size; i++) {
+            if (hubCost[hubs[i]] + costs[i] <= cost) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retorna a fotografia do grafo a que os rótulos pertencem.
+     *
+     * @return a fotografia do grafo.
+     */
+    public RoutingGraph getRoutingGraph() {
+        return routing;
+    }
+
+    /**
+     * Retorna a tabela de pesos usada na construção dos rótulos.
+     *
+     * @return a tabela de pesos.
+     */
+    public EdgeWeightTable getWeights() {
+        return weights;
+    }
+
+    /**
+     * Retorna a máscara de transportes usada na construção dos rótulos.
+     *
+     * @return bits da máscara de transportes.
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Calcula o custo mínimo entre duas Stops pela interseção dos seus rótulos.
+     *
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o custo mínimo, ou {@link Double#POSITIVE_INFINITY} se não houver caminho.
+     */
+    public double cost(int origin, int destination) {
+        if (origin == destination) {
+            return 0.0;
+        }
+        int i = labelStart[origin];
+        int j = labelStart[destination];
+        int endI = labelStart[origin + 1];
+        int endJ = labelStart[destination + 1];
+        double best = Double.POSITIVE_INFINITY;
+        while (i < endI && j < endJ) {
+            int a = labelHub[i];
+            int b = labelHub[j];
+            if (a == b) {
+                best = Math.min(best, labelCost[i++] + labelCost[j++]);
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Procura o caminho de menor custo entre duas Stops: escolhe o melhor hub comum aos dois rótulos e reconstrói
+     * os troços da origem e do destino até ao hub seguindo as arestas guardadas nos rótulos.
+     *
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o resultado; o número de Stops estabelecidas é o número de entradas de rótulo percorridas.
+     */
+    public SearchResult findPath(int origin, int destination) {
+        if (origin == destination) {
+            return new SearchResult(new int[]{origin}, new int[0], 0);
+        }
+        int i = labelStart[origin];
+        int j = labelStart[destination];
+        int endI = labelStart[origin + 1];
+        int endJ = labelStart[destination + 1];
+        double best = Double.POSITIVE_INFINITY;
+        int hub = -1;
+        int scanned = 0;
+        while (i < endI && j < endJ) {
+            scanned++;
+            int a = labelHub[i];
+            int b = labelHub[j];
+            if (a == b) {
+                if (labelCost[i] + labelCost[j] < best) {
+                    best = labelCost[i] + labelCost[j];
+                    hub = a;
+                }
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        if (hub < 0) {
+            return SearchResult.notFound(scanned);
+        }
+
+        int[] forward = pathToHub(origin, hub);
+        int[] backward = pathToHub(destination, hub);
+        int[] pathEdges = new int[forward.length + backward.length];
+        System.arraycopy(forward, 0, pathEdges, 0, forward.length);
+        for (int k = 0; k < backward.length; k++) {
+            pathEdges[forward.length + k] = backward[backward.length - 1 - k];
+        }
+
+        int[] stops = new int[pathEdges.length + 1];
+        stops[0] = origin;
+        for (int k = 0; k < pathEdges.length; k++) {
+            stops[k + 1] = routing.opposite(pathEdges[k], stops[k]);
+        }
+        return new SearchResult(stops, pathEdges, scanned);
+    }
+
+    /**
+     * Reconstrói as arestas entre uma Stop e um hub do seu rótulo, seguindo a árvore de caminhos mais curtos do hub.
+     * Cada predecessor tem também o hub no seu rótulo, pois foi expandido na pesquisa a partir do hub.
+     *
+     * @param stop     identificador da Stop.
+     * @param position posição do hub.
+     * @return as arestas, da Stop para o hub.
+     */
+    private int[] pathToHub(int stop, int position) {
+        int[] edges = new int[8];
+        int length = 0;
+        int current = stop;
+        while (current != order[position]) {
+            int entry = Arrays.binarySearch(labelHub, labelStart[current], labelStart[current + 1], position);
+            int edge = labelEdge[entry];
+            if (length == edges.length) {
+                edges = Arrays.copyOf(edges, length * 2);
+            }
+            edges[length++] = edge;
+            current = routing.opposite(edge, current);
+        }
+        return Arrays.copyOf(edges, length);
+    }
+
+    /**
+     * Retorna o número total de entradas dos rótulos.
+     *
+     * @return número de entradas.
+     */
+    public int numEntries() {
+        return labelHub.length;
+    }
+
+    /**
+     * Retorna o tamanho médio do rótulo de cada Stop.
+     *
+     * @return número médio de entradas por Stop.
+     */
+    public double averageLabelSize() {
+        return order.length == 0 ? 0.0 : (double) labelHub.length / order.length;
+    }
+
+    /**
+     * Retorna a memória ocupada pelos rótulos, em bytes.
+     *
+     * @return número aproximado de bytes.
+     */
+    public long memoryBytes() {
+        return (long) labelHub.length * (Integer.BYTES + Double.BYTES + Integer.BYTES)
+                + (long) (labelStart.length + order.length) * Integer.BYTES;
+    }
+
+    /**
+     * Grava os rótulos num formato binário compacto: as posições dos hubs são gravadas como diferenças à entrada
+     * anterior e, tal como as arestas, em inteiros de comprimento variável. É gravada também uma soma de controlo dos
+     * pesos, para que os rótulos não sejam lidos depois de uma alteração às Routes.
+     *
+     * @param out o fluxo de saída.
+     * @throws IOException se ocorrer um erro de escrita.
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeUTF(weights.getStrategy().getClass().getName());
+        data.writeInt(mask);
+        data.writeInt(order.length);
+        data.writeInt(routing.numEdges());
+        data.writeLong(checksum(routing, weights, mask));
+        for (int stop = 0; stop < order.length; stop++) {
+            data.writeUTF(routing.vertex(stop).element().getStopCode());
+        }
+        for (int stop : order) {
+            writeVarInt(data, stop);
+        }
+        for (int stop = 0; stop < order.length; stop++) {
+            writeVarInt(data, labelStart[stop + 1] - labelStart[stop]);
+            int previous = 0;
+            for (int entry = labelStart[stop]; entry < labelStart[stop + 1]; entry++) {
+                writeVarInt(data, labelHub[entry] - previous);
+                writeVarInt(data, labelEdge[entry] + 1);
+                data.writeDouble(labelCost[entry]);
+                previous = labelHub[entry];
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Lê rótulos gravados com {@link #write(OutputStream)}, validando que correspondem à fotografia, à estratégia, à
+     * máscara e aos pesos atuais.
+     *
+     * @param in      o fluxo de entrada.
+     * @param routing a fotografia do grafo atual.
+     * @param weights a tabela de pesos atual.
+     * @param mask    bits da máscara de transportes.
+     * @return os rótulos lidos.
+     * @throws IOException se ocorrer um erro de leitura ou os rótulos não corresponderem ao mapa atual.
+     */
+    public static HubLabels read(InputStream in, RoutingGraph routing, EdgeWeightTable weights, int mask) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a hub labels file.");
+        }
+        String strategy = data.readUTF();
+        int fileMask = data.readInt();
+        int numStops = data.readInt();
+        int numEdges = data.readInt();
+        long checksum = data.readLong();
+        if (!strategy.equals(weights.getStrategy().getClass().getName()) || fileMask != mask
+                || numStops != routing.numStops() || numEdges != routing.numEdges()
+                || checksum != checksum(routing, weights, mask)) {
+            throw new IOException("Hub labels do not match the routing graph.");
+        }
+        for (int stop = 0; stop < numStops; stop++) {
+            if (!data.readUTF().equals(routing.vertex(stop).element().getStopCode())) {
+                throw new IOException("Hub labels do not match the routing graph.");
+            }
+        }
+
+        int[] order = new int[numStops];
+        for (int position = 0; position < numStops; position++) {
+            order[position] = readIndex(data, numStops);
+        }
+
+        int[] labelStart = new int[numStops + 1];
+        int[] labelHub = new int[Math.max(16, numStops)];
+        double[] labelCost = new double[labelHub.length];
+        int[] labelEdge = new int[labelHub.length];
+        int total = 0;
+        for (int stop = 0; stop < numStops; stop++) {
+            int size = readVarInt(data);
+            if (total + size > labelHub.length) {
+                int capacity = Math.max(total + size, labelHub.length * 2);
+                labelHub = Arrays.copyOf(labelHub, capacity);
+                labelCost = Arrays.copyOf(labelCost, capacity);
+                labelEdge = Arrays.copyOf(labelEdge, capacity);
+            }
+            int previous = 0;
+            for (int k = 0; k < size; k++) {
+                previous += readVarInt(data);
+                labelHub[total] = readIndex(previous, numStops);
+                labelEdge[total] = readIndex(data, numEdges + 1) - 1;
+                labelCost[total] = data.readDouble();
+                total++;
+            }
+            labelStart[stop + 1] = total;
+        }
+        return new HubLabels(routing, weights, mask, order, labelStart,
+                Arrays.copyOf(labelHub, total), Arrays.copyOf(labelCost, total), Arrays.copyOf(labelEdge, total));
+    }
+
+    /**
+     * Calcula uma soma de controlo dos pesos de todas as arestas para a máscara de transportes.
+     */
+    private static long checksum(RoutingGraph routing, EdgeWeightTable weights, int mask) {
+        long hash = 17;
+        for (int e = 0; e < routing.numEdges(); e++) {
+            hash = hash * 31 + Double.doubleToLongBits(weights.weight(e, mask));
+        }
+        return hash;
+    }
+
+    private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed hub labels file.");
+    }
+
+    private static int readIndex(DataInputStream data, int bound) throws IOException {
+        return readIndex(readVarInt(data), bound);
+    }
+
+    private static int readIndex(int value, int bound) throws IOException {
+        if (value < 0 || value >= bound) {
+            throw new IOException("Malformed hub labels file.");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,161 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code IndexedMinHeap} implementa uma fila de prioridade mínima binária indexada sobre identificadores
+ * inteiros entre {@code 0} e {@code capacity - 1}, usada pelos algoritmos de caminho mais curto.
+ *
+ * Ao contrário de {@link java.util.PriorityQueue}, cada identificador ocupa no máximo uma posição na fila e a sua
+ * prioridade pode ser diminuída em {@code O(log n)}, sem inserir entradas duplicadas. Todo o estado é guardado em
+ * arrays primitivos.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class IndexedMinHeap {
+    private final int[] heap;
+    private final int[] position;
+    private final double[] keys;
+    private int size;
+
+    /**
+     * Construtor de uma fila vazia.
+     *
+     * @param capacity número de identificadores possíveis.
+     */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Verifica se a fila está vazia.
+     *
+     * @return {@code true} se não houver elementos na fila.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Retorna o número de elementos na fila.
+     *
+     * @return número de elementos.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Verifica se um identificador está na fila.
+     *
+     * @param id o identificador.
+     * @return {@code true} se estiver na fila.
+     */
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Retorna a menor prioridade da fila, sem remover o elemento.
+     *
+     * @return a menor prioridade.
+     * @throws IllegalStateException se a fila estiver vazia.
+     */
+    public double peekKey() {
+        if (size == 0) {
+            throw new IllegalStateException("The heap is empty.");
+        }
+        return keys[heap[0]];
+    }
+
+    /**
+     * Insere um identificador com a prioridade indicada ou, se já estiver na fila, diminui a sua prioridade.
+     * Prioridades maiores do que a atual são ignoradas.
+     *
+     * @param id  o identificador.
+     * @param key a prioridade.
+     */
+    public void insertOrDecrease(int id, double key) {
+        int i = position[id];
+        if (i < 0) {
+            i = size++;
+            heap[i] = id;
+            position[id] = i;
+        } else if (key >= keys[id]) {
+            return;
+        }
+        keys[id] = key;
+        siftUp(i);
+    }
+
+    /**
+     * Remove e retorna o identificador com a menor prioridade.
+     *
+     * @return o identificador removido.
+     * @throws IllegalStateException se a fila estiver vazia.
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new IllegalStateException("The heap is empty.");
+        }
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Esvazia a fila.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int id = heap[i];
+        double key = keys[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[heap[parent]] <= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+
+    private void siftDown(int i) {
+        int id = heap[i];
+        double key = keys[id];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = id;
+        position[id] = i;
+    }
+}
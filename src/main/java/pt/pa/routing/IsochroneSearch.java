@@ -0,0 +1,78 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code IsochroneSearch} encontra todas as Stops de um {@link RoutingGraph} alcançáveis a partir de uma
+ * origem com custo não superior a um orçamento, por exemplo todas as Stops a menos de 20 minutos de autocarro ou a pé.
+ *
+ * É uma pesquisa de Dijkstra sem destino que nunca põe na fila uma Stop cujo custo ultrapasse o orçamento, pelo que
+ * termina assim que se esgotam as Stops dentro do orçamento, sem percorrer o resto do grafo. Cada Stop é entregue a um
+ * {@link StopVisitor} no momento em que é estabelecida, ou seja, por ordem crescente de custo, e quem a chama pode
+ * apresentar os resultados progressivamente. Os arrays de trabalho vêm de um {@link SearchWorkspace} da thread.
+ *
+ * Só é definida para pesos não negativos: com pesos negativos a ordem de estabelecimento deixa de ser a ordem dos
+ * custos e, no grafo não dirigido, uma aresta negativa torna os custos ilimitados.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class IsochroneSearch {
+
+    private IsochroneSearch() {
+    }
+
+    /**
+     * Entrega, por ordem crescente de custo, as Stops alcançáveis a partir da origem dentro do orçamento, incluindo
+     * a própria origem com custo {@code 0}.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos.
+     * @param mask    bits da máscara de transportes.
+     * @param origin  identificador da Stop de origem.
+     * @param budget  custo máximo.
+     * @param visitor quem recebe cada Stop e o seu custo.
+     * @return número de Stops entregues.
+     * @throws IllegalArgumentException se o orçamento for negativo ou não for um número.
+     * @throws IllegalStateException    se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public static int search(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, double budget,
+                             StopVisitor visitor) {
+        if (!(budget >= 0)) {
+            throw new IllegalArgumentException("The budget must be a non-negative number.");
+        }
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Isochrone queries require non-negative edge weights.");
+        }
+
+        SearchWorkspace workspace = SearchWorkspace.acquire(routing.numStops());
+        try {
+            IndexedMinHeap queue = workspace.queue();
+            workspace.reach(origin, 0.0, -1, -1);
+            queue.insertOrDecrease(origin, 0.0);
+
+            int visited = 0;
+            while (!queue.isEmpty()) {
+                Cancellation.checkpoint(visited);
+                int u = queue.poll();
+                workspace.settle(u);
+                double cost = workspace.cost(u);
+                visitor.visit(u, cost);
+                visited++;
+
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    int v = routing.arcTarget(arc);
+                    if (workspace.isSettled(v)) {
+                        continue;
+                    }
+                    int edge = routing.arcEdge(arc);
+                    double newCost = cost + weights.weight(edge, mask);
+                    if (newCost <= budget && newCost < workspace.cost(v)) {
+                        workspace.reach(v, newCost, u, edge);
+                        queue.insertOrDecrease(v, newCost);
+                    }
+                }
+            }
+            return visited;
+        } finally {
+            workspace.release();
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package pt.pa.routing;
+
+import java.util.*;
+
+/**
+ * A classe {@code KShortestPaths} procura os {@code k} caminhos sem ciclos de menor custo entre duas Stops de um
+ * {@link RoutingGraph}, pelo algoritmo de Yen.
+ *
+ * Cada novo caminho é obtido a partir de um dos anteriores: para cada Stop de desvio, o troço inicial é mantido e é
+ * procurado um troço final que não use as Stops do troço inicial nem as arestas pelas quais os caminhos já
+ * encontrados saem dessa Stop. Para que as pesquisas dos troços finais não comecem do zero:
+ * <ul>
+ *     <li>a árvore de caminhos mais curtos até ao destino é calculada uma única vez e o seu custo é usado como
+ *     estimativa A* em todas as pesquisas, que é exata enquanto o troço final não for afetado pelos bloqueios;</li>
+ *     <li>cada caminho guarda a posição em que se desviou do seu antecessor e só são procurados desvios a partir
+ *     dessa posição (modificação de Lawler), pois os anteriores já foram explorados.</li>
+ * </ul>
+ *
+ * Só é correta para pesos não negativos: com pesos negativos os caminhos teriam de ser ordenados por um custo
+ * deslocado ({@link ShiftedWeights}), que não respeita a ordem dos custos reais, pelo que essas máscaras são
+ * recusadas.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class KShortestPaths {
+    private final RoutingGraph routing;
+    private final EdgeWeightTable weights;
+    private final int mask;
+    private final double[] toDestination;
+
+    private final double[] costs;
+    private final int[] predecessorEdges;
+    private final int[] reachedStamp;
+    private final int[] settledStamp;
+    private final int[] blockedStop;
+    private final int[] blockedEdge;
+    private final IndexedMinHeap queue;
+    private int stamp;
+
+    /**
+     * Construtor que calcula a árvore de caminhos mais curtos até ao destino.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param weights     a tabela de pesos.
+     * @param mask        bits da máscara de transportes.
+     * @param destination identificador da Stop de destino.
+     */
+    private KShortestPaths(RoutingGraph routing, EdgeWeightTable weights, int mask, int destination) {
+        int numStops = routing.numStops();
+        this.routing = routing;
+        this.weights = weights;
+        this.mask = mask;
+        this.costs = new double[numStops];
+        this.predecessorEdges = new int[numStops];
+        this.reachedStamp = new int[numStops];
+        this.settledStamp = new int[numStops];
+        this.blockedStop = new int[numStops];
+        this.blockedEdge = new int[routing.numEdges()];
+        this.queue = new IndexedMinHeap(numStops);
+        this.toDestination = reverseTree(destination);
+    }
+
+    /**
+     * Procura até {@code k} caminhos sem ciclos entre duas Stops, por ordem crescente de custo.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param weights     a tabela de pesos.
+     * @param mask        bits da máscara de transportes.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @param k           número máximo de caminhos.
+     * @return os caminhos encontrados (vazia se não houver caminho); o número de Stops estabelecidas de cada
+     * resultado é o da pesquisa que o encontrou.
+     * @throws IllegalArgumentException se {@code k} não for positivo.
+     * @throws IllegalStateException    se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public static List<SearchResult> find(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The number of paths must be positive.");
+        }
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("K shortest paths require non-negative edge weights.");
+        }
+        return new KShortestPaths(routing, weights, mask, destination).search(origin, destination, k);
+    }
+
+    /**
+     * Executa o algoritmo de Yen.
+     */
+    private List<SearchResult> search(int origin, int destination, int k) {
+        List<Candidate> accepted = new ArrayList<>(k);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<Candidate> known = new HashSet<>();
+
+        Candidate first = spur(origin, destination, null, 0);
+        if (first == null) {
+            return List.of();
+        }
+        candidates.add(first);
+        known.add(first);
+
+        while (accepted.size() < k && !candidates.isEmpty()) {
+            Candidate path = candidates.poll();
+            accepted.add(path);
+            if (accepted.size() == k) {
+                break;
+            }
+
+            for (int i = path.deviation; i < path.edges.length; i++) {
+                stamp++;
+                for (int j = 0; j < i; j++) {
+                    blockedStop[path.stops[j]] = stamp;
+                }
+                for (Candidate other : accepted) {
+                    if (other.edges.length > i && other.sharesPrefix(path, i)) {
+                        blockedEdge[other.edges[i]] = stamp;
+                    }
+                }
+
+                Candidate candidate = spur(path.stops[i], destination, path, i);
+                if (candidate != null && known.add(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+
+        List<SearchResult> results = new ArrayList<>(accepted.size());
+        for (Candidate path : accepted) {
+            results.add(new SearchResult(path.stops, path.edges, path.settled));
+        }
+        return results;
+    }
+
+    /**
+     * Procura com A* o troço final a partir de uma Stop de desvio, evitando as Stops e arestas bloqueadas, e
+     * junta-o ao troço inicial do caminho de referência.
+     *
+     * @param spurStop    identificador da Stop de desvio.
+     * @param destination identificador da Stop de destino.
+     * @param root        caminho de referência, ou {@code null} para o primeiro caminho.
+     * @param deviation   posição da Stop de desvio no caminho de referência.
+     * @return o novo caminho, ou {@code null} se não existir.
+     */
+    private Candidate spur(int spurStop, int destination, Candidate root, int deviation) {
+        if (root == null) {
+            stamp++;
+        }
+        if (toDestination[spurStop] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        costs[spurStop] = 0.0;
+        predecessorEdges[spurStop] = -1;
+        reachedStamp[spurStop] = stamp;
+        queue.clear();
+        queue.insertOrDecrease(spurStop, estimate(spurStop));
+
+        int settled = 0;
+        boolean found = false;
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            settledStamp[u] = stamp;
+            settled++;
+            if (u == destination) {
+                found = true;
+                break;
+            }
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                int edge = routing.arcEdge(arc);
+                if (settledStamp[v] == stamp || blockedStop[v] == stamp || blockedEdge[edge] == stamp) {
+                    continue;
+                }
+                double newCost = costs[u] + weights.weight(edge, mask);
+                if (newCost == Double.POSITIVE_INFINITY || toDestination[v] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                if (reachedStamp[v] != stamp || newCost < costs[v]) {
+                    reachedStamp[v] = stamp;
+                    costs[v] = newCost;
+                    predecessorEdges[v] = edge;
+                    queue.insertOrDecrease(v, newCost + estimate(v));
+                }
+            }
+        }
+        queue.clear();
+        if (!found) {
+            return null;
+        }
+
+        int spurHops = 0;
+        for (int stop = destination; stop != spurStop; stop = routing.opposite(predecessorEdges[stop], stop)) {
+            spurHops++;
+        }
+        int hops = deviation + spurHops;
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        double[] prefixCost = new double[hops + 1];
+        if (root != null) {
+            System.arraycopy(root.stops, 0, stops, 0, deviation + 1);
+            System.arraycopy(root.edges, 0, edges, 0, deviation);
+            System.arraycopy(root.prefixCost, 0, prefixCost, 0, deviation + 1);
+        } else {
+            stops[0] = spurStop;
+        }
+        int stop = destination;
+        for (int i = hops; i > deviation; i--) {
+            stops[i] = stop;
+            edges[i - 1] = predecessorEdges[stop];
+            stop = routing.opposite(edges[i - 1], stop);
+        }
+        for (int i = deviation; i < hops; i++) {
+            prefixCost[i + 1] = prefixCost[i] + weights.weight(edges[i], mask);
+        }
+        return new Candidate(stops, edges, prefixCost, deviation, settled);
+    }
+
+    /**
+     * Estimativa A* do custo de uma Stop até ao destino: o custo exato sem bloqueios, que nunca é superior ao custo
+     * com Stops ou arestas bloqueadas e é consistente em qualquer subgrafo.
+     */
+    private double estimate(int stop) {
+        return toDestination[stop];
+    }
+
+    /**
+     * Calcula com Dijkstra o custo de cada Stop até ao destino.
+     *
+     * @param destination identificador da Stop de destino.
+     * @return o custo de cada Stop até ao destino.
+     */
+    private double[] reverseTree(int destination) {
+        double[] tree = new double[routing.numStops()];
+        Arrays.fill(tree, Double.POSITIVE_INFINITY);
+        tree[destination] = 0.0;
+        queue.insertOrDecrease(destination, 0.0);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                double newCost = tree[u] + weights.weight(routing.arcEdge(arc), mask);
+                if (newCost < tree[v]) {
+                    tree[v] = newCost;
+                    queue.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Caminho candidato, com o custo acumulado de cada prefixo e a posição em que se desviou do seu antecessor.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        private final int[] stops;
+        private final int[] edges;
+        private final double[] prefixCost;
+        private final int deviation;
+        private final int settled;
+
+        private Candidate(int[] stops, int[] edges, double[] prefixCost, int deviation, int settled) {
+            this.stops = stops;
+            this.edges = edges;
+            this.prefixCost = prefixCost;
+            this.deviation = deviation;
+            this.settled = settled;
+        }
+
+        private double cost() {
+            return prefixCost[edges.length];
+        }
+
+        private boolean sharesPrefix(Candidate other, int length) {
+            return Arrays.equals(stops, 0, length + 1, other.stops, 0, length + 1);
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byCost = Double.compare(cost(), other.cost());
+            return byCost != 0 ? byCost : Integer.compare(edges.length, other.edges.length);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Candidate && Arrays.equals(edges, ((Candidate) other).edges)
+                    && stops[0] == ((Candidate) other).stops[0];
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges);
+        }
+    }
+}
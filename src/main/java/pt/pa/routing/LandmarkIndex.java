@@ -0,0 +1,208 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code LandmarkIndex} guarda as distâncias entre um conjunto de Stops de referência (<i>landmarks</i>) e
+ * todas as Stops de um {@link RoutingGraph}, para uma tabela de pesos e uma máscara de transportes, usadas pela
+ * pesquisa ALT (A*, <i>landmarks</i> e desigualdade triangular).
+ *
+ * Os landmarks são escolhidos por seleção do ponto mais afastado: cada novo landmark é a Stop cuja distância ao
+ * landmark mais próximo já escolhido é máxima, preferindo Stops ainda não alcançadas (de outras componentes) e
+ * ignorando Stops isoladas.
+ * Como as Routes não são orientadas, a distância de e para cada landmark é a mesma e basta um array por landmark.
+ *
+ * Quando a máscara tem pesos negativos, as distâncias são calculadas sobre os pesos deslocados de
+ * {@link ShiftedWeights}, que são os pesos usados pela pesquisa. As distâncias ficam num único array primitivo,
+ * agrupadas por Stop.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class LandmarkIndex {
+    /**
+     * Número de landmarks por omissão.
+     */
+    public static final int DEFAULT_LANDMARKS = 16;
+
+    private final int numLandmarks;
+    private final int[] landmarks;
+    private final double[] distances;
+
+    /**
+     * Construtor privado; as instâncias são criadas através de {@link #build}.
+     *
+     * @param landmarks Stops escolhidas como landmarks.
+     * @param distances distâncias agrupadas por Stop ({@code distances[stop * numLandmarks + landmark]}).
+     */
+    private LandmarkIndex(int[] landmarks, double[] distances) {
+        this.numLandmarks = landmarks.length;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Escolhe os landmarks e calcula as distâncias de todas as Stops a cada um.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos.
+     * @param mask    bits da máscara de transportes.
+     * @param shift   deslocamento dos pesos ({@link ShiftedWeights#shift()}), nulo sem pesos negativos.
+     * @param count   número máximo de landmarks.
+     * @return o índice de landmarks.
+     */
+    public static LandmarkIndex build(RoutingGraph routing, EdgeWeightTable weights, int mask, double shift, int count) {
+        int numStops = routing.numStops();
+        int numLandmarks = Math.min(count, numStops);
+        int[] landmarks = new int[numLandmarks];
+        double[] distances = new double[numStops * numLandmarks];
+        if (numLandmarks == 0) {
+            return new LandmarkIndex(landmarks, distances);
+        }
+
+        double[] nearest = new double[numStops];
+        double[] tree = new double[numStops];
+        IndexedMinHeap queue = new IndexedMinHeap(numStops);
+
+        // O primeiro landmark é a Stop mais afastada da Stop 0
+        shortestDistances(routing, weights, mask, shift, 0, tree, queue);
+        int next = farthest(routing, tree, landmarks, 0, false);
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+        for (int l = 0; l < numLandmarks; l++) {
+            landmarks[l] = next;
+            shortestDistances(routing, weights, mask, shift, next, tree, queue);
+            for (int stop = 0; stop < numStops; stop++) {
+                distances[stop * numLandmarks + l] = tree[stop];
+                nearest[stop] = Math.min(nearest[stop], tree[stop]);
+            }
+            next = farthest(routing, nearest, landmarks, l + 1, true);
+        }
+        return new LandmarkIndex(landmarks, distances);
+    }
+
+    /**
+     * Retorna o número de landmarks.
+     *
+     * @return número de landmarks.
+     */
+    public int numLandmarks() {
+        return numLandmarks;
+    }
+
+    /**
+     * Retorna a Stop usada como landmark.
+     *
+     * @param landmark índice do landmark.
+     * @return identificador da Stop.
+     */
+    public int landmark(int landmark) {
+        return landmarks[landmark];
+    }
+
+    /**
+     * Retorna a distância entre uma Stop e um landmark.
+     *
+     * @param stop     identificador da Stop.
+     * @param landmark índice do landmark.
+     * @return a distância, ou {@link Double#POSITIVE_INFINITY} se não estiverem ligados.
+     */
+    public double distance(int stop, int landmark) {
+        return distances[stop * numLandmarks + landmark];
+    }
+
+    /**
+     * Cria a função de limite inferior do custo de cada Stop até ao destino, pela desigualdade triangular:
+     * {@code max |d(l, destino) - d(l, v)|} sobre os landmarks ligados a ambas.
+     *
+     * @param destination identificador da Stop de destino.
+     * @return a função de limite inferior.
+     */
+    public StopPotential lowerBound(int destination) {
+        double[] toDestination = Arrays.copyOfRange(distances, destination * numLandmarks, (destination + 1) * numLandmarks);
+        return stop -> {
+            double bound = 0.0;
+            int base = stop * numLandmarks;
+            for (int l = 0; l < numLandmarks; l++) {
+                double fromStop = distances[base + l];
+                double target = toDestination[l];
+                if (fromStop == Double.POSITIVE_INFINITY || target == Double.POSITIVE_INFINITY) {
+                    if (fromStop != target) {
+                        return Double.POSITIVE_INFINITY;
+                    }
+                    continue;
+                }
+                bound = Math.max(bound, Math.abs(target - fromStop));
+            }
+            return bound;
+        };
+    }
+
+    /**
+     * Retorna a memória ocupada pelas distâncias, em bytes.
+     *
+     * @return número aproximado de bytes.
+     */
+    public long memoryBytes() {
+        return (long) distances.length * Double.BYTES + (long) landmarks.length * Integer.BYTES;
+    }
+
+    /**
+     * Calcula as distâncias de uma Stop a todas as outras com Dijkstra sobre os pesos deslocados.
+     */
+    private static void shortestDistances(RoutingGraph routing, EdgeWeightTable weights, int mask, double shift,
+                                          int source, double[] costs, IndexedMinHeap queue) {
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[source] = 0.0;
+        queue.insertOrDecrease(source, 0.0);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                double newCost = costs[u] + weights.weight(routing.arcEdge(arc), mask) + shift;
+                if (newCost < costs[v]) {
+                    costs[v] = newCost;
+                    queue.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Escolhe o próximo landmark: a Stop com a maior distância finita ou, se {@code preferUnreached} for verdadeiro,
+     * a primeira Stop ainda não alcançada. Stops isoladas e landmarks já escolhidos são ignorados.
+     *
+     * @param routing         a fotografia do grafo.
+     * @param costs           distância de cada Stop aos landmarks já escolhidos.
+     * @param chosen          landmarks já escolhidos.
+     * @param numChosen       número de landmarks já escolhidos.
+     * @param preferUnreached se deve preferir Stops de componentes ainda sem landmark.
+     * @return identificador da Stop escolhida.
+     */
+    private static int farthest(RoutingGraph routing, double[] costs, int[] chosen, int numChosen, boolean preferUnreached) {
+        int best = 0;
+        double bestCost = -1.0;
+        for (int stop = 0; stop < costs.length; stop++) {
+            if (routing.degree(stop) == 0 || contains(chosen, numChosen, stop)) {
+                continue;
+            }
+            if (costs[stop] == Double.POSITIVE_INFINITY) {
+                if (preferUnreached) {
+                    return stop;
+                }
+            } else if (costs[stop] > bestCost) {
+                bestCost = costs[stop];
+                best = stop;
+            }
+        }
+        return best;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package pt.pa.routing;
+
+import pt.pa.TransferPenalties;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code ModeTransferSearch} procura o caminho de menor custo entre duas Stops de um {@link RoutingGraph}
+ * quando mudar de tipo de transporte tem um custo ({@link TransferPenalties}).
+ *
+ * A pesquisa de Dijkstra é feita sobre um grafo de estados implícito: cada estado é um par (Stop, tipo de transporte
+ * com que se chegou à Stop), identificado por {@code stop * MODES + modo}, mais um estado inicial na origem sem tipo
+ * de transporte. Os arcos de um estado são gerados no momento a partir dos arcos da Stop no {@link RoutingGraph}: cada
+ * aresta dá um arco por tipo de transporte da máscara com Route ativa, com o menor peso desse tipo
+ * ({@link EdgeWeightTable#weight(int, int)} com a máscara de um só tipo) mais a penalização do transbordo. Nenhum
+ * estado é materializado como objeto: os custos e predecessores ficam em arrays primitivos de
+ * {@code numStops * MODES + 1} elementos.
+ *
+ * Só é correta para pesos não negativos: com pesos deslocados ({@link ShiftedWeights}) as penalizações seriam
+ * comparadas com {@code shift * troços} e o caminho não seria o de menor custo com transbordos, pelo que essas
+ * máscaras são recusadas.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ModeTransferSearch {
+    private static final int MODES = TransferPenalties.MODES;
+
+    private ModeTransferSearch() {
+    }
+
+    /**
+     * Procura o caminho de menor custo, com penalizações de transbordo, entre duas Stops.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param weights     a tabela de pesos.
+     * @param mask        bits da máscara de transportes.
+     * @param penalties   as penalizações de transbordo.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o caminho, com a Route escolhida em cada aresta, ou {@code null} se não houver caminho.
+     * @throws IllegalStateException se alguma aresta tiver peso negativo para a máscara de transportes.
+     */
+    public static MultiCriteriaPath find(RoutingGraph routing, EdgeWeightTable weights, int mask,
+                                         TransferPenalties penalties, int origin, int destination) {
+        if (!weights.isNonNegative(mask)) {
+            throw new IllegalStateException("Transfer penalties require non-negative edge weights.");
+        }
+
+        int start = routing.numStops() * MODES;
+        double[] costs = new double[start + 1];
+        int[] predecessors = new int[start + 1];
+        int[] predecessorRoutes = new int[start + 1];
+        int[] predecessorEdges = new int[start + 1];
+        boolean[] settled = new boolean[start + 1];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+
+        IndexedMinHeap queue = new IndexedMinHeap(start + 1);
+        costs[start] = 0.0;
+        predecessors[start] = -1;
+        queue.insertOrDecrease(start, 0.0);
+
+        int found = -1;
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            settled[state] = true;
+            int u = state == start ? origin : state / MODES;
+            if (u == destination) {
+                found = state;
+                break;
+            }
+
+            int mode = state == start ? -1 : state % MODES;
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                int edge = routing.arcEdge(arc);
+                for (int next = 0; next < MODES; next++) {
+                    int bit = 1 << next;
+                    int target = v * MODES + next;
+                    if ((mask & bit) == 0 || settled[target]) {
+                        continue;
+                    }
+                    int route = weights.bestRoute(edge, bit);
+                    if (route < 0) {
+                        continue;
+                    }
+                    double penalty = mode < 0 ? 0.0 : penalties.get(mode, next);
+                    double newCost = costs[state] + weights.weight(edge, bit) + penalty;
+                    if (newCost < costs[target]) {
+                        costs[target] = newCost;
+                        predecessors[target] = state;
+                        predecessorRoutes[target] = route;
+                        predecessorEdges[target] = edge;
+                        queue.insertOrDecrease(target, newCost);
+                    }
+                }
+            }
+        }
+        queue.clear();
+        if (found < 0) {
+            return null;
+        }
+
+        int hops = 0;
+        for (int state = found; state != start; state = predecessors[state]) {
+            hops++;
+        }
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        int[] routes = new int[hops];
+        double distance = 0.0;
+        int duration = 0;
+        double sustainability = 0.0;
+        int state = found;
+        for (int i = hops; i > 0; i--) {
+            stops[i] = state / MODES;
+            edges[i - 1] = predecessorEdges[state];
+            routes[i - 1] = predecessorRoutes[state];
+            distance += routing.routeDistance(routes[i - 1]);
+            duration += routing.routeDuration(routes[i - 1]);
+            sustainability += routing.routeSustainability(routes[i - 1]);
+            state = predecessors[state];
+        }
+        stops[0] = origin;
+        return new MultiCriteriaPath(stops, edges, routes, distance, duration, sustainability);
+    }
+}
@@ -0,0 +1,90 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code MultiCriteriaPath} representa um caminho de uma pesquisa multicritério num {@link RoutingGraph}:
+ * as Stops, as arestas e a Route escolhida em cada aresta, da origem para o destino, e os totais de distância,
+ * duração e sustentabilidade dessas Routes.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class MultiCriteriaPath {
+    private final int[] stops;
+    private final int[] edges;
+    private final int[] routes;
+    private final double distance;
+    private final int duration;
+    private final double sustainability;
+
+    /**
+     * Construtor de um caminho multicritério.
+     *
+     * @param stops          identificadores das Stops, da origem para o destino.
+     * @param edges          identificadores das arestas percorridas.
+     * @param routes         índices das Routes escolhidas em cada aresta.
+     * @param distance       distância total.
+     * @param duration       duração total.
+     * @param sustainability custo de sustentabilidade total.
+     */
+    public MultiCriteriaPath(int[] stops, int[] edges, int[] routes, double distance, int duration, double sustainability) {
+        this.stops = stops;
+        this.edges = edges;
+        this.routes = routes;
+        this.distance = distance;
+        this.duration = duration;
+        this.sustainability = sustainability;
+    }
+
+    /**
+     * Retorna as Stops do caminho.
+     *
+     * @return identificadores das Stops, da origem para o destino.
+     */
+    public int[] stops() {
+        return stops;
+    }
+
+    /**
+     * Retorna as arestas do caminho.
+     *
+     * @return identificadores das arestas ({@code stops().length - 1} elementos).
+     */
+    public int[] edges() {
+        return edges;
+    }
+
+    /**
+     * Retorna as Routes escolhidas em cada aresta.
+     *
+     * @return índices das Routes ({@code edges().length} elementos).
+     */
+    public int[] routes() {
+        return routes;
+    }
+
+    /**
+     * Retorna a distância total.
+     *
+     * @return distância total.
+     */
+    public double distance() {
+        return distance;
+    }
+
+    /**
+     * Retorna a duração total.
+     *
+     * @return duração total.
+     */
+    public int duration() {
+        return duration;
+    }
+
+    /**
+     * Retorna o custo de sustentabilidade total.
+     *
+     * @return custo de sustentabilidade total.
+     */
+    public double sustainability() {
+        return sustainability;
+    }
+}
@@ -0,0 +1,332 @@
+package pt.pa.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A classe {@code MultiCriteriaSearch} calcula, numa única pesquisa, a frente de Pareto dos caminhos entre duas Stops
+ * de um {@link RoutingGraph} segundo os três critérios das Routes: distância, duração e sustentabilidade.
+ *
+ * A pesquisa é de estabelecimento de etiquetas (<i>label setting</i>, algoritmo de Martins): cada etiqueta guarda os
+ * três totais de um caminho parcial e as etiquetas são retiradas da fila por ordem lexicográfica. Como a distância
+ * nunca diminui, uma etiqueta retirada só pode ser dominada por etiquetas já definitivas da mesma Stop. Cada Stop
+ * guarda essas etiquetas num saco (<i>bag</i>) ordenado pela duração, com a sustentabilidade estritamente
+ * decrescente: verificar se uma etiqueta é dominada é uma pesquisa binária. As etiquetas ficam em arrays primitivos.
+ *
+ * Para limitar a latência, a pesquisa termina quando o destino recebe {@code maxFront} etiquetas definitivas. As
+ * restantes Stops não têm limite, para que nenhum caminho de Pareto seja descartado a meio: a frente devolvida é
+ * formada pelos {@code maxFront} caminhos de Pareto de menor distância.
+ * Quando a máscara tem Routes com sustentabilidade negativa, um ciclo pode melhorar esse critério; as etiquetas
+ * que voltam a uma Stop do seu próprio caminho são por isso descartadas.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class MultiCriteriaSearch {
+    /**
+     * Tamanho máximo da frente por omissão.
+     */
+    public static final int DEFAULT_MAX_FRONT = 16;
+
+    private final RoutingGraph routing;
+    private final int mask;
+    private final int maxFront;
+    private final boolean nonNegative;
+    private final Bag[] bags;
+
+    private int numLabels;
+    private int[] labelStop = new int[64];
+    private int[] labelParent = new int[64];
+    private int[] labelEdge = new int[64];
+    private int[] labelRoute = new int[64];
+    private double[] labelDistance = new double[64];
+    private int[] labelDuration = new int[64];
+    private double[] labelSustainability = new double[64];
+
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    private MultiCriteriaSearch(RoutingGraph routing, int mask, int maxFront) {
+        this.routing = routing;
+        this.mask = mask;
+        this.maxFront = maxFront;
+        this.bags = new Bag[routing.numStops()];
+
+        boolean negative = false;
+        for (int r = 0; r < routing.numRoutes() && !negative; r++) {
+            negative = usable(r) && routing.routeSustainability(r) < 0;
+        }
+        this.nonNegative = !negative;
+    }
+
+    /**
+     * Calcula a frente de Pareto dos caminhos entre duas Stops.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param mask        bits da máscara de transportes.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @param maxFront    número máximo de caminhos da frente.
+     * @return os caminhos da frente, por ordem crescente de distância (vazia se não houver caminho).
+     * @throws IllegalArgumentException se {@code maxFront} não for positivo.
+     */
+    public static List<MultiCriteriaPath> paretoFront(RoutingGraph routing, int mask, int origin, int destination, int maxFront) {
+        if (maxFront <= 0) {
+            throw new IllegalArgumentException("The maximum front size must be positive.");
+        }
+        return new MultiCriteriaSearch(routing, mask, maxFront).search(origin, destination);
+    }
+
+    /**
+     * Executa a pesquisa por estabelecimento de etiquetas.
+     */
+    private List<MultiCriteriaPath> search(int origin, int destination) {
+        List<MultiCriteriaPath> front = new ArrayList<>();
+        push(newLabel(origin, -1, -1, -1, 0.0, 0, 0.0));
+
+        while (heapSize > 0) {
+            int label = pop();
+            int stop = labelStop[label];
+            Bag bag = bag(stop);
+            if (bag.dominates(labelDuration[label], labelSustainability[label])) {
+                continue;
+            }
+            bag.add(labelDuration[label], labelSustainability[label]);
+
+            if (stop == destination) {
+                front.add(path(label));
+                if (front.size() == maxFront) {
+                    break;
+                }
+                continue;
+            }
+
+            for (int arc = routing.firstArc(stop); arc < routing.endArc(stop); arc++) {
+                int next = routing.arcTarget(arc);
+                int edge = routing.arcEdge(arc);
+                for (int r = routing.firstRoute(edge); r < routing.endRoute(edge); r++) {
+                    if (!usable(r)) {
+                        continue;
+                    }
+                    int duration = labelDuration[label] + routing.routeDuration(r);
+                    double sustainability = labelSustainability[label] + routing.routeSustainability(r);
+                    if (isPruned(next, destination, duration, sustainability) || (!nonNegative && visits(label, next))) {
+                        continue;
+                    }
+                    push(newLabel(next, label, edge, r, labelDistance[label] + routing.routeDistance(r), duration, sustainability));
+                }
+            }
+        }
+        return front;
+    }
+
+    /**
+     * Indica se uma nova etiqueta pode ser descartada: se for dominada pelas etiquetas definitivas da Stop ou, com
+     * critérios não negativos, pelas etiquetas definitivas do destino.
+     */
+    private boolean isPruned(int stop, int destination, int duration, double sustainability) {
+        Bag bag = bags[stop];
+        if (bag != null && bag.dominates(duration, sustainability)) {
+            return true;
+        }
+        Bag target = bags[destination];
+        return nonNegative && target != null && target.dominates(duration, sustainability);
+    }
+
+    /**
+     * Indica se o caminho de uma etiqueta já passa por uma Stop.
+     */
+    private boolean visits(int label, int stop) {
+        for (int l = label; l >= 0; l = labelParent[l]) {
+            if (labelStop[l] == stop) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indica se uma Route está ativa e pertence a um tipo de transporte da máscara.
+     */
+    private boolean usable(int route) {
+        return routing.routeState(route) && (mask & (1 << routing.routeTransport(route))) != 0;
+    }
+
+    private Bag bag(int stop) {
+        if (bags[stop] == null) {
+            bags[stop] = new Bag();
+        }
+        return bags[stop];
+    }
+
+    /**
+     * Reconstrói o caminho de uma etiqueta do destino.
+     */
+    private MultiCriteriaPath path(int label) {
+        int hops = 0;
+        for (int l = label; labelParent[l] >= 0; l = labelParent[l]) {
+            hops++;
+        }
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        int[] routes = new int[hops];
+        int l = label;
+        for (int i = hops; i > 0; i--) {
+            stops[i] = labelStop[l];
+            routes[i - 1] = labelRoute[l];
+            edges[i - 1] = labelEdge[l];
+            l = labelParent[l];
+        }
+        stops[0] = labelStop[l];
+        return new MultiCriteriaPath(stops, edges, routes, labelDistance[label], labelDuration[label], labelSustainability[label]);
+    }
+
+    private int newLabel(int stop, int parent, int edge, int route, double distance, int duration, double sustainability) {
+        if (numLabels == labelStop.length) {
+            int capacity = numLabels * 2;
+            labelStop = Arrays.copyOf(labelStop, capacity);
+            labelParent = Arrays.copyOf(labelParent, capacity);
+            labelEdge = Arrays.copyOf(labelEdge, capacity);
+            labelRoute = Arrays.copyOf(labelRoute, capacity);
+            labelDistance = Arrays.copyOf(labelDistance, capacity);
+            labelDuration = Arrays.copyOf(labelDuration, capacity);
+            labelSustainability = Arrays.copyOf(labelSustainability, capacity);
+        }
+        labelStop[numLabels] = stop;
+        labelParent[numLabels] = parent;
+        labelEdge[numLabels] = edge;
+        labelRoute[numLabels] = route;
+        labelDistance[numLabels] = distance;
+        labelDuration[numLabels] = duration;
+        labelSustainability[numLabels] = sustainability;
+        return numLabels++;
+    }
+
+    /**
+     * Compara duas etiquetas por ordem lexicográfica (distância, duração, sustentabilidade).
+     */
+    private boolean less(int a, int b) {
+        if (labelDistance[a] != labelDistance[b]) {
+            return labelDistance[a] < labelDistance[b];
+        }
+        if (labelDuration[a] != labelDuration[b]) {
+            return labelDuration[a] < labelDuration[b];
+        }
+        return labelSustainability[a] < labelSustainability[b];
+    }
+
+    private void push(int label) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(label, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = label;
+    }
+
+    private int pop() {
+        int min = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], last)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = last;
+        }
+        return min;
+    }
+
+    /**
+     * Saco das etiquetas definitivas de uma Stop, projetadas na duração e na sustentabilidade: como todas as
+     * etiquetas futuras têm distância não inferior, uma etiqueta é dominada se alguma etiqueta do saco tiver duração e
+     * sustentabilidade não superiores. Só são guardados os pontos não dominados nessa projeção, ordenados pela duração
+     * (crescente) e, por isso, com sustentabilidade estritamente decrescente.
+     */
+    private static class Bag {
+        private int[] durations = new int[4];
+        private double[] sustainabilities = new double[4];
+        private int size;
+
+        /**
+         * Indica se algum ponto do saco domina (ou iguala) o ponto fornecido.
+         */
+        private boolean dominates(int duration, double sustainability) {
+            int i = upperBound(duration) - 1;
+            return i >= 0 && sustainabilities[i] <= sustainability;
+        }
+
+        /**
+         * Acrescenta um ponto não dominado, removendo os pontos que passa a dominar.
+         */
+        private void add(int duration, double sustainability) {
+            int from = lowerBound(duration);
+            int to = from;
+            while (to < size && sustainabilities[to] >= sustainability) {
+                to++;
+            }
+            int newSize = size - (to - from) + 1;
+            if (newSize > durations.length) {
+                durations = Arrays.copyOf(durations, newSize * 2);
+                sustainabilities = Arrays.copyOf(sustainabilities, newSize * 2);
+            }
+            System.arraycopy(durations, to, durations, from + 1, size - to);
+            System.arraycopy(sustainabilities, to, sustainabilities, from + 1, size - to);
+            durations[from] = duration;
+            sustainabilities[from] = sustainability;
+            size = newSize;
+        }
+
+        /**
+         * Primeira posição com duração não inferior à fornecida.
+         */
+        private int lowerBound(int duration) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (durations[mid] < duration) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Primeira posição com duração superior à fornecida.
+         */
+        private int upperBound(int duration) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (durations[mid] <= duration) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code ResourceConstrainedSearch} procura o caminho entre duas Stops de um {@link RoutingGraph} que
+ * minimiza um critério (o objetivo) sem que a soma de outro critério (o recurso) ultrapasse um orçamento, por exemplo
+ * o caminho mais rápido cujo custo de sustentabilidade não passa de um valor. Cada Route ativa de uma aresta que
+ * pertença à máscara é uma opção distinta, pois a Route mais barata para o objetivo pode não ser a mais barata para
+ * o recurso.
+ *
+ * A pesquisa é feita por etiquetas: cada etiqueta guarda o custo e o recurso acumulados de um caminho parcial.
+ * Antes da pesquisa, duas pesquisas de Dijkstra a partir do destino dão, para cada Stop, o menor custo e o menor
+ * recurso que ainda faltam até ao destino. Estes limites inferiores são usados para:
+ * <ul>
+ *     <li>ordenar as etiquetas pelo custo acumulado mais o limite do custo (estimativa A*), de modo que a primeira
+ *     etiqueta do destino retirada da fila é ótima;</li>
+ *     <li>descartar as etiquetas cujo recurso acumulado mais o limite do recurso ultrapassa o orçamento.</li>
+ * </ul>
+ * Como as etiquetas de uma Stop saem da fila por ordem crescente de custo, uma etiqueta só não é dominada se tiver
+ * menos recurso do que todas as que saíram antes: basta guardar o menor recurso já expandido em cada Stop.
+ *
+ * Os limites inferiores e a dominância só são válidos com pesos não negativos nos dois critérios; nas arestas não
+ * orientadas uma Route de peso negativo forma um ciclo negativo e o problema deixa de ter solução finita.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ResourceConstrainedSearch {
+    private final RoutingGraph routing;
+    private final EdgeWeightTable objective;
+    private final EdgeWeightTable resource;
+    private final int mask;
+    private final double budget;
+    private final double[] costBound;
+    private final double[] resourceBound;
+    private final double[] expandedResource;
+
+    private int numLabels;
+    private int[] labelStop = new int[64];
+    private int[] labelParent = new int[64];
+    private int[] labelEdge = new int[64];
+    private int[] labelRoute = new int[64];
+    private double[] labelCost = new double[64];
+    private double[] labelResource = new double[64];
+
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    private ResourceConstrainedSearch(RoutingGraph routing, EdgeWeightTable objective, EdgeWeightTable resource,
+                                      int mask, int destination, double budget) {
+        this.routing = routing;
+        this.objective = objective;
+        this.resource = resource;
+        this.mask = mask;
+        this.budget = budget;
+        IndexedMinHeap queue = new IndexedMinHeap(routing.numStops());
+        this.costBound = reverseTree(objective, destination, queue);
+        this.resourceBound = reverseTree(resource, destination, queue);
+        this.expandedResource = new double[routing.numStops()];
+        Arrays.fill(expandedResource, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Procura o caminho de menor custo segundo a tabela do objetivo cujo recurso total não ultrapassa o orçamento.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param objective   a tabela de pesos do critério a minimizar.
+     * @param resource    a tabela de pesos do critério limitado.
+     * @param mask        bits da máscara de transportes.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @param budget      valor máximo do recurso total.
+     * @return o caminho, com as Routes escolhidas, ou {@code null} se nenhum caminho respeitar o orçamento.
+     * @throws IllegalArgumentException se o orçamento for negativo ou não for um número.
+     * @throws IllegalStateException    se alguma aresta tiver peso negativo num dos critérios para a máscara.
+     */
+    public static MultiCriteriaPath find(RoutingGraph routing, EdgeWeightTable objective, EdgeWeightTable resource,
+                                         int mask, int origin, int destination, double budget) {
+        if (!(budget >= 0)) {
+            throw new IllegalArgumentException("The budget must be a non-negative number.");
+        }
+        if (!objective.isNonNegative(mask) || !resource.isNonNegative(mask)) {
+            throw new IllegalStateException("Constrained routing requires non-negative weights.");
+        }
+        return new ResourceConstrainedSearch(routing, objective, resource, mask, destination, budget).search(origin, destination);
+    }
+
+    /**
+     * Executa a pesquisa por etiquetas.
+     */
+    private MultiCriteriaPath search(int origin, int destination) {
+        if (resourceBound[origin] > budget) {
+            return null;
+        }
+        push(newLabel(origin, -1, -1, -1, 0.0, 0.0));
+
+        while (heapSize > 0) {
+            int label = pop();
+            int stop = labelStop[label];
+            if (labelResource[label] >= expandedResource[stop]) {
+                continue;
+            }
+            expandedResource[stop] = labelResource[label];
+            if (stop == destination) {
+                return path(label);
+            }
+
+            for (int arc = routing.firstArc(stop); arc < routing.endArc(stop); arc++) {
+                int next = routing.arcTarget(arc);
+                int edge = routing.arcEdge(arc);
+                if (costBound[next] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                for (int r = routing.firstRoute(edge); r < routing.endRoute(edge); r++) {
+                    if (!usable(r)) {
+                        continue;
+                    }
+                    double newResource = labelResource[label] + resource.routeWeight(r);
+                    if (newResource >= expandedResource[next] || newResource + resourceBound[next] > budget) {
+                        continue;
+                    }
+                    push(newLabel(next, label, edge, r, labelCost[label] + objective.routeWeight(r), newResource));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indica se uma Route está ativa e pertence a um tipo de transporte da máscara.
+     */
+    private boolean usable(int route) {
+        return routing.routeState(route) && (mask & (1 << routing.routeTransport(route))) != 0;
+    }
+
+    /**
+     * Calcula com Dijkstra o menor peso de cada Stop até ao destino.
+     *
+     * @param weights     a tabela de pesos.
+     * @param destination identificador da Stop de destino.
+     * @param queue       a fila de prioridade, vazia.
+     * @return o menor peso de cada Stop até ao destino ({@link Double#POSITIVE_INFINITY} se não houver caminho).
+     */
+    private double[] reverseTree(EdgeWeightTable weights, int destination, IndexedMinHeap queue) {
+        double[] tree = new double[routing.numStops()];
+        Arrays.fill(tree, Double.POSITIVE_INFINITY);
+        tree[destination] = 0.0;
+        queue.insertOrDecrease(destination, 0.0);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                double newCost = tree[u] + weights.weight(routing.arcEdge(arc), mask);
+                if (newCost < tree[v]) {
+                    tree[v] = newCost;
+                    queue.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Reconstrói o caminho de uma etiqueta do destino, com os totais de cada critério das Routes escolhidas.
+     */
+    private MultiCriteriaPath path(int label) {
+        int hops = 0;
+        for (int l = label; labelParent[l] >= 0; l = labelParent[l]) {
+            hops++;
+        }
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        int[] routes = new int[hops];
+        double distance = 0.0;
+        int duration = 0;
+        double sustainability = 0.0;
+        int l = label;
+        for (int i = hops; i > 0; i--) {
+            stops[i] = labelStop[l];
+            edges[i - 1] = labelEdge[l];
+            routes[i - 1] = labelRoute[l];
+            distance += routing.routeDistance(labelRoute[l]);
+            duration += routing.routeDuration(labelRoute[l]);
+            sustainability += routing.routeSustainability(labelRoute[l]);
+            l = labelParent[l];
+        }
+        stops[0] = labelStop[l];
+        return new MultiCriteriaPath(stops, edges, routes, distance, duration, sustainability);
+    }
+
+    private int newLabel(int stop, int parent, int edge, int route, double cost, double resource) {
+        if (numLabels == labelStop.length) {
+            int capacity = numLabels * 2;
+            labelStop = Arrays.copyOf(labelStop, capacity);
+            labelParent = Arrays.copyOf(labelParent, capacity);
+            labelEdge = Arrays.copyOf(labelEdge, capacity);
+            labelRoute = Arrays.copyOf(labelRoute, capacity);
+            labelCost = Arrays.copyOf(labelCost, capacity);
+            labelResource = Arrays.copyOf(labelResource, capacity);
+        }
+        labelStop[numLabels] = stop;
+        labelParent[numLabels] = parent;
+        labelEdge[numLabels] = edge;
+        labelRoute[numLabels] = route;
+        labelCost[numLabels] = cost;
+        labelResource[numLabels] = resource;
+        return numLabels++;
+    }
+
+    /**
+     * Compara duas etiquetas pela estimativa do custo total e, em caso de empate, pelo recurso acumulado.
+     */
+    private boolean less(int a, int b) {
+        double keyA = labelCost[a] + costBound[labelStop[a]];
+        double keyB = labelCost[b] + costBound[labelStop[b]];
+        if (keyA != keyB) {
+            return keyA < keyB;
+        }
+        return labelResource[a] < labelResource[b];
+    }
+
+    private void push(int label) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(label, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = label;
+    }
+
+    private int pop() {
+        int min = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], last)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) {
+            heap[i] = last;
+        }
+        return min;
+    }
+}
@@ -0,0 +1,505 @@
+package pt.pa.routing;
+
+import com.brunomnsilva.smartgraph.graph.Edge;
+import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+import pt.pa.Route;
+import pt.pa.Stop;
+import pt.pa.patterns.observer.Observer;
+import pt.pa.patterns.observer.Subject;
+import pt.pa.patterns.strategy.WeightCalculationStrategy;
+
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * A classe {@code RoutingGraph} representa uma fotografia compacta (formato CSR - <i>compressed sparse row</i>)
+ * do grafo de transportes ({@link Graph}) usada pelos algoritmos de encaminhamento e de análise.
+ *
+ * Cada Stop ({@link Stop}) é mapeada para um identificador inteiro denso entre {@code 0} e {@code numStops() - 1}
+ * e cada aresta para um identificador entre {@code 0} e {@code numEdges() - 1}. As adjacências de cada Stop ficam
+ * guardadas de forma contígua em arrays primitivos, tal como os atributos (tipo de transporte, distância, duração,
+ * sustentabilidade e estado) de todas as Routes ({@link Route}) de cada aresta.
+ *
+ * A topologia é imutável: inserir ou remover Stops e Routes obriga a construir uma nova fotografia. A fotografia
+ * observa as suas Routes, pelo que alterações ao estado ou à duração de uma Route existente são aplicadas
+ * diretamente, atualizando apenas a linha da aresta afetada nas tabelas de pesos ({@link EdgeWeightTable}).
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class RoutingGraph implements Observer {
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private final Vertex<Stop>[] vertices;
+    private final Map<Vertex<Stop>, Integer> vertexIds;
+    private final double[] stopLatitude;
+    private final double[] stopLongitude;
+
+    private final int[] adjacencyStart;
+    private final int[] adjacencyTarget;
+    private final int[] adjacencyEdge;
+
+    private final Edge<List<Route>, Stop>[] edges;
+    private final Map<Edge<List<Route>, Stop>, Integer> edgeIds;
+    private final int[] edgeSource;
+    private final int[] edgeTarget;
+
+    private final int[] routeStart;
+    private final int[] routeEdge;
+    private final Route[] routes;
+    private final Map<Route, Integer> routeIds;
+    private final byte[] routeTransport;
+    private final double[] routeDistance;
+    private final int[] routeDuration;
+    private final double[] routeSustainability;
+    private final boolean[] routeState;
+
+    private final Map<Class<?>, EdgeWeightTable> weightTables;
+    private ContractionHierarchy contractionHierarchy;
+
+    /**
+     * Construtor privado; as instâncias são criadas através de {@link #of(Graph)}.
+     *
+     * @param graph o grafo de transportes a converter.
+     */
+    private RoutingGraph(Graph<Stop, List<Route>> graph) {
+        Collection<Vertex<Stop>> vertexList = graph.vertices();
+        Collection<Edge<List<Route>, Stop>> edgeList = graph.edges();
+
+        int numStops = vertexList.size();
+        int numEdges = edgeList.size();
+
+        this.vertices = vertexList.toArray(newArray(Vertex.class, numStops));
+        this.vertexIds = new HashMap<>(numStops * 2);
+        this.stopLatitude = new double[numStops];
+        this.stopLongitude = new double[numStops];
+        for (int i = 0; i < numStops; i++) {
+            vertexIds.put(vertices[i], i);
+            stopLatitude[i] = Math.toRadians(vertices[i].element().getLatitude());
+            stopLongitude[i] = Math.toRadians(vertices[i].element().getLongitude());
+        }
+
+        this.edges = edgeList.toArray(newArray(Edge.class, numEdges));
+        this.edgeIds = new HashMap<>(numEdges * 2);
+        this.edgeSource = new int[numEdges];
+        this.edgeTarget = new int[numEdges];
+        this.routeStart = new int[numEdges + 1];
+
+        int[] degree = new int[numStops];
+        int numRoutes = 0;
+        for (int e = 0; e < numEdges; e++) {
+            Vertex<Stop>[] endpoints = edges[e].vertices();
+            edgeIds.put(edges[e], e);
+            edgeSource[e] = vertexIds.get(endpoints[0]);
+            edgeTarget[e] = vertexIds.get(endpoints[1]);
+
+            degree[edgeSource[e]]++;
+            if (edgeSource[e] != edgeTarget[e]) {
+                degree[edgeTarget[e]]++;
+            }
+
+            routeStart[e] = numRoutes;
+            numRoutes += edges[e].element().size();
+        }
+        routeStart[numEdges] = numRoutes;
+
+        this.adjacencyStart = new int[numStops + 1];
+        for (int v = 0; v < numStops; v++) {
+            adjacencyStart[v + 1] = adjacencyStart[v] + degree[v];
+        }
+
+        int numArcs = adjacencyStart[numStops];
+        this.adjacencyTarget = new int[numArcs];
+        this.adjacencyEdge = new int[numArcs];
+        int[] next = Arrays.copyOf(adjacencyStart, numStops);
+        for (int e = 0; e < numEdges; e++) {
+            int u = edgeSource[e];
+            int v = edgeTarget[e];
+
+            adjacencyTarget[next[u]] = v;
+            adjacencyEdge[next[u]++] = e;
+            if (u != v) {
+                adjacencyTarget[next[v]] = u;
+                adjacencyEdge[next[v]++] = e;
+            }
+        }
+
+        this.routes = new Route[numRoutes];
+        this.routeEdge = new int[numRoutes];
+        this.routeIds = new IdentityHashMap<>(numRoutes);
+        this.routeTransport = new byte[numRoutes];
+        this.routeDistance = new double[numRoutes];
+        this.routeDuration = new int[numRoutes];
+        this.routeSustainability = new double[numRoutes];
+        this.routeState = new boolean[numRoutes];
+        for (int e = 0; e < numEdges; e++) {
+            int r = routeStart[e];
+            for (Route route : edges[e].element()) {
+                routes[r] = route;
+                routeEdge[r] = e;
+                routeIds.put(route, r);
+                routeTransport[r] = (byte) route.getTransportType().ordinal();
+                routeDistance[r] = route.getDistance();
+                routeDuration[r] = route.getDuration();
+                routeSustainability[r] = route.getSustainability();
+                routeState[r] = route.getState();
+                route.attach(this);
+                r++;
+            }
+        }
+
+        this.weightTables = new HashMap<>();
+    }
+
+    /**
+     * Cria um array de um tipo genérico, cujos elementos são instâncias da classe indicada.
+     *
+     * @param type   classe dos elementos.
+     * @param length tamanho do array.
+     * @param <T>    tipo dos elementos.
+     * @return o array criado.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> type, int length) {
+        return (T[]) Array.newInstance(type, length);
+    }
+
+    /**
+     * Constrói uma nova fotografia CSR a partir do grafo de transportes.
+     *
+     * @param graph o grafo de transportes.
+     * @return a fotografia correspondente ao estado atual do grafo.
+     */
+    public static RoutingGraph of(Graph<Stop, List<Route>> graph) {
+        return new RoutingGraph(graph);
+    }
+
+    /**
+     * Retorna o número de Stops da fotografia.
+     *
+     * @return número de Stops.
+     */
+    public int numStops() {
+        return vertices.length;
+    }
+
+    /**
+     * Retorna o número de arestas da fotografia.
+     *
+     * @return número de arestas.
+     */
+    public int numEdges() {
+        return edges.length;
+    }
+
+    /**
+     * Retorna o número total de Routes (ativas e inativas) da fotografia.
+     *
+     * @return número de Routes.
+     */
+    public int numRoutes() {
+        return routes.length;
+    }
+
+    /**
+     * Obtém o identificador inteiro de um vértice.
+     *
+     * @param vertex o vértice a procurar.
+     * @return o identificador do vértice, ou {@code -1} se não pertencer à fotografia.
+     */
+    public int indexOf(Vertex<Stop> vertex) {
+        Integer id = vertexIds.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Obtém o identificador inteiro de uma aresta.
+     *
+     * @param edge a aresta a procurar.
+     * @return o identificador da aresta, ou {@code -1} se não pertencer à fotografia.
+     */
+    public int indexOf(Edge<List<Route>, Stop> edge) {
+        Integer id = edgeIds.get(edge);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Obtém o vértice correspondente a um identificador.
+     *
+     * @param stop identificador da Stop.
+     * @return o vértice ({@link Vertex}) correspondente.
+     */
+    public Vertex<Stop> vertex(int stop) {
+        return vertices[stop];
+    }
+
+    /**
+     * Obtém a aresta correspondente a um identificador.
+     *
+     * @param edge identificador da aresta.
+     * @return a aresta ({@link Edge}) correspondente.
+     */
+    public Edge<List<Route>, Stop> edge(int edge) {
+        return edges[edge];
+    }
+
+    /**
+     * Calcula a distância de círculo máximo (fórmula de haversine) entre duas Stops, a partir das suas coordenadas.
+     *
+     * @param a identificador de uma Stop.
+     * @param b identificador da outra Stop.
+     * @return a distância em Kms.
+     */
+    public double greatCircleDistance(int a, int b) {
+        double sinLatitude = Math.sin((stopLatitude[b] - stopLatitude[a]) / 2);
+        double sinLongitude = Math.sin((stopLongitude[b] - stopLongitude[a]) / 2);
+        double h = sinLatitude * sinLatitude
+                + Math.cos(stopLatitude[a]) * Math.cos(stopLatitude[b]) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * Retorna o número de arestas incidentes numa Stop.
+     *
+     * @param stop identificador da Stop.
+     * @return o grau da Stop.
+     */
+    public int degree(int stop) {
+        return adjacencyStart[stop + 1] - adjacencyStart[stop];
+    }
+
+    /**
+     * Retorna a posição do primeiro arco de uma Stop nos arrays de adjacência.
+     *
+     * @param stop identificador da Stop.
+     * @return índice do primeiro arco (inclusive).
+     */
+    public int firstArc(int stop) {
+        return adjacencyStart[stop];
+    }
+
+    /**
+     * Retorna a posição seguinte ao último arco de uma Stop nos arrays de adjacência.
+     *
+     * @param stop identificador da Stop.
+     * @return índice do último arco (exclusive).
+     */
+    public int endArc(int stop) {
+        return adjacencyStart[stop + 1];
+    }
+
+    /**
+     * Retorna a Stop de chegada de um arco.
+     *
+     * @param arc índice do arco.
+     * @return identificador da Stop vizinha.
+     */
+    public int arcTarget(int arc) {
+        return adjacencyTarget[arc];
+    }
+
+    /**
+     * Retorna a aresta a que pertence um arco.
+     *
+     * @param arc índice do arco.
+     * @return identificador da aresta.
+     */
+    public int arcEdge(int arc) {
+        return adjacencyEdge[arc];
+    }
+
+    /**
+     * Retorna a Stop oposta a {@code stop} numa aresta.
+     *
+     * @param edge identificador da aresta.
+     * @param stop identificador de um dos extremos da aresta.
+     * @return identificador do outro extremo.
+     */
+    public int opposite(int edge, int stop) {
+        return edgeSource[edge] == stop ? edgeTarget[edge] : edgeSource[edge];
+    }
+
+    /**
+     * Retorna o primeiro extremo de uma aresta.
+     *
+     * @param edge identificador da aresta.
+     * @return identificador da Stop.
+     */
+    public int edgeSource(int edge) {
+        return edgeSource[edge];
+    }
+
+    /**
+     * Retorna o segundo extremo de uma aresta.
+     *
+     * @param edge identificador da aresta.
+     * @return identificador da Stop.
+     */
+    public int edgeTarget(int edge) {
+        return edgeTarget[edge];
+    }
+
+    /**
+     * Retorna o índice da primeira Route de uma aresta.
+     *
+     * @param edge identificador da aresta.
+     * @return índice da primeira Route (inclusive).
+     */
+    public int firstRoute(int edge) {
+        return routeStart[edge];
+    }
+
+    /**
+     * Retorna o índice seguinte à última Route de uma aresta.
+     *
+     * @param edge identificador da aresta.
+     * @return índice da última Route (exclusive).
+     */
+    public int endRoute(int edge) {
+        return routeStart[edge + 1];
+    }
+
+    /**
+     * Obtém a Route correspondente a um índice.
+     *
+     * @param route índice da Route.
+     * @return a Route ({@link Route}).
+     */
+    public Route route(int route) {
+        return routes[route];
+    }
+
+    /**
+     * Retorna o ordinal do tipo de transporte de uma Route.
+     *
+     * @param route índice da Route.
+     * @return ordinal de {@link pt.pa.TransportType}.
+     */
+    public int routeTransport(int route) {
+        return routeTransport[route];
+    }
+
+    /**
+     * Retorna a distância de uma Route.
+     *
+     * @param route índice da Route.
+     * @return a distância em Kms.
+     */
+    public double routeDistance(int route) {
+        return routeDistance[route];
+    }
+
+    /**
+     * Retorna a duração de uma Route.
+     *
+     * @param route índice da Route.
+     * @return a duração em minutos.
+     */
+    public int routeDuration(int route) {
+        return routeDuration[route];
+    }
+
+    /**
+     * Retorna o custo de sustentabilidade de uma Route.
+     *
+     * @param route índice da Route.
+     * @return o custo de sustentabilidade.
+     */
+    public double routeSustainability(int route) {
+        return routeSustainability[route];
+    }
+
+    /**
+     * Retorna o estado de uma Route.
+     *
+     * @param route índice da Route.
+     * @return {@code true} se a Route estiver ativa.
+     */
+    public boolean routeState(int route) {
+        return routeState[route];
+    }
+
+    /**
+     * Obtém a tabela de menores pesos por aresta e por subconjunto de transportes para uma estratégia,
+     * calculando-a apenas no primeiro pedido.
+     * <p>
+     * A tabela é partilhada e mantida atualizada quando o estado ou a duração de uma Route mudam.
+     *
+     * @param strategy a estratégia de cálculo de peso.
+     * @return a tabela de pesos da estratégia.
+     */
+    public EdgeWeightTable weightTable(WeightCalculationStrategy strategy) {
+        return weightTables.computeIfAbsent(strategy.getClass(), key -> new EdgeWeightTable(this, strategy));
+    }
+
+    /**
+     * Obtém a hierarquia de contração da fotografia, construindo-a apenas no primeiro pedido.
+     *
+     * @return a hierarquia de contração.
+     */
+    public ContractionHierarchy contractionHierarchy() {
+        if (contractionHierarchy == null) {
+            contractionHierarchy = ContractionHierarchy.build(this);
+        }
+        return contractionHierarchy;
+    }
+
+    /**
+     * Define a hierarquia de contração da fotografia, por exemplo depois de a ler do disco.
+     *
+     * @param hierarchy a hierarquia de contração.
+     * @throws IllegalArgumentException se a hierarquia pertencer a outra fotografia.
+     */
+    public void setContractionHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy.getRoutingGraph() != this) {
+            throw new IllegalArgumentException("Contraction hierarchy belongs to another routing graph.");
+        }
+        this.contractionHierarchy = hierarchy;
+    }
+
+    /**
+     * Atualiza a fotografia com o estado e a duração atuais de uma Route e recalcula as tabelas de pesos
+     * da aresta a que pertence. Os pesos personalizados da hierarquia de contração ficam desatualizados, mas a
+     * contração não é refeita.
+     *
+     * @param route a Route alterada.
+     * @return {@code true} se a Route pertencer à fotografia; caso contrário, {@code false}.
+     */
+    public boolean updateRoute(Route route) {
+        Integer r = routeIds.get(route);
+        if (r == null) {
+            return false;
+        }
+
+        routeState[r] = route.getState();
+        routeDuration[r] = route.getDuration();
+        for (EdgeWeightTable table : weightTables.values()) {
+            table.refresh(routeEdge[r]);
+        }
+        if (contractionHierarchy != null) {
+            contractionHierarchy.invalidateMetrics();
+        }
+        return true;
+    }
+
+    /**
+     * Recebe a notificação de alteração de uma Route observada.
+     *
+     * @param subject a Route alterada.
+     */
+    @Override
+    public void update(Subject subject) {
+        if (subject instanceof Route) {
+            updateRoute((Route) subject);
+        }
+    }
+
+    /**
+     * Deixa de observar as Routes da fotografia. Deve ser chamado quando a fotografia é descartada.
+     */
+    public void release() {
+        for (Route route : routes) {
+            route.detach(this);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code SearchResult} representa o resultado de uma pesquisa de caminho num {@link RoutingGraph}:
+ * a sequência de Stops e de arestas percorridas, da origem para o destino, e o número de Stops
+ * estabelecidas (<i>settled</i>) durante a pesquisa.
+ *
+ * Os identificadores são os da fotografia usada na pesquisa. O custo não é guardado aqui: é calculado por quem
+ * converte o resultado num {@link pt.pa.Path}, a partir dos pesos originais das arestas.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class SearchResult {
+    private final int[] stops;
+    private final int[] edges;
+    private final int settled;
+
+    /**
+     * Construtor de um resultado com caminho.
+     *
+     * @param stops   identificadores das Stops, da origem para o destino.
+     * @param edges   identificadores das arestas percorridas ({@code stops.length - 1} elementos).
+     * @param settled número de Stops estabelecidas durante a pesquisa.
+     */
+    public SearchResult(int[] stops, int[] edges, int settled) {
+        this.stops = stops;
+        this.edges = edges;
+        this.settled = settled;
+    }
+
+    /**
+     * Cria um resultado sem caminho entre a origem e o destino.
+     *
+     * @param settled número de Stops estabelecidas durante a pesquisa.
+     * @return o resultado vazio.
+     */
+    public static SearchResult notFound(int settled) {
+        return new SearchResult(null, null, settled);
+    }
+
+    /**
+     * Reconstrói o caminho até ao destino a partir dos predecessores de uma árvore de caminhos mais curtos.
+     *
+     * @param destination      identificador da Stop de destino.
+     * @param predecessors     predecessor de cada Stop ({@code -1} para a raiz ou Stops não alcançadas).
+     * @param predecessorEdges aresta usada para chegar a cada Stop.
+     * @param origin           identificador da Stop de origem.
+     * @param settled          número de Stops estabelecidas durante a pesquisa.
+     * @return o resultado, ou um resultado vazio se o destino não tiver sido alcançado a partir da origem.
+     */
+    public static SearchResult fromTree(int destination, int[] predecessors, int[] predecessorEdges, int origin, int settled) {
+        int hops = 0;
+        int step = destination;
+        while (predecessors[step] >= 0) {
+            step = predecessors[step];
+            hops++;
+        }
+        if (step != origin) {
+            return notFound(settled);
+        }
+
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        step = destination;
+        for (int i = hops; i > 0; i--) {
+            stops[i] = step;
+            edges[i - 1] = predecessorEdges[step];
+            step = predecessors[step];
+        }
+        stops[0] = origin;
+        return new SearchResult(stops, edges, settled);
+    }
+
+    /**
+     * Indica se foi encontrado um caminho.
+     *
+     * @return {@code true} se existir caminho entre a origem e o destino.
+     */
+    public boolean isFound() {
+        return stops != null;
+    }
+
+    /**
+     * Retorna as Stops do caminho, da origem para o destino.
+     *
+     * @return identificadores das Stops.
+     */
+    public int[] stops() {
+        return stops;
+    }
+
+    /**
+     * Retorna as arestas do caminho, da origem para o destino.
+     *
+     * @return identificadores das arestas.
+     */
+    public int[] edges() {
+        return edges;
+    }
+
+    /**
+     * Retorna o número de Stops estabelecidas durante a pesquisa.
+     *
+     * @return número de Stops estabelecidas.
+     */
+    public int settled() {
+        return settled;
+    }
+}
@@ -0,0 +1,138 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code SearchWorkspace} guarda os arrays de trabalho de uma pesquisa de caminho mais curto (custos,
+ * predecessores, Stops estabelecidas e a {@link IndexedMinHeap}), reutilizados entre consultas da mesma thread para
+ * que uma consulta não tenha de alocar arrays do tamanho do grafo.
+ *
+ * Em vez de os arrays serem limpos no início de cada consulta, cada Stop tem a marca da consulta (época) em que foi
+ * alcançada e em que foi estabelecida: uma marca diferente da época atual significa custo infinito e Stop por
+ * estabelecer. Começar uma consulta custa, por isso, {@code O(1)}, mais o esvaziamento das entradas que tenham ficado
+ * na fila da consulta anterior.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+final class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> WORKSPACES = ThreadLocal.withInitial(() -> new SearchWorkspace(0));
+
+    private final double[] costs;
+    private final int[] predecessors;
+    private final int[] predecessorEdges;
+    private final int[] reachedStamp;
+    private final int[] settledStamp;
+    private final IndexedMinHeap queue;
+    private int epoch;
+    private boolean inUse;
+
+    private SearchWorkspace(int capacity) {
+        this.costs = new double[capacity];
+        this.predecessors = new int[capacity];
+        this.predecessorEdges = new int[capacity];
+        this.reachedStamp = new int[capacity];
+        this.settledStamp = new int[capacity];
+        this.queue = new IndexedMinHeap(capacity);
+    }
+
+    /**
+     * Obtém o espaço de trabalho da thread atual, preparado para uma nova consulta, e marca-o como ocupado até
+     * {@link #release()}. Se o espaço da thread for pequeno para o grafo, é substituído por um maior; se já estiver
+     * ocupado (uma pesquisa dentro de outra), é devolvido um espaço novo que não fica guardado.
+     *
+     * @param numStops número de Stops do grafo.
+     * @return o espaço de trabalho.
+     */
+    static SearchWorkspace acquire(int numStops) {
+        SearchWorkspace workspace = WORKSPACES.get();
+        if (workspace.inUse) {
+            workspace = new SearchWorkspace(numStops);
+        } else if (workspace.costs.length < numStops) {
+            workspace = new SearchWorkspace(numStops);
+            WORKSPACES.set(workspace);
+        }
+        workspace.inUse = true;
+        workspace.queue.clear();
+        if (++workspace.epoch == Integer.MAX_VALUE) {
+            Arrays.fill(workspace.reachedStamp, 0);
+            Arrays.fill(workspace.settledStamp, 0);
+            workspace.epoch = 1;
+        }
+        return workspace;
+    }
+
+    /**
+     * Liberta o espaço de trabalho para a consulta seguinte da thread.
+     */
+    void release() {
+        inUse = false;
+    }
+
+    /**
+     * Retorna a fila de prioridade da consulta.
+     *
+     * @return a fila.
+     */
+    IndexedMinHeap queue() {
+        return queue;
+    }
+
+    /**
+     * Retorna o custo de uma Stop na consulta atual.
+     *
+     * @param stop identificador da Stop.
+     * @return o custo, ou {@link Double#POSITIVE_INFINITY} se ainda não foi alcançada.
+     */
+    double cost(int stop) {
+        return reachedStamp[stop] == epoch ? costs[stop] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Regista o custo e o predecessor de uma Stop alcançada.
+     *
+     * @param stop        identificador da Stop.
+     * @param cost        o custo.
+     * @param predecessor identificador da Stop anterior, ou {@code -1} na origem.
+     * @param edge        identificador da aresta usada, ou {@code -1} na origem.
+     */
+    void reach(int stop, double cost, int predecessor, int edge) {
+        reachedStamp[stop] = epoch;
+        costs[stop] = cost;
+        predecessors[stop] = predecessor;
+        predecessorEdges[stop] = edge;
+    }
+
+    /**
+     * Indica se uma Stop já foi estabelecida na consulta atual.
+     *
+     * @param stop identificador da Stop.
+     * @return {@code true} se estiver estabelecida.
+     */
+    boolean isSettled(int stop) {
+        return settledStamp[stop] == epoch;
+    }
+
+    /**
+     * Marca uma Stop como estabelecida.
+     *
+     * @param stop identificador da Stop.
+     */
+    void settle(int stop) {
+        settledStamp[stop] = epoch;
+    }
+
+    /**
+     * Reconstrói o caminho até ao destino pelos predecessores registados na consulta atual.
+     *
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @param settled     número de Stops estabelecidas.
+     * @return o resultado da pesquisa.
+     */
+    SearchResult path(int origin, int destination, int settled) {
+        if (reachedStamp[destination] != epoch) {
+            return SearchResult.notFound(settled);
+        }
+        return SearchResult.fromTree(destination, predecessors, predecessorEdges, origin, settled);
+    }
+}
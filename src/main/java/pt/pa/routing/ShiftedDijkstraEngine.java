@@ -0,0 +1,20 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code ShiftedDijkstraEngine} procura caminhos em máscaras com pesos negativos usando Dijkstra sobre os
+ * pesos deslocados ({@link ShiftedWeights}).
+ *
+ * O deslocamento é calculado uma única vez por tabela de pesos e máscara de transportes e fica em cache na
+ * {@link EdgeWeightTable} até uma Route ser alterada. Sem arestas negativas o deslocamento é nulo, a pesquisa é a de
+ * Dijkstra e os custos são exatos. Com arestas negativas, o caminho devolvido minimiza {@code custo + shift * troços},
+ * o que é uma aproximação e não o caminho de menor custo real.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ShiftedDijkstraEngine extends DijkstraEngine {
+
+    @Override
+    public SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination) {
+        return search(routing, weights, mask, origin, destination, weights.shiftedWeights(mask).shift(), null);
+    }
+}
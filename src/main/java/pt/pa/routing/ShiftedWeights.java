@@ -0,0 +1,62 @@
+package pt.pa.routing;
+
+/**
+ * A classe {@code ShiftedWeights} guarda o deslocamento uniforme ({@link #shift()}) que torna não negativos todos os
+ * pesos de uma tabela de pesos ({@link EdgeWeightTable}) para uma máscara de transportes.
+ *
+ * A repesagem de Johnson não é possível neste grafo. Os potenciais {@code h(v)} teriam de tornar não negativo o peso
+ * reduzido {@code w(u, v) + h(u) - h(v)} de todos os arcos, mas como as Routes não são orientadas cada aresta dá os
+ * arcos {@code u -> v} e {@code v -> u}, cujos pesos reduzidos somam {@code 2 w(u, v)}. Uma aresta de peso negativo é
+ * por isso um ciclo negativo ({@code u -> v -> u}), os custos mínimos deixam de estar definidos para percursos
+ * arbitrários e encontrar o caminho elementar de menor custo é um problema NP-difícil.
+ *
+ * Nesse caso é usado o menor deslocamento uniforme que torna todos os pesos não negativos, calculado numa passagem
+ * pelas arestas, em {@code O(E)}. As pesquisas que o usam minimizam {@code custo + shift * troços}: é uma aproximação
+ * que favorece caminhos com menos troços e depende do peso mais negativo de toda a rede, não o caminho de menor custo.
+ * O custo do Path continua a ser a soma dos pesos reais. Sem arestas negativas o deslocamento é nulo.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ShiftedWeights {
+    private static final ShiftedWeights NONE = new ShiftedWeights(0.0);
+
+    private final double shift;
+
+    /**
+     * Construtor privado; as instâncias são criadas através de {@link #compute(RoutingGraph, EdgeWeightTable, int)}.
+     *
+     * @param shift deslocamento uniforme dos pesos.
+     */
+    private ShiftedWeights(double shift) {
+        this.shift = shift;
+    }
+
+    /**
+     * Calcula o deslocamento de uma tabela de pesos para uma máscara de transportes, em {@code O(E)}.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos.
+     * @param mask    bits da máscara de transportes.
+     * @return os pesos deslocados.
+     */
+    public static ShiftedWeights compute(RoutingGraph routing, EdgeWeightTable weights, int mask) {
+        if (weights.isNonNegative(mask)) {
+            return NONE;
+        }
+
+        double minWeight = 0.0;
+        for (int e = 0; e < routing.numEdges(); e++) {
+            minWeight = Math.min(minWeight, weights.weight(e, mask));
+        }
+        return new ShiftedWeights(-minWeight);
+    }
+
+    /**
+     * Retorna o deslocamento a somar a cada peso.
+     *
+     * @return o deslocamento, ou {@code 0} se nenhuma aresta tiver peso negativo.
+     */
+    public double shift() {
+        return shift;
+    }
+}
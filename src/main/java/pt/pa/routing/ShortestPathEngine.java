@@ -0,0 +1,26 @@
+package pt.pa.routing;
+
+/**
+ * A interface {@code ShortestPathEngine} define o contrato dos algoritmos de caminho de menor custo entre duas Stops
+ * de um {@link RoutingGraph}, segundo o padrão Strategy.
+ *
+ * Os pesos de cada aresta são lidos da {@link EdgeWeightTable} para a máscara de transportes indicada; arestas sem
+ * Routes válidas têm peso {@link Double#POSITIVE_INFINITY} e são ignoradas.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public interface ShortestPathEngine {
+
+    /**
+     * Procura o caminho de menor custo entre duas Stops.
+     *
+     * @param routing     a fotografia do grafo.
+     * @param weights     a tabela de pesos da estratégia.
+     * @param mask        bits da máscara de transportes.
+     * @param origin      identificador da Stop de origem.
+     * @param destination identificador da Stop de destino.
+     * @return o resultado da pesquisa.
+     * @throws IllegalStateException se o motor não suportar os pesos fornecidos.
+     */
+    SearchResult findPath(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin, int destination);
+}
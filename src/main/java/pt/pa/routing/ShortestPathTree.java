@@ -0,0 +1,259 @@
+package pt.pa.routing;
+
+import java.util.Arrays;
+
+/**
+ * A classe {@code ShortestPathTree} guarda a árvore de caminhos mais curtos com raiz numa Stop de origem de um
+ * {@link RoutingGraph}, para uma tabela de pesos e uma máscara de transportes, e mantém-na correta quando o peso de
+ * uma aresta muda, sem a recalcular do zero (reparação ao estilo de Ramalingam e Reps).
+ *
+ * Quando o peso de uma aresta diminui, só as Stops cujo custo melhora são visitadas: a partir do extremo que passa a
+ * ser alcançado mais barato, a melhoria propaga-se como numa pesquisa de Dijkstra. Quando o peso aumenta (ou a aresta
+ * deixa de ter Routes válidas), só muda alguma coisa se a aresta pertencer à árvore: a subárvore pendurada nessa
+ * aresta é desligada, cada uma das suas Stops recebe o melhor custo oferecido pelas Stops vizinhas fora da subárvore
+ * e uma pesquisa de Dijkstra restrita à subárvore estabelece os novos custos. Se a subárvore tiver mais de metade das
+ * Stops, a árvore é recalculada por inteiro.
+ *
+ * Só é válida para pesos não negativos; a tabela de pesos descarta as árvores de máscaras que passem a ter arestas de
+ * peso negativo.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class ShortestPathTree {
+    private final RoutingGraph routing;
+    private final EdgeWeightTable weights;
+    private final int mask;
+    private final int origin;
+    private final double[] costs;
+    private final int[] parentEdges;
+    private final int[] affectedStamp;
+    private final int[] affected;
+    private final IndexedMinHeap queue;
+    private int stamp;
+    private int repairedStops;
+
+    /**
+     * Construtor que calcula a árvore completa.
+     *
+     * @param routing a fotografia do grafo.
+     * @param weights a tabela de pesos.
+     * @param mask    bits da máscara de transportes.
+     * @param origin  identificador da Stop de origem.
+     */
+    ShortestPathTree(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin) {
+        int numStops = routing.numStops();
+        this.routing = routing;
+        this.weights = weights;
+        this.mask = mask;
+        this.origin = origin;
+        this.costs = new double[numStops];
+        this.parentEdges = new int[numStops];
+        this.affectedStamp = new int[numStops];
+        this.affected = new int[numStops];
+        this.queue = new IndexedMinHeap(numStops);
+        recompute();
+    }
+
+    /**
+     * Retorna a Stop de origem da árvore.
+     *
+     * @return identificador da Stop de origem.
+     */
+    public int origin() {
+        return origin;
+    }
+
+    /**
+     * Retorna o custo mínimo da origem até uma Stop.
+     *
+     * @param stop identificador da Stop.
+     * @return o custo, ou {@link Double#POSITIVE_INFINITY} se não houver caminho.
+     */
+    public double cost(int stop) {
+        return costs[stop];
+    }
+
+    /**
+     * Retorna a aresta pela qual se chega a uma Stop na árvore.
+     *
+     * @param stop identificador da Stop.
+     * @return identificador da aresta, ou {@code -1} na origem ou se não houver caminho.
+     */
+    public int parentEdge(int stop) {
+        return parentEdges[stop];
+    }
+
+    /**
+     * Obtém o caminho de menor custo da origem até uma Stop, seguindo a árvore a partir do destino.
+     *
+     * @param destination identificador da Stop de destino.
+     * @return o resultado; o número de Stops estabelecidas é {@code 0}, pois não é feita nenhuma pesquisa.
+     */
+    public SearchResult findPath(int destination) {
+        if (costs[destination] == Double.POSITIVE_INFINITY) {
+            return SearchResult.notFound(0);
+        }
+
+        int hops = 0;
+        for (int stop = destination; stop != origin; stop = routing.opposite(parentEdges[stop], stop)) {
+            hops++;
+        }
+        int[] stops = new int[hops + 1];
+        int[] edges = new int[hops];
+        int stop = destination;
+        for (int i = hops; i > 0; i--) {
+            stops[i] = stop;
+            edges[i - 1] = parentEdges[stop];
+            stop = routing.opposite(edges[i - 1], stop);
+        }
+        stops[0] = origin;
+        return new SearchResult(stops, edges, 0);
+    }
+
+    /**
+     * Retorna o número de Stops cujo custo foi revisto na última atualização (todas, se a árvore foi recalculada).
+     *
+     * @return número de Stops revistas.
+     */
+    public int repairedStops() {
+        return repairedStops;
+    }
+
+    /**
+     * Repara a árvore depois de o peso de uma aresta ter mudado na tabela de pesos.
+     *
+     * @param edge      identificador da aresta.
+     * @param oldWeight peso da aresta antes da alteração.
+     */
+    void edgeChanged(int edge, double oldWeight) {
+        double newWeight = weights.weight(edge, mask);
+        repairedStops = 0;
+        if (newWeight < oldWeight) {
+            decrease(edge, newWeight);
+        } else if (newWeight > oldWeight) {
+            increase(edge);
+        }
+    }
+
+    /**
+     * Propaga a diminuição do peso de uma aresta às Stops cujo custo melhora.
+     */
+    private void decrease(int edge, double weight) {
+        int a = routing.edgeSource(edge);
+        int b = routing.edgeTarget(edge);
+        if (costs[a] + weight < costs[b]) {
+            improve(b, costs[a] + weight, edge);
+        } else if (costs[b] + weight < costs[a]) {
+            improve(a, costs[b] + weight, edge);
+        }
+
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                double newCost = costs[u] + weights.weight(routing.arcEdge(arc), mask);
+                if (newCost < costs[v]) {
+                    improve(v, newCost, routing.arcEdge(arc));
+                }
+            }
+        }
+    }
+
+    private void improve(int stop, double cost, int edge) {
+        costs[stop] = cost;
+        parentEdges[stop] = edge;
+        queue.insertOrDecrease(stop, cost);
+        repairedStops++;
+    }
+
+    /**
+     * Restabelece os custos da subárvore pendurada numa aresta da árvore cujo peso aumentou.
+     */
+    private void increase(int edge) {
+        int a = routing.edgeSource(edge);
+        int b = routing.edgeTarget(edge);
+        int child = parentEdges[b] == edge && b != origin ? b : parentEdges[a] == edge && a != origin ? a : -1;
+        if (child < 0) {
+            return;
+        }
+
+        // Recolhe a subárvore: os filhos de u são as Stops vizinhas cuja aresta da árvore liga a u
+        stamp++;
+        int size = 0;
+        affected[size++] = child;
+        affectedStamp[child] = stamp;
+        for (int i = 0; i < size; i++) {
+            int u = affected[i];
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                if (affectedStamp[v] != stamp && v != origin && parentEdges[v] == routing.arcEdge(arc)) {
+                    affectedStamp[v] = stamp;
+                    affected[size++] = v;
+                }
+            }
+            if (size * 2 > costs.length) {
+                recompute();
+                return;
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            costs[affected[i]] = Double.POSITIVE_INFINITY;
+            parentEdges[affected[i]] = -1;
+        }
+        for (int i = 0; i < size; i++) {
+            int v = affected[i];
+            for (int arc = routing.firstArc(v); arc < routing.endArc(v); arc++) {
+                int u = routing.arcTarget(arc);
+                double newCost = costs[u] + weights.weight(routing.arcEdge(arc), mask);
+                if (affectedStamp[u] != stamp && newCost < costs[v]) {
+                    costs[v] = newCost;
+                    parentEdges[v] = routing.arcEdge(arc);
+                }
+            }
+            if (costs[v] != Double.POSITIVE_INFINITY) {
+                queue.insertOrDecrease(v, costs[v]);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                double newCost = costs[u] + weights.weight(routing.arcEdge(arc), mask);
+                if (affectedStamp[v] == stamp && newCost < costs[v]) {
+                    costs[v] = newCost;
+                    parentEdges[v] = routing.arcEdge(arc);
+                    queue.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        repairedStops = size;
+    }
+
+    /**
+     * Calcula a árvore completa com Dijkstra.
+     */
+    private void recompute() {
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdges, -1);
+        costs[origin] = 0.0;
+        queue.clear();
+        queue.insertOrDecrease(origin, 0.0);
+        int settledCount = 0;
+        while (!queue.isEmpty()) {
+            Cancellation.checkpoint(settledCount++);
+            int u = queue.poll();
+            for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                int v = routing.arcTarget(arc);
+                double newCost = costs[u] + weights.weight(routing.arcEdge(arc), mask);
+                if (newCost < costs[v]) {
+                    costs[v] = newCost;
+                    parentEdges[v] = routing.arcEdge(arc);
+                    queue.insertOrDecrease(v, newCost);
+                }
+            }
+        }
+        repairedStops = costs.length;
+    }
+}
@@ -0,0 +1,22 @@
+package pt.pa.routing;
+
+/**
+ * A interface {@code StopPotential} representa uma função de potencial sobre as Stops de um {@link RoutingGraph},
+ * somada ao custo de cada Stop na fila de prioridade das pesquisas de Dijkstra.
+ *
+ * É usada para as estimativas do custo até ao destino das pesquisas A* ({@link AStarEngine}) e ALT
+ * ({@link ALTEngine}).
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+@FunctionalInterface
+public interface StopPotential {
+
+    /**
+     * Retorna o potencial de uma Stop.
+     *
+     * @param stop identificador da Stop.
+     * @return o potencial.
+     */
+    double at(int stop);
+}
@@ -0,0 +1,21 @@
+package pt.pa.routing;
+
+/**
+ * A interface {@code StopVisitor} recebe as Stops de um {@link RoutingGraph} à medida que uma pesquisa as
+ * estabelece, com o custo mínimo a partir da origem, permitindo processar os resultados antes de a pesquisa terminar.
+ *
+ * É usada pela pesquisa de isócronas ({@link IsochroneSearch}).
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+@FunctionalInterface
+public interface StopVisitor {
+
+    /**
+     * Recebe uma Stop estabelecida.
+     *
+     * @param stop identificador da Stop.
+     * @param cost custo mínimo da origem até à Stop.
+     */
+    void visit(int stop, double cost);
+}
@@ -0,0 +1,59 @@
+package pt.pa.test;
+
+import pt.pa.TransportMask;
+import pt.pa.patterns.strategy.DurationStrategy;
+import pt.pa.routing.AllPairsMatrix;
+import pt.pa.routing.EdgeWeightTable;
+import pt.pa.routing.RoutingGraph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A classe {@code AllPairsBenchmark} mede o tempo de cálculo da matriz de todos os pares ({@link AllPairsMatrix})
+ * nas redes sintéticas do {@link RoutingBenchmark}, com uma thread e com todas as threads disponíveis, bem como o
+ * tempo de obtenção de caminhos a partir dos próximos saltos.
+ *
+ * Esta classe é usada apenas para fins de demonstração e teste.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class AllPairsBenchmark {
+    private static final int[] NETWORK_SIZES = {1_000, 5_000};
+
+    /**
+     * Método principal que executa a medição para todas as dimensões de rede.
+     *
+     * @param args argumentos da linha de comando.
+     */
+    public static void main(String[] args) {
+        int[] threadCounts = IntStream.of(1, Runtime.getRuntime().availableProcessors()).distinct().toArray();
+        System.out.printf("%8s %8s %12s %12s %16s%n", "Stops", "Threads", "Matrix (ms)", "Memory (MB)", "Path (ns/hop)");
+
+        for (int size : NETWORK_SIZES) {
+            RoutingGraph routing = RoutingGraph.of(RoutingBenchmark.buildNetwork(size));
+            EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+            int mask = TransportMask.all().bits();
+
+            for (int threads : threadCounts) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long start = System.nanoTime();
+                AllPairsMatrix matrix = AllPairsMatrix.compute(routing, weights, mask, pool);
+                double matrixMs = (System.nanoTime() - start) / 1e6;
+                pool.shutdown();
+
+                long hops = 0;
+                start = System.nanoTime();
+                for (int origin = 0; origin < routing.numStops(); origin += 7) {
+                    for (int destination = 0; destination < routing.numStops(); destination += 13) {
+                        hops += matrix.findPath(origin, destination).edges().length;
+                    }
+                }
+                double pathNanos = (System.nanoTime() - start) / (double) Math.max(1, hops);
+
+                System.out.printf("%8d %8d %12.0f %12.1f %16.1f%n",
+                        routing.numStops(), threads, matrixMs, matrix.memoryBytes() / 1e6, pathNanos);
+            }
+        }
+    }
+}
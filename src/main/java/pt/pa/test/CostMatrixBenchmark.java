@@ -0,0 +1,59 @@
+package pt.pa.test;
+
+import pt.pa.TransportMask;
+import pt.pa.patterns.strategy.DurationStrategy;
+import pt.pa.routing.CostMatrix;
+import pt.pa.routing.EdgeWeightTable;
+import pt.pa.routing.RoutingGraph;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * A classe {@code CostMatrixBenchmark} mede o tempo de cálculo de matrizes de custos origem/destino
+ * ({@link CostMatrix}) de 1000×1000 Stops aleatórias nas redes sintéticas do {@link RoutingBenchmark}, com uma
+ * thread e com todas as threads disponíveis.
+ *
+ * Esta classe é usada apenas para fins de demonstração e teste.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class CostMatrixBenchmark {
+    private static final int[] NETWORK_SIZES = {10_000, 100_000};
+    private static final int MATRIX_SIZE = 1_000;
+    private static final long SEED = 42;
+
+    /**
+     * Método principal que executa a medição para todas as dimensões de rede.
+     *
+     * @param args argumentos da linha de comando.
+     */
+    public static void main(String[] args) {
+        int[] threadCounts = IntStream.of(1, Runtime.getRuntime().availableProcessors()).distinct().toArray();
+        System.out.printf("%8s %12s %8s %12s %14s%n", "Stops", "Matrix", "Threads", "Time (ms)", "Checksum");
+
+        for (int size : NETWORK_SIZES) {
+            RoutingGraph routing = RoutingGraph.of(RoutingBenchmark.buildNetwork(size));
+            EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+            Random random = new Random(SEED);
+            int[] origins = random.ints(MATRIX_SIZE, 0, routing.numStops()).toArray();
+            int[] destinations = random.ints(MATRIX_SIZE, 0, routing.numStops()).toArray();
+
+            for (int threads : threadCounts) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long start = System.nanoTime();
+                CostMatrix matrix = CostMatrix.compute(routing, weights, TransportMask.all().bits(), origins, destinations, pool);
+                double millis = (System.nanoTime() - start) / 1e6;
+                pool.shutdown();
+
+                double checksum = 0;
+                for (double cost : matrix.toArray()) {
+                    checksum += cost;
+                }
+                System.out.printf("%8d %12s %8d %12.0f %14.0f%n", routing.numStops(),
+                        MATRIX_SIZE + "x" + MATRIX_SIZE, threads, millis, checksum);
+            }
+        }
+    }
+}
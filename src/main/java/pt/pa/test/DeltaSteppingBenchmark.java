@@ -0,0 +1,71 @@
+package pt.pa.test;
+
+import pt.pa.TransportMask;
+import pt.pa.patterns.strategy.DurationStrategy;
+import pt.pa.routing.DeltaSteppingEngine;
+import pt.pa.routing.EdgeWeightTable;
+import pt.pa.routing.RoutingGraph;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A classe {@code DeltaSteppingBenchmark} mede o tempo do cálculo dos custos de uma origem para todas as Stops com o
+ * {@link DeltaSteppingEngine} nas redes sintéticas do {@link RoutingBenchmark}, com 1, 4 e 16 threads, e compara-o com
+ * a árvore de caminhos mais curtos de Dijkstra. A aceleração é relativa à execução com uma thread.
+ *
+ * Esta classe é usada apenas para fins de demonstração e teste.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class DeltaSteppingBenchmark {
+    private static final int[] NETWORK_SIZES = {10_000, 100_000};
+    private static final int[] THREAD_COUNTS = {1, 4, 16};
+    private static final int QUERIES = 10;
+    private static final long SEED = 42L;
+
+    /**
+     * Método principal que executa a medição para todas as dimensões de rede.
+     *
+     * @param args argumentos da linha de comando.
+     */
+    public static void main(String[] args) {
+        System.out.printf("Available processors: %d%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %10s %12s %10s%n", "Stops", "Engine", "Threads", "SSSP (ms)", "Speedup");
+
+        for (int size : NETWORK_SIZES) {
+            RoutingGraph routing = RoutingGraph.of(RoutingBenchmark.buildNetwork(size));
+            EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+            int mask = TransportMask.all().bits();
+            int[] origins = new Random(SEED).ints(QUERIES, 0, routing.numStops()).toArray();
+
+            long start = System.nanoTime();
+            for (int origin : origins) {
+                weights.shortestPathTree(mask, origin);
+            }
+            double dijkstraMs = (System.nanoTime() - start) / 1e6 / QUERIES;
+            System.out.printf("%8d %12s %10d %12.1f %10s%n", routing.numStops(), "Dijkstra", 1, dijkstraMs, "-");
+
+            double baseline = Double.NaN;
+            for (int threads : THREAD_COUNTS) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                DeltaSteppingEngine engine = new DeltaSteppingEngine(pool);
+                for (int origin : origins) {
+                    engine.costs(routing, weights, mask, origin);
+                }
+
+                start = System.nanoTime();
+                for (int origin : origins) {
+                    engine.costs(routing, weights, mask, origin);
+                }
+                double deltaMs = (System.nanoTime() - start) / 1e6 / QUERIES;
+                pool.shutdown();
+
+                if (Double.isNaN(baseline)) {
+                    baseline = deltaMs;
+                }
+                System.out.printf("%8d %12s %10d %12.1f %10.2f%n", routing.numStops(), "Delta", threads, deltaMs, baseline / deltaMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package pt.pa.test;
+
+import com.brunomnsilva.smartgraph.graph.Edge;
+import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.GraphEdgeList;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+import pt.pa.graph.GraphAdjacencyList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * A classe {@code GraphBenchmark} compara o desempenho da {@link GraphAdjacencyList} com a {@link GraphEdgeList}
+ * em redes sintéticas de 1k, 10k e 100k Stops.
+ *
+ * Cada rede liga cada Stop à seguinte (garantindo que a rede é conexa) e a duas Stops escolhidas aleatoriamente,
+ * o que dá um grau médio próximo do de uma rede de transportes real. São medidos os tempos de construção e o custo
+ * médio de {@code incidentEdges}, {@code opposite} e {@code areAdjacent} numa amostra de Stops.
+ *
+ * Esta classe é usada apenas para fins de demonstração e teste.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class GraphBenchmark {
+    private static final int[] NETWORK_SIZES = {1_000, 10_000, 100_000};
+    private static final int EXTRA_EDGES_PER_STOP = 2;
+    private static final int SAMPLE_SIZE = 1_000;
+    private static final long SEED = 42;
+
+    /**
+     * Método principal que executa a comparação para todas as dimensões de rede.
+     *
+     * @param args argumentos da linha de comando.
+     */
+    public static void main(String[] args) {
+        System.out.printf("%-20s %8s %10s %12s %16s %14s %16s%n",
+                "Implementation", "Stops", "Edges", "Build (ms)", "incidentEdges", "opposite", "areAdjacent");
+
+        for (int size : NETWORK_SIZES) {
+            run("GraphEdgeList", GraphEdgeList::new, size);
+            run("GraphAdjacencyList", GraphAdjacencyList::new, size);
+        }
+    }
+
+    /**
+     * Constrói uma rede sintética com a implementação fornecida e mede as operações de consulta.
+     *
+     * @param name    nome da implementação (para o relatório).
+     * @param factory fábrica da implementação do grafo.
+     * @param size    número de Stops da rede.
+     */
+    private static void run(String name, Supplier<Graph<Integer, Integer>> factory, int size) {
+        Random random = new Random(SEED);
+        Graph<Integer, Integer> graph = factory.get();
+
+        long start = System.nanoTime();
+        List<Vertex<Integer>> vertices = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            vertices.add(graph.insertVertex(i));
+        }
+
+        int edgeElement = 0;
+        for (int i = 0; i < size; i++) {
+            if (i + 1 < size) {
+                graph.insertEdge(vertices.get(i), vertices.get(i + 1), edgeElement++);
+            }
+            for (int k = 0; k < EXTRA_EDGES_PER_STOP; k++) {
+                graph.insertEdge(vertices.get(i), vertices.get(random.nextInt(size)), edgeElement++);
+            }
+        }
+        double buildMs = (System.nanoTime() - start) / 1e6;
+
+        List<Vertex<Integer>> sample = new ArrayList<>(SAMPLE_SIZE);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            sample.add(vertices.get(random.nextInt(size)));
+        }
+
+        // Aquecimento e medição de incidentEdges + opposite
+        long checksum = 0;
+        long incidentNanos = 0;
+        long oppositeNanos = 0;
+        for (Vertex<Integer> v : sample) {
+            long t0 = System.nanoTime();
+            List<Edge<Integer, Integer>> incident = new ArrayList<>(graph.incidentEdges(v));
+            long t1 = System.nanoTime();
+            for (Edge<Integer, Integer> e : incident) {
+                checksum += graph.opposite(v, e).element();
+            }
+            long t2 = System.nanoTime();
+            incidentNanos += t1 - t0;
+            oppositeNanos += incident.isEmpty() ? 0 : (t2 - t1) / incident.size();
+        }
+
+        long adjacentNanos = 0;
+        for (int i = 0; i < sample.size() - 1; i++) {
+            long t0 = System.nanoTime();
+            if (graph.areAdjacent(sample.get(i), sample.get(i + 1))) {
+                checksum++;
+            }
+            adjacentNanos += System.nanoTime() - t0;
+        }
+
+        System.out.printf("%-20s %8d %10d %12.1f %13.0f ns %11.0f ns %13.0f ns   (checksum %d)%n",
+                name, graph.numVertices(), graph.numEdges(), buildMs,
+                (double) incidentNanos / sample.size(),
+                (double) oppositeNanos / sample.size(),
+                (double) adjacentNanos / (sample.size() - 1),
+                checksum);
+    }
+}
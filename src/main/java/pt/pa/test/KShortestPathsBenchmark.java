@@ -0,0 +1,61 @@
+package pt.pa.test;
+
+import pt.pa.TransportMask;
+import pt.pa.patterns.strategy.DistanceStrategy;
+import pt.pa.patterns.strategy.DurationStrategy;
+import pt.pa.patterns.strategy.WeightCalculationStrategy;
+import pt.pa.routing.EdgeWeightTable;
+import pt.pa.routing.KShortestPaths;
+import pt.pa.routing.RoutingGraph;
+import pt.pa.routing.SearchResult;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A classe {@code KShortestPathsBenchmark} mede o tempo de procura de 10 Paths alternativos ({@link KShortestPaths})
+ * entre pares aleatórios de Stops nas redes sintéticas do {@link RoutingBenchmark}.
+ *
+ * Esta classe é usada apenas para fins de demonstração e teste.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class KShortestPathsBenchmark {
+    private static final int[] NETWORK_SIZES = {1_000, 10_000};
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+    private static final long SEED = 42;
+
+    /**
+     * Método principal que executa a medição para todas as dimensões de rede.
+     *
+     * @param args argumentos da linha de comando.
+     */
+    public static void main(String[] args) {
+        System.out.printf("%8s %-10s %4s %14s %14s %16s%n", "Stops", "Criterion", "k", "Paths/query", "ms/query", "Settled/path");
+
+        for (int size : NETWORK_SIZES) {
+            RoutingGraph routing = RoutingGraph.of(RoutingBenchmark.buildNetwork(size));
+            for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+                EdgeWeightTable weights = routing.weightTable(strategy);
+                Random random = new Random(SEED);
+                long paths = 0;
+                long settled = 0;
+                long start = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    List<SearchResult> results = KShortestPaths.find(routing, weights, TransportMask.all().bits(),
+                            random.nextInt(routing.numStops()), random.nextInt(routing.numStops()), K);
+                    paths += results.size();
+                    for (SearchResult result : results) {
+                        settled += result.settled();
+                    }
+                }
+                double millis = (System.nanoTime() - start) / 1e6 / QUERIES;
+
+                System.out.printf("%8d %-10s %4d %14.1f %14.2f %16.1f%n", routing.numStops(),
+                        strategy.getClass().getSimpleName().replace("Strategy", ""), K,
+                        (double) paths / QUERIES, millis, paths == 0 ? 0.0 : (double) settled / paths);
+            }
+        }
+    }
+}
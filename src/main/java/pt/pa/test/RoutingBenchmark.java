@@ -0,0 +1,264 @@
+package pt.pa.test;
+
+import com.brunomnsilva.smartgraph.graph.Graph;
+import com.brunomnsilva.smartgraph.graph.Vertex;
+import pt.pa.Route;
+import pt.pa.Stop;
+import pt.pa.TransportMask;
+import pt.pa.TransportType;
+import pt.pa.graph.GraphAdjacencyList;
+import pt.pa.patterns.strategy.DistanceStrategy;
+import pt.pa.patterns.strategy.DurationStrategy;
+import pt.pa.patterns.strategy.WeightCalculationStrategy;
+import pt.pa.routing.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A classe {@code RoutingBenchmark} compara os motores de pesquisa de caminhos ({@link ShortestPathEngine}) em
+ * consultas ponto a ponto sobre redes regionais sintéticas de 10k e 100k Stops, tanto entre pares aleatórios como em
+ * consultas longas que atravessam a rede de um extremo ao outro.
+ *
+ * Cada rede é uma grelha irregular de Stops com coordenadas reais (cerca de 600 m entre Stops vizinhas), ligadas às
+ * vizinhas da direita e de baixo e, ocasionalmente, na diagonal. A distância de cada Route é a distância geodésica
+ * acrescida de até 30% e a duração corresponde à velocidade máxima do tipo de transporte, que é também a usada
+ * pelo {@link AStarEngine}. Para cada motor são medidos o número médio de
+ * Stops estabelecidas e o tempo médio por consulta, verificando que todos os motores obtêm o mesmo custo. Para a
+ * hierarquia de contração são também medidos os tempos de contração e de personalização e, para os rótulos de hubs
+ * (construídos apenas na rede de 10k Stops), o tempo de construção, o tamanho médio dos rótulos, a memória ocupada e
+ * o tempo de uma consulta só de custo.
+ *
+ * Esta classe é usada apenas para fins de demonstração e teste.
+ *
+ * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
+ */
+public class RoutingBenchmark {
+    private static final int[] NETWORK_SIZES = {10_000, 100_000};
+    private static final int QUERIES = 200;
+    private static final int MAX_HUB_LABEL_STOPS = 20_000;
+    private static final double SPACING_DEGREES = 0.006;
+    private static final long SEED = 42;
+    private static final Map<TransportType, Double> MAX_SPEEDS = Map.of(
+            TransportType.TRAIN, 90.0,
+            TransportType.BUS, 35.0,
+            TransportType.BICYCLE, 15.0,
+            TransportType.WALK, 5.0,
+            TransportType.BOAT, 30.0);
+
+    /**
+     * Método principal que executa a comparação para todas as dimensões de rede.
+     *
+     * @param args argumentos da linha de comando.
+     */
+    public static void main(String[] args) {
+        Map<String, ShortestPathEngine> engines = new LinkedHashMap<>();
+        engines.put("Dijkstra", new DijkstraEngine());
+        engines.put("A*", new AStarEngine(MAX_SPEEDS));
+        engines.put("ALT", new ALTEngine());
+        engines.put("Bidirectional", new BidirectionalDijkstraEngine());
+        engines.put("CH", new ContractionHierarchyEngine());
+
+        for (int size : NETWORK_SIZES) {
+            RoutingGraph routing = RoutingGraph.of(buildNetwork(size));
+            System.out.printf("%n%d stops, %d edges%n", routing.numStops(), routing.numEdges());
+
+            long start = System.nanoTime();
+            ContractionHierarchy hierarchy = routing.contractionHierarchy();
+            System.out.printf("CH contraction: %.0f ms, %d arcs (%d shortcuts)%n",
+                    (System.nanoTime() - start) / 1e6, hierarchy.numArcs(), hierarchy.numShortcuts());
+            for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+                start = System.nanoTime();
+                hierarchy.findPath(routing.weightTable(strategy), TransportMask.all().bits(), 0, 0);
+                System.out.printf("CH customisation (%s): %.0f ms%n",
+                        strategy.getClass().getSimpleName(), (System.nanoTime() - start) / 1e6);
+            }
+
+            // Numa grelha os rótulos crescem com a raiz do número de Stops, pelo que só são construídos na rede menor
+            Map<String, ShortestPathEngine> sizeEngines = new LinkedHashMap<>(engines);
+            if (routing.numStops() <= MAX_HUB_LABEL_STOPS) {
+                sizeEngines.put("Hub labels", new HubLabelEngine());
+                int[][] queries = randomQueries(routing.numStops());
+                for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+                    start = System.nanoTime();
+                    HubLabels labels = routing.weightTable(strategy).hubLabels(TransportMask.all().bits());
+                    System.out.printf("Hub labels (%s): %.0f ms, %.1f entries/stop, %.1f MB",
+                            strategy.getClass().getSimpleName(), (System.nanoTime() - start) / 1e6,
+                            labels.averageLabelSize(), labels.memoryBytes() / 1e6);
+
+                    double checksum = 0;
+                    start = System.nanoTime();
+                    for (int[] query : queries) {
+                        checksum += labels.cost(query[0], query[1]);
+                    }
+                    System.out.printf(", cost-only query %.2f us (checksum %.1f)%n",
+                            (System.nanoTime() - start) / 1e3 / queries.length, checksum);
+                }
+            }
+
+            System.out.printf("%-10s %-8s %-16s %14s %14s%n", "Criterion", "Queries", "Engine", "Settled/query", "us/query");
+
+            Map<String, int[][]> querySets = new LinkedHashMap<>();
+            querySets.put("random", randomQueries(routing.numStops()));
+            querySets.put("cross", crossNetworkQueries(routing.numStops()));
+
+            for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+                for (Map.Entry<String, int[][]> querySet : querySets.entrySet()) {
+                    run(routing, routing.weightTable(strategy), querySet.getKey(), querySet.getValue(), sizeEngines);
+                }
+            }
+        }
+    }
+
+    /**
+     * Executa um conjunto de consultas com cada motor, verificando que todos obtêm os mesmos custos.
+     *
+     * @param routing   a fotografia da rede.
+     * @param weights   a tabela de pesos da estratégia.
+     * @param queryName nome do conjunto de consultas (para o relatório).
+     * @param queries   pares {@code {origem, destino}}.
+     * @param engines   os motores a comparar.
+     */
+    private static void run(RoutingGraph routing, EdgeWeightTable weights, String queryName, int[][] queries,
+                            Map<String, ShortestPathEngine> engines) {
+        int mask = TransportMask.all().bits();
+        double[] reference = null;
+
+        for (Map.Entry<String, ShortestPathEngine> engine : engines.entrySet()) {
+            double[] costs = new double[queries.length];
+            long settled = 0;
+            long start = System.nanoTime();
+            for (int q = 0; q < queries.length; q++) {
+                SearchResult result = engine.getValue().findPath(routing, weights, mask, queries[q][0], queries[q][1]);
+                settled += result.settled();
+                for (int edge : result.edges()) {
+                    costs[q] += weights.weight(edge, mask);
+                }
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / queries.length;
+
+            if (reference == null) {
+                reference = costs;
+            } else {
+                for (int q = 0; q < queries.length; q++) {
+                    if (Math.abs(reference[q] - costs[q]) > 1e-6) {
+                        throw new IllegalStateException(engine.getKey() + " returned a different cost for query " + q + ".");
+                    }
+                }
+            }
+
+            System.out.printf("%-10s %-8s %-16s %14.0f %14.0f%n",
+                    weights.getStrategy().getClass().getSimpleName().replace("Strategy", ""),
+                    queryName, engine.getKey(), (double) settled / queries.length, micros);
+        }
+    }
+
+    /**
+     * Constrói uma rede regional sintética em grelha.
+     *
+     * @param size número aproximado de Stops.
+     * @return o grafo da rede.
+     */
+    static Graph<Stop, List<Route>> buildNetwork(int size) {
+        Random random = new Random(SEED);
+        int side = (int) Math.ceil(Math.sqrt(size));
+        Graph<Stop, List<Route>> graph = new GraphAdjacencyList<>();
+        List<Vertex<Stop>> vertices = new ArrayList<>(side * side);
+
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                double latitude = 38.0 + row * SPACING_DEGREES + random.nextDouble() * SPACING_DEGREES / 3;
+                double longitude = -9.5 + col * SPACING_DEGREES + random.nextDouble() * SPACING_DEGREES / 3;
+                String code = "S" + (row * side + col);
+                vertices.add(graph.insertVertex(new Stop(code, code, latitude, longitude)));
+            }
+        }
+
+        for (int row = 0; row < side; row++) {
+            for (int col = 0; col < side; col++) {
+                Vertex<Stop> stop = vertices.get(row * side + col);
+                if (col + 1 < side) {
+                    connect(graph, stop, vertices.get(row * side + col + 1), random);
+                }
+                if (row + 1 < side) {
+                    connect(graph, stop, vertices.get((row + 1) * side + col), random);
+                }
+                if (row + 1 < side && col + 1 < side && random.nextInt(4) == 0) {
+                    connect(graph, stop, vertices.get((row + 1) * side + col + 1), random);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Liga duas Stops com uma ou duas Routes de tipos de transporte aleatórios.
+     *
+     * @param graph  o grafo da rede.
+     * @param a      uma das Stops.
+     * @param b      a outra Stop.
+     * @param random o gerador de números aleatórios.
+     */
+    private static void connect(Graph<Stop, List<Route>> graph, Vertex<Stop> a, Vertex<Stop> b, Random random) {
+        double straight = haversine(a.element(), b.element());
+        List<Route> routes = new ArrayList<>(2);
+        TransportType[] types = {TransportType.BUS, TransportType.TRAIN, TransportType.BICYCLE, TransportType.WALK};
+        int count = 1 + random.nextInt(2);
+        for (int i = 0; i < count; i++) {
+            TransportType type = types[random.nextInt(types.length)];
+            double distance = Math.round(straight * (1 + random.nextDouble() * 0.3) * 100) / 100.0;
+            int duration = (int) Math.ceil(distance / MAX_SPEEDS.get(type) * 60);
+            routes.add(new Route(type, distance, duration, random.nextDouble()));
+        }
+        graph.insertEdge(a, b, routes);
+    }
+
+    /**
+     * Gera pares origem/destino aleatórios.
+     *
+     * @param numStops número de Stops da rede.
+     * @return array de pares {@code {origem, destino}}.
+     */
+    private static int[][] randomQueries(int numStops) {
+        Random random = new Random(SEED);
+        int[][] queries = new int[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = new int[]{random.nextInt(numStops), random.nextInt(numStops)};
+        }
+        return queries;
+    }
+
+    /**
+     * Gera pares origem/destino longos, entre uma Stop da primeira linha da grelha e uma Stop da última linha.
+     *
+     * @param numStops número de Stops da rede.
+     * @return array de pares {@code {origem, destino}}.
+     */
+    private static int[][] crossNetworkQueries(int numStops) {
+        Random random = new Random(SEED);
+        int side = (int) Math.round(Math.sqrt(numStops));
+        int[][] queries = new int[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = new int[]{random.nextInt(side), numStops - 1 - random.nextInt(side)};
+        }
+        return queries;
+    }
+
+    /**
+     * Calcula a distância de círculo máximo entre duas Stops.
+     *
+     * @param a uma das Stops.
+     * @param b a outra Stop.
+     * @return a distância em Kms.
+     */
+    private static double haversine(Stop a, Stop b) {
+        double dLat = Math.toRadians(b.getLatitude() - a.getLatitude());
+        double dLon = Math.toRadians(b.getLongitude() - a.getLongitude());
+        double h = Math.pow(Math.sin(dLat / 2), 2)
+                + Math.cos(Math.toRadians(a.getLatitude())) * Math.cos(Math.toRadians(b.getLatitude())) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * 6371.0 * Math.asin(Math.sqrt(h));
+    }
+}
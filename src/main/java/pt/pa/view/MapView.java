@@ -50,6 +50,7 @@ import java.util.logging.Logger;
  * @author Rafael Quintas, Rafael Pato, Guilherme Pereira
  */
 public class MapView extends BorderPane implements TransportMapUI {
+    private static final int AUTOCOMPLETE_LIMIT = 50;
 
     private TransportMap model;
     private SmartGraphPanel<Stop, List<Route>> graphView;
@@ -123,9 +124,18 @@ public class MapView extends BorderPane implements TransportMapUI {
      */
     @Override
     public void setTriggers() {
-        originDropdown.setOnAction(event -> controller.triggerLog("Origin Dropdown" + originDropdown.getValue()));
-        destinationDropdown.setOnAction(event -> controller.triggerLog("Destination Dropdown " + destinationDropdown.getValue()));
-        criteriaDropdown.setOnAction(event -> controller.triggerLog("Criteria Dropdown " + criteriaDropdown.getValue()));
+        originDropdown.setOnAction(event -> {
+            controller.triggerLog("Origin Dropdown" + originDropdown.getValue());
+            controller.doCancelLeastCostRoute();
+        });
+        destinationDropdown.setOnAction(event -> {
+            controller.triggerLog("Destination Dropdown " + destinationDropdown.getValue());
+            controller.doCancelLeastCostRoute();
+        });
+        criteriaDropdown.setOnAction(event -> {
+            controller.triggerLog("Criteria Dropdown " + criteriaDropdown.getValue());
+            controller.doCancelLeastCostRoute();
+        });
 
         graphView.setVertexDoubleClickAction(vertex -> {
             controller.doShowVertexDetails(vertex);
@@ -226,21 +236,13 @@ public class MapView extends BorderPane implements TransportMapUI {
         originDropdown.setPromptText("Origin");
         originDropdown.setStyle(dropdownFX);
         configureComboBox(originDropdown, 80);
+        configureAutocomplete(originDropdown);
 
         destinationDropdown = new ComboBox<>();
         destinationDropdown.setPromptText("Destination");
         destinationDropdown.setStyle(dropdownFX);
         configureComboBox(destinationDropdown, 120);
-
-        List<String> stopNames = new ArrayList<>();
-        for (Vertex<Stop> vertex : graph.vertices()) {
-            stopNames.add(vertex.element().getStopName());
-        }
-        Collections.sort(stopNames);
-
-
-        originDropdown.getItems().addAll(stopNames);
-        destinationDropdown.getItems().addAll(stopNames);
+        configureAutocomplete(destinationDropdown);
 
         criteriaDropdown = new ComboBox<>();
         criteriaDropdown.setPromptText("Criteria");
@@ -620,21 +622,16 @@ public class MapView extends BorderPane implements TransportMapUI {
      * @return a lista de rotas associada à conexão entre os vértices, ou {@code null} se não encontrada.
      */
     private List<Route> findRoutesByStops(Vertex<Stop>[] adjacentStops) {
-        String stopName1 = adjacentStops[0].element().getStopName();
-        String stopName2 = adjacentStops[1].element().getStopName();
-
-        for (Edge<List<Route>, Stop> e : model.getGraph().edges()) {
-            Vertex<Stop>[] vertices = e.vertices();
-            String graphStopName1 = vertices[0].element().getStopName();
-            String graphStopName2 = vertices[1].element().getStopName();
+        // Depois de desfazer, o grafo é uma cópia: os vértices são encontrados pelo código da Stop
+        Vertex<Stop> stop1 = model.getVertexByCode(adjacentStops[0].element().getStopCode());
+        Vertex<Stop> stop2 = model.getVertexByCode(adjacentStops[1].element().getStopCode());
 
-            if ((stopName1.equals(graphStopName1) && stopName2.equals(graphStopName2)) ||
-                    (stopName1.equals(graphStopName2) && stopName2.equals(graphStopName1))) {
-                return e.element();
-            }
+        if (stop1 == null || stop2 == null) {
+            return null;
         }
 
-        return null;
+        Edge<List<Route>, Stop> e = model.getConnection(stop1, stop2);
+        return e == null ? null : e.element();
     }
 
 
@@ -741,10 +738,8 @@ public class MapView extends BorderPane implements TransportMapUI {
         stopDropdown.setPromptText("Select a Stop");
         stopDropdown.setPrefWidth(200);
 
-        // Popula o dropdown com os nomes dos Stops
-        for (Vertex<Stop> vertex : model.getGraph().vertices()) {
-            stopDropdown.getItems().add(vertex.element().getStopName());
-        }
+        // Popula o dropdown com os nomes dos Stops à medida que o utilizador escreve
+        configureAutocomplete(stopDropdown);
 
         TextField numberField = new TextField();
         numberField.setPromptText("Enter number of routes (N)");
@@ -759,10 +754,7 @@ public class MapView extends BorderPane implements TransportMapUI {
             String inputNumber = numberField.getText();
 
             // Obtém o vértice e chama o método do model
-            Vertex<Stop> selectedVertex = model.getGraph().vertices().stream()
-                    .filter(v -> v.element().getStopName().equals(selectedStopName))
-                    .findFirst()
-                    .orElse(null);
+            Vertex<Stop> selectedVertex = model.getVertexByName(selectedStopName);
 
             try {
                 int N = Integer.parseInt(inputNumber);
@@ -841,6 +833,43 @@ public class MapView extends BorderPane implements TransportMapUI {
         });
     }
 
+    /**
+     * Torna um {@link ComboBox} de Stops editável, com sugestões obtidas por prefixo a partir do índice do modelo.
+     * <p>
+     * Apenas são apresentadas as primeiras {@code AUTOCOMPLETE_LIMIT} Stops (por ordem alfabética) que começam
+     * pelo texto escrito, o que mantém o dropdown leve mesmo com dezenas de milhares de Stops.
+     *
+     * @param comboBox o ComboBox a configurar.
+     */
+    private void configureAutocomplete(ComboBox<String> comboBox) {
+        comboBox.setEditable(true);
+        comboBox.getItems().setAll(findStopNamesByPrefix(""));
+
+        comboBox.getEditor().textProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue == null || newValue.equals(comboBox.getValue())) {
+                return;
+            }
+
+            List<String> suggestions = findStopNamesByPrefix(newValue);
+            comboBox.getItems().setAll(suggestions);
+            if (!suggestions.isEmpty() && comboBox.getEditor().isFocused()) {
+                comboBox.show();
+            }
+        });
+    }
+
+    /**
+     * Obtém os nomes das Stops que começam pelo prefixo fornecido.
+     *
+     * @param prefix o prefixo escrito pelo utilizador.
+     * @return lista de nomes, por ordem alfabética.
+     */
+    private List<String> findStopNamesByPrefix(String prefix) {
+        return model.findStopsByPrefix(prefix, AUTOCOMPLETE_LIMIT).stream()
+                .map(Stop::getStopName)
+                .toList();
+    }
+
     /**
      * Obtém o dropdown de seleção do Stop de origem.
      *
@@ -946,49 +975,20 @@ public class MapView extends BorderPane implements TransportMapUI {
     }
 
     /**
-     * Destaca um Path específico no grafo.
+     * Destaca um Path específico no grafo, usando o tipo de transporte da Route escolhida em cada troço
+     * ({@link PathLeg}).
      *
-     * @param stopsInPath lista de Stops no Path.
-     * @param transportTypes tipos de transporte disponíveis.
-     * @param strategy estratégia de cálculo de peso.
+     * @param path o Path a destacar.
      */
-    public void highlightPath(List<Vertex<Stop>> stopsInPath, List<TransportType> transportTypes, WeightCalculationStrategy strategy) {
+    public void highlightPath(Path path) {
 
         clearHighlights();
 
-        for (int i = 0; i < stopsInPath.size() - 1; i++) {
-            Vertex<Stop> start = stopsInPath.get(i);
-            Vertex<Stop> end = stopsInPath.get(i + 1);
-
-            // Encontrar a aresta correspondente
-            model.getGraph().incidentEdges(start).stream()
-                    .filter(edge -> !edge.element().isEmpty())
-                    .filter(edge -> model.getGraph().opposite(start, edge).equals(end))
-                    .findFirst()
-                    .ifPresent(edge -> {
-                        Route bestRoute = null;
-                        double minWeight = Double.POSITIVE_INFINITY;
-
-                        // Determinar a route com o menor valor usando a estratégia
-                        for (Route route : edge.element()) {
-                            if (transportTypes.contains(route.getTransportType()) && route.getState()) {
-                                double weight = strategy.calculateWeight(route);
-                                if (weight < minWeight) {
-                                    minWeight = weight;
-                                    bestRoute = route;
-                                }
-                            }
-                        }
-
-                        // Se a melhor route foi encontrada, aplica o estilo correspondente
-                        if (bestRoute != null) {
-                            var graphicalEdge = graphView.getStylableEdge(edge);
-                            if (graphicalEdge != null) {
-                                graphicalEdge.setStyleClass("edge-" + bestRoute.getTransportType().name().toLowerCase());
-                            }
-                        }
-                    });
-
+        for (PathLeg leg : path.getLegs()) {
+            var graphicalEdge = graphView.getStylableEdge(leg.getEdge());
+            if (graphicalEdge != null) {
+                graphicalEdge.setStyleClass("edge-" + leg.getTransportType().name().toLowerCase());
+            }
         }
     }
 
@@ -1012,10 +1012,8 @@ public class MapView extends BorderPane implements TransportMapUI {
      * @param strategy estratégia de cálculo de peso.
      */
     public void highlightEdge(Vertex<Stop> start, Vertex<Stop> end, WeightCalculationStrategy strategy) {
-        model.getGraph().incidentEdges(start).stream()
+        Optional.ofNullable(model.getConnection(start, end))
                 .filter(edge -> !edge.element().isEmpty())
-                .filter(edge -> model.getGraph().opposite(start, edge).equals(end))
-                .findFirst()
                 .ifPresent(edge -> {
                     Route bestRoute = null;
                     double minWeight = Double.POSITIVE_INFINITY;
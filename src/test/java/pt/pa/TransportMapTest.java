@@ -3,8 +3,29 @@ package pt.pa;
 import com.brunomnsilva.smartgraph.graph.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import pt.pa.patterns.memento.Caretaker;
+import pt.pa.patterns.strategy.*;
+import pt.pa.routing.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 class TransportMapTest {
@@ -66,6 +87,22 @@ class TransportMapTest {
         assertEquals(41, graph.numEdges());
     }
 
+    @Test
+    void addRouteToExistingConnection() {
+        Graph<Stop, List<Route>> graph = transportMap.getGraph();
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        Vertex<Stop> v2 = transportMap.addStop("S2", "Stop 2", "41.0", "-9.0");
+
+        // Uma segunda Route entre as mesmas Stops é acrescentada à aresta existente
+        Edge<List<Route>, Stop> e1 = transportMap.addRoute(v1, v2, "BUS", "5.0", "10", "2.5");
+        Edge<List<Route>, Stop> e2 = transportMap.addRoute(v2, v1, "WALK", "4.0", "50", "0.0");
+        assertSame(e1, e2);
+        assertEquals(2, e1.element().size());
+        assertEquals(40, graph.numEdges());
+        assertTrue(graph.areAdjacent(v1, v2));
+        assertEquals(1, graph.incidentEdges(v1).size());
+    }
+
     @Test
     void removeStop() {
         // Como o construtor da classe TransportMap faz o loadToGraph(), o grafo irá inicializar com 31 vertices
@@ -124,4 +161,1182 @@ class TransportMapTest {
         assertThrows(InvalidEdgeException.class, () -> transportMap.removeRoute(null));
         assertEquals(39, graph.numEdges());
     }
-}
\ No newline at end of file
+
+    @Test
+    void routingGraph() {
+        // A fotografia compacta tem os mesmos vertices e arestas que o grafo
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        assertEquals(31, routing.numStops());
+        assertEquals(39, routing.numEdges());
+        assertSame(routing, transportMap.getRoutingGraph());
+
+        // Alterar a topologia obriga a reconstruir a fotografia
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        RoutingGraph rebuilt = transportMap.getRoutingGraph();
+        assertNotSame(routing, rebuilt);
+        assertEquals(32, rebuilt.numStops());
+        assertEquals(0, rebuilt.degree(rebuilt.indexOf(v1)));
+
+        // Desativar uma Route atualiza a fotografia existente sem a reconstruir
+        Edge<List<Route>, Stop> edge = transportMap.getGraph().edges().iterator().next();
+        Route route = edge.element().get(0);
+        transportMap.disableRoute(List.of(route));
+        assertSame(rebuilt, transportMap.getRoutingGraph());
+        assertFalse(rebuilt.routeState(rebuilt.firstRoute(rebuilt.indexOf(edge))));
+    }
+
+    @Test
+    void stopIndex() {
+        Vertex<Stop> sintra = transportMap.getVertexByCode("SIN001");
+        assertNotNull(sintra);
+        assertSame(sintra, transportMap.getVertexByName("Sintra"));
+        assertNull(transportMap.getVertexByCode("S1"));
+
+        // Pesquisa por prefixo, sem distinção entre maiúsculas e minúsculas e por ordem alfabética
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Sintra Sul", "40.0", "-8.0");
+        List<Stop> found = transportMap.findStopsByPrefix("sin", 10);
+        assertEquals(List.of(sintra.element(), v1.element()), found);
+        assertEquals(1, transportMap.findStopsByPrefix("sin", 1).size());
+        assertTrue(transportMap.findStopsByPrefix("xyz", 10).isEmpty());
+
+        // O código de cada Stop tem de ser único
+        assertThrows(IllegalArgumentException.class, () -> transportMap.addStop("S1", "Stop 1", "40.0", "-8.0"));
+
+        // Remover uma Stop remove-a também do índice
+        transportMap.removeStop(v1);
+        assertNull(transportMap.getVertexByCode("S1"));
+        assertEquals(List.of(sintra.element()), transportMap.findStopsByPrefix("Sin", 10));
+    }
+
+    @Test
+    void getConnection() {
+        // Cada par de Stops do mapa carregado tem uma única aresta, que é a indexada
+        for (Edge<List<Route>, Stop> edge : transportMap.getGraph().edges()) {
+            assertSame(edge, transportMap.getConnection(edge.vertices()[0], edge.vertices()[1]));
+        }
+
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        Vertex<Stop> v2 = transportMap.addStop("S2", "Stop 2", "41.0", "-9.0");
+        Vertex<Stop> v3 = transportMap.addStop("S3", "Stop 3", "45.0", "-14.0");
+        assertNull(transportMap.getConnection(v1, v2));
+
+        // O índice não depende da ordem das Stops
+        Edge<List<Route>, Stop> e1 = transportMap.addRoute(v1, v2, "BUS", "5.0", "10", "2.5");
+        Edge<List<Route>, Stop> e2 = transportMap.addRoute(v2, v3, "TRAIN", "10.0", "25", "2.5");
+        assertSame(e1, transportMap.getConnection(v1, v2));
+        assertSame(e1, transportMap.getConnection(v2, v1));
+        assertTrue(transportMap.isAdjacent(v3, v2));
+        assertFalse(transportMap.isAdjacent(v1, v3));
+
+        // Remover a Route ou a Stop remove também as ligações indexadas
+        transportMap.removeRoute(e1);
+        assertNull(transportMap.getConnection(v2, v1));
+        transportMap.removeStop(v3);
+        assertNull(transportMap.getConnection(v2, v3));
+        assertNotNull(e2);
+    }
+
+    @Test
+    void transportMaskWeightTable() {
+        TransportMask busAndTrain = TransportMask.of(TransportType.BUS, TransportType.TRAIN);
+        assertTrue(busAndTrain.contains(TransportType.BUS));
+        assertFalse(busAndTrain.contains(TransportType.WALK));
+        assertEquals(List.of(TransportType.BUS, TransportType.TRAIN), TransportMask.of(List.of(TransportType.TRAIN, TransportType.BUS)).toList());
+        assertEquals(TransportMask.SUBSETS - 1, TransportMask.all().bits());
+
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        Vertex<Stop> v2 = transportMap.addStop("S2", "Stop 2", "41.0", "-9.0");
+        transportMap.addRoute(v1, v2, "BUS", "5.0", "10", "2.5");
+        Edge<List<Route>, Stop> edge = transportMap.addRoute(v1, v2, "TRAIN", "10.0", "25", "2.5");
+        Route bus = edge.element().get(0);
+
+        DurationStrategy duration = new DurationStrategy();
+        assertEquals(10, transportMap.calculateCostBetweenStops(v1, v2, busAndTrain, duration));
+        assertEquals(25, transportMap.calculateCostBetweenStops(v1, v2, TransportMask.of(TransportType.TRAIN), duration));
+
+        // Alterar uma Route atualiza a tabela de pesos da aresta
+        transportMap.changeBicycleRouteDuration(bus, 30);
+        assertEquals(25, transportMap.calculateCostBetweenStops(v1, v2, busAndTrain, duration));
+        transportMap.disableRoute(List.of(edge.element().get(1)));
+        assertEquals(30, transportMap.calculateCostBetweenStops(v1, v2, busAndTrain, duration));
+        assertThrows(IllegalStateException.class, () -> transportMap.calculateCostBetweenStops(v1, v2, TransportMask.of(TransportType.TRAIN), duration));
+    }
+
+    @Test
+    void dijkstraMatchesBellmanFord() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(new DistanceStrategy());
+        int mask = TransportMask.all().bits();
+        assertTrue(weights.isNonNegative(mask));
+
+        // Dijkstra encontra o custo de Bellman-Ford por um caminho só de arestas justas; quando o caminho de menor
+        // custo é único, a sequência de Stops é a desse caminho
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            EdgeWeightTable table = routing.weightTable(strategy);
+            for (int origin = 0; origin < routing.numStops(); origin++) {
+                double[] costs = bellmanFordCosts(routing, table, mask, origin);
+                int[] uniqueParent = uniqueShortestPathParents(routing, table, mask, costs);
+                for (int destination = 0; destination < routing.numStops(); destination++) {
+                    SearchResult dijkstra = new DijkstraEngine().findPath(routing, table, mask, origin, destination);
+                    assertEquals(costs[destination] != Double.POSITIVE_INFINITY, dijkstra.isFound());
+                    if (!dijkstra.isFound()) {
+                        continue;
+                    }
+                    int[] stops = dijkstra.stops();
+                    int[] edges = dijkstra.edges();
+                    for (int i = 0; i < edges.length; i++) {
+                        assertEquals(costs[stops[i + 1]], costs[stops[i]] + table.weight(edges[i], mask), 1e-9);
+                    }
+                    if (uniqueParent[destination] != -2) {
+                        List<Integer> expected = new ArrayList<>();
+                        for (int stop = destination; stop >= 0; stop = uniqueParent[stop]) {
+                            expected.add(0, stop);
+                        }
+                        assertEquals(expected, Arrays.stream(stops).boxed().toList());
+                    }
+                }
+            }
+        }
+
+        // Com pesos negativos, Dijkstra é recusado
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        Vertex<Stop> v2 = transportMap.addStop("S2", "Stop 2", "41.0", "-9.0");
+        transportMap.addRoute(v1, v2, "WALK", "1.0", "10", "-20000");
+        RoutingGraph rebuilt = transportMap.getRoutingGraph();
+        EdgeWeightTable sustainability = rebuilt.weightTable(new SustainabilityStrategy());
+        int origin = rebuilt.indexOf(v1);
+        int destination = rebuilt.indexOf(v2);
+        assertFalse(sustainability.isNonNegative(mask));
+        assertThrows(IllegalStateException.class, () -> new DijkstraEngine().findPath(rebuilt, sustainability, mask, origin, destination));
+    }
+
+    @Test
+    void shiftedWeights() {
+        Vertex<Stop> v1 = transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        Vertex<Stop> v2 = transportMap.addStop("S2", "Stop 2", "41.0", "-9.0");
+        Vertex<Stop> v3 = transportMap.addStop("S3", "Stop 3", "42.0", "-9.0");
+        Vertex<Stop> v4 = transportMap.addStop("S4", "Stop 4", "43.0", "-9.0");
+        Vertex<Stop> v5 = transportMap.addStop("S5", "Stop 5", "44.0", "-9.0");
+        Vertex<Stop> v6 = transportMap.addStop("S6", "Stop 6", "45.0", "-9.0");
+        transportMap.addRoute(v1, v4, "BUS", "1.0", "10", "20.0");
+        transportMap.addRoute(v1, v2, "BUS", "1.0", "10", "5.0");
+        transportMap.addRoute(v2, v3, "BUS", "1.0", "10", "5.0");
+        Edge<List<Route>, Stop> edge = transportMap.addRoute(v3, v4, "BUS", "1.0", "10", "5.0");
+        transportMap.addRoute(v5, v6, "WALK", "1.0", "10", "-10.0");
+
+        // O deslocamento é o simétrico do peso mais negativo da máscara, calculado uma única vez; sem pesos negativos
+        // não há deslocamento
+        SustainabilityStrategy sustainability = new SustainabilityStrategy();
+        EdgeWeightTable weights = transportMap.getRoutingGraph().weightTable(sustainability);
+        int mask = TransportMask.all().bits();
+        ShiftedWeights shifted = weights.shiftedWeights(mask);
+        assertEquals(10.0, shifted.shift());
+        assertSame(shifted, weights.shiftedWeights(mask));
+        assertEquals(0.0, weights.shiftedWeights(TransportMask.of(TransportType.BUS).bits()).shift());
+
+        // Sem pesos negativos, o Path é o de menor custo real, com três troços
+        Path exact = transportMap.leastCostBetweenStops("Stop 1", "Stop 4", sustainability, TransportMask.of(TransportType.BUS));
+        assertEquals(List.of(v1, v2, v3, v4), exact.getPath());
+        assertEquals(15.0, exact.getTotalCost());
+
+        // Com a aresta negativa de outra parte da rede, a pesquisa minimiza custo + 10 * troços (30 contra 45) e escolhe
+        // a ligação direta, de custo real 20; o custo do Path é a soma dos pesos reais
+        Path approximate = transportMap.leastCostBetweenStops("Stop 1", "Stop 4", sustainability, TransportMask.all());
+        assertEquals(List.of(v1, v4), approximate.getPath());
+        assertEquals(20.0, approximate.getTotalCost());
+
+        // Alterar uma Route descarta o deslocamento
+        transportMap.disableRoute(edge.element());
+        assertNotSame(shifted, weights.shiftedWeights(mask));
+    }
+
+    @Test
+    void aStarMatchesDijkstra() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        AStarEngine aStar = new AStarEngine();
+        DijkstraEngine dijkstra = new DijkstraEngine();
+        int mask = TransportMask.all().bits();
+
+        // A* encontra Paths com o mesmo custo que Dijkstra, estabelecendo no máximo as mesmas Stops
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            EdgeWeightTable weights = routing.weightTable(strategy);
+            for (int origin = 0; origin < routing.numStops(); origin++) {
+                for (int destination = 0; destination < routing.numStops(); destination++) {
+                    SearchResult expected = dijkstra.findPath(routing, weights, mask, origin, destination);
+                    SearchResult actual = aStar.findPath(routing, weights, mask, origin, destination);
+                    assertEquals(expected.isFound(), actual.isFound());
+                    assertTrue(actual.settled() <= expected.settled());
+                    if (expected.isFound()) {
+                        double expectedCost = 0;
+                        double actualCost = 0;
+                        for (int edge : expected.edges()) expectedCost += weights.weight(edge, mask);
+                        for (int edge : actual.edges()) actualCost += weights.weight(edge, mask);
+                        assertEquals(expectedCost, actualCost, 1e-9);
+                    }
+                }
+            }
+        }
+
+        // O motor escolhido é usado por leastCostBetweenStops e o número de Stops estabelecidas fica no Path
+        Path expected = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all());
+        transportMap.setShortestPathEngine(aStar);
+        Path actual = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all());
+        assertEquals(expected.getTotalCost(), actual.getTotalCost());
+        assertTrue(actual.getSettledStops() > 0);
+        assertThrows(IllegalArgumentException.class, () -> new AStarEngine(Map.of(TransportType.BUS, 50.0)));
+    }
+
+    @Test
+    void bidirectionalDijkstra() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        BidirectionalDijkstraEngine bidirectional = new BidirectionalDijkstraEngine();
+        DijkstraEngine dijkstra = new DijkstraEngine();
+        int mask = TransportMask.of(TransportType.BUS, TransportType.TRAIN, TransportType.BOAT).bits();
+
+        // O Path encontrado é contínuo, vai da origem ao destino e tem o mesmo custo que o de Dijkstra
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            EdgeWeightTable weights = routing.weightTable(strategy);
+            for (int origin = 0; origin < routing.numStops(); origin++) {
+                for (int destination = 0; destination < routing.numStops(); destination++) {
+                    SearchResult expected = dijkstra.findPath(routing, weights, mask, origin, destination);
+                    SearchResult actual = bidirectional.findPath(routing, weights, mask, origin, destination);
+                    assertEquals(expected.isFound(), actual.isFound());
+                    if (expected.isFound()) {
+                        int[] stops = actual.stops();
+                        assertEquals(origin, stops[0]);
+                        assertEquals(destination, stops[stops.length - 1]);
+                        double expectedCost = 0;
+                        double actualCost = 0;
+                        for (int edge : expected.edges()) expectedCost += weights.weight(edge, mask);
+                        for (int i = 0; i < actual.edges().length; i++) {
+                            assertEquals(stops[i + 1], routing.opposite(actual.edges()[i], stops[i]));
+                            actualCost += weights.weight(actual.edges()[i], mask);
+                        }
+                        assertEquals(expectedCost, actualCost, 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void contractionHierarchy() throws IOException {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        ContractionHierarchy hierarchy = routing.contractionHierarchy();
+        assertTrue(hierarchy.numArcs() - hierarchy.numShortcuts() <= routing.numEdges());
+        assertCostsMatchDijkstra(routing, new ContractionHierarchyEngine());
+
+        // Desativar Routes só repete a personalização dos pesos, mantendo a mesma hierarquia
+        for (Edge<List<Route>, Stop> edge : transportMap.getGraph().edges()) {
+            if (edge.element().size() > 1) {
+                transportMap.disableRoute(List.of(edge.element().get(0)));
+            }
+        }
+        assertSame(hierarchy, transportMap.getRoutingGraph().contractionHierarchy());
+        assertCostsMatchDijkstra(routing, new ContractionHierarchyEngine());
+
+        // A hierarquia gravada pode ser lida e associada a uma fotografia equivalente
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        hierarchy.write(out);
+        ContractionHierarchy loaded = ContractionHierarchy.read(new ByteArrayInputStream(out.toByteArray()), routing);
+        assertEquals(hierarchy.numArcs(), loaded.numArcs());
+        routing.setContractionHierarchy(loaded);
+        assertCostsMatchDijkstra(routing, new ContractionHierarchyEngine());
+
+        // Um ficheiro corrompido é recusado com IOException ou, se continuar consistente, dá os mesmos custos
+        byte[] bytes = out.toByteArray();
+        for (int offset = 4; offset + 4 <= bytes.length; offset++) {
+            for (int value : new int[]{-1, 0, 1, 7, Integer.MAX_VALUE}) {
+                byte[] corrupted = bytes.clone();
+                ByteBuffer.wrap(corrupted).putInt(offset, value);
+                ContractionHierarchy read;
+                try {
+                    read = ContractionHierarchy.read(new ByteArrayInputStream(corrupted), routing);
+                } catch (IOException e) {
+                    continue;
+                }
+                routing.setContractionHierarchy(read);
+                assertCostsMatchDijkstra(routing, new ContractionHierarchyEngine());
+            }
+        }
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)), routing));
+
+        // Alterar uma Route muda a soma de controlo
+        Route active = transportMap.getGraph().edges().stream().flatMap(edge -> edge.element().stream())
+                .filter(Route::getState).findFirst().orElseThrow();
+        transportMap.disableRoute(List.of(active));
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(new ByteArrayInputStream(bytes), routing));
+
+        transportMap.addStop("S1", "Stop 1", "40.0", "-8.0");
+        assertThrows(IOException.class, () -> ContractionHierarchy.read(new ByteArrayInputStream(bytes), transportMap.getRoutingGraph()));
+    }
+
+    @Test
+    void altLandmarks() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        assertCostsMatchDijkstra(routing, new ALTEngine());
+
+        // Com pesos negativos, ALT usa os pesos deslocados e obtém o mesmo custo que o ShiftedDijkstraEngine
+        EdgeWeightTable sustainability = routing.weightTable(new SustainabilityStrategy());
+        int mask = TransportMask.all().bits();
+        for (int origin = 0; origin < routing.numStops(); origin++) {
+            for (int destination = 0; destination < routing.numStops(); destination++) {
+                SearchResult expected = new ShiftedDijkstraEngine().findPath(routing, sustainability, mask, origin, destination);
+                SearchResult actual = new ALTEngine().findPath(routing, sustainability, mask, origin, destination);
+                assertEquals(expected.isFound(), actual.isFound());
+                if (expected.isFound()) {
+                    assertEquals(shiftedCost(sustainability, mask, expected), shiftedCost(sustainability, mask, actual), 1e-6);
+                }
+            }
+        }
+
+        // Os landmarks ficam em memória e são reconstruídos depois de uma alteração
+        LandmarkIndex landmarks = sustainability.landmarks(mask);
+        assertSame(landmarks, sustainability.landmarks(mask));
+        assertTrue(landmarks.numLandmarks() > 0);
+        Route active = transportMap.getGraph().edges().stream().flatMap(edge -> edge.element().stream())
+                .filter(Route::getState).findFirst().orElseThrow();
+        transportMap.disableRoute(List.of(active));
+        assertNotSame(landmarks, sustainability.landmarks(mask));
+    }
+
+    @Test
+    void hubLabels() throws IOException {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        assertCostsMatchDijkstra(routing, new HubLabelEngine());
+
+        // O custo obtido pela interseção dos rótulos é o mesmo do Path completo
+        TransportMask all = TransportMask.all();
+        EdgeWeightTable distances = routing.weightTable(new DistanceStrategy());
+        HubLabels labels = distances.hubLabels(all.bits());
+        assertTrue(labels.memoryBytes() > 0);
+        Path path = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), all);
+        String sintra = transportMap.getVertexByName("Sintra").element().getStopCode();
+        String palmela = transportMap.getVertexByName("Palmela").element().getStopCode();
+        assertEquals(path.getTotalCost(), transportMap.leastCost(sintra, palmela, new DistanceStrategy(), all), 0.005);
+
+        // Os rótulos gravados podem ser lidos enquanto os pesos não mudarem
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        labels.write(out);
+        HubLabels loaded = HubLabels.read(new ByteArrayInputStream(out.toByteArray()), routing, distances, all.bits());
+        assertEquals(labels.numEntries(), loaded.numEntries());
+        distances.setHubLabels(loaded);
+        assertSame(loaded, distances.hubLabels(all.bits()));
+        assertCostsMatchDijkstra(routing, new HubLabelEngine());
+
+        Edge<List<Route>, Stop> edge = transportMap.getGraph().edges().iterator().next();
+        transportMap.disableRoute(edge.element());
+        assertThrows(IOException.class, () -> HubLabels.read(new ByteArrayInputStream(out.toByteArray()), routing, distances, all.bits()));
+    }
+
+    @Test
+    void allPairsMatrix() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        assertCostsMatchDijkstra(routing, new AllPairsEngine());
+
+        // Com pesos negativos, o custo guardado é a soma dos pesos originais do caminho obtido pelos próximos saltos
+        AllPairsMatrix matrix = transportMap.allPairsMatrix(new SustainabilityStrategy(), TransportMask.all());
+        AllPairsMatrix sequential;
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            sequential = AllPairsMatrix.compute(routing, routing.weightTable(new SustainabilityStrategy()),
+                    TransportMask.all().bits(), pool);
+        } finally {
+            pool.shutdown();
+        }
+        EdgeWeightTable sustainability = routing.weightTable(new SustainabilityStrategy());
+        for (int origin = 0; origin < routing.numStops(); origin++) {
+            for (int destination = 0; destination < routing.numStops(); destination++) {
+                assertEquals(sequential.cost(origin, destination), matrix.cost(origin, destination));
+                SearchResult result = matrix.findPath(origin, destination);
+                assertEquals(matrix.cost(origin, destination) != Double.POSITIVE_INFINITY, result.isFound());
+                if (result.isFound()) {
+                    double cost = 0;
+                    for (int edge : result.edges()) cost += sustainability.weight(edge, TransportMask.all().bits());
+                    assertEquals(matrix.cost(origin, destination), cost, 1e-9);
+                }
+            }
+        }
+        assertSame(matrix, transportMap.allPairsMatrix(new SustainabilityStrategy(), TransportMask.all()));
+    }
+
+    @Test
+    void leastCostMatrix() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        List<String> codes = new ArrayList<>();
+        for (int stop = 0; stop < routing.numStops(); stop++) {
+            codes.add(routing.vertex(stop).element().getStopCode());
+        }
+        List<String> destinations = codes.subList(0, codes.size() / 2);
+
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            CostMatrix matrix = transportMap.leastCostMatrix(codes, destinations, strategy, TransportMask.all());
+            AllPairsMatrix expected = transportMap.allPairsMatrix(strategy, TransportMask.all());
+            assertEquals(codes.size(), matrix.numOrigins());
+            assertEquals(destinations.size(), matrix.numDestinations());
+            for (int row = 0; row < matrix.numOrigins(); row++) {
+                for (int column = 0; column < matrix.numDestinations(); column++) {
+                    assertEquals(expected.cost(matrix.origin(row), matrix.destination(column)), matrix.cost(row, column), 1e-9);
+                }
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> transportMap.leastCostMatrix(List.of("???"), codes, new DistanceStrategy(), TransportMask.all()));
+    }
+
+    @Test
+    void kShortestPaths() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+        int destination = routing.indexOf(transportMap.getVertexByName("Palmela"));
+        int k = 10;
+
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            EdgeWeightTable weights = routing.weightTable(strategy);
+            int mask = TransportMask.all().bits();
+
+            // Custos de todos os caminhos sem ciclos, por enumeração exaustiva
+            List<Double> expected = new ArrayList<>();
+            boolean[] visited = new boolean[routing.numStops()];
+            visited[origin] = true;
+            enumerateSimplePaths(routing, weights, mask, origin, destination, 0.0, visited, expected);
+            expected.sort(null);
+
+            List<SearchResult> paths = KShortestPaths.find(routing, weights, mask, origin, destination, k);
+            assertEquals(Math.min(k, expected.size()), paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                int[] stops = paths.get(i).stops();
+                assertEquals(origin, stops[0]);
+                assertEquals(destination, stops[stops.length - 1]);
+                assertEquals(stops.length, Arrays.stream(stops).distinct().count());
+                assertEquals(expected.get(i), shiftedCost(weights, mask, paths.get(i)), 1e-9);
+            }
+        }
+
+        // Com pesos negativos, a ordem pelo custo deslocado não seria a dos custos reais
+        EdgeWeightTable sustainability = routing.weightTable(new SustainabilityStrategy());
+        assertThrows(IllegalStateException.class,
+                () -> KShortestPaths.find(routing, sustainability, TransportMask.all().bits(), origin, destination, k));
+
+        List<Path> alternatives = transportMap.kLeastCostPaths("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all(), 3);
+        assertEquals(transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all()).getTotalCost(),
+                alternatives.get(0).getTotalCost());
+        assertThrows(IllegalArgumentException.class,
+                () -> transportMap.kLeastCostPaths("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all(), 0));
+    }
+
+    private void enumerateSimplePaths(RoutingGraph routing, EdgeWeightTable weights, int mask, int stop, int destination,
+                                      double cost, boolean[] visited, List<Double> costs) {
+        if (stop == destination) {
+            costs.add(cost);
+            return;
+        }
+        for (int arc = routing.firstArc(stop); arc < routing.endArc(stop); arc++) {
+            int next = routing.arcTarget(arc);
+            double weight = weights.weight(routing.arcEdge(arc), mask);
+            if (!visited[next] && weight != Double.POSITIVE_INFINITY) {
+                visited[next] = true;
+                enumerateSimplePaths(routing, weights, mask, next, destination, cost + weight, visited, costs);
+                visited[next] = false;
+            }
+        }
+    }
+
+    @Test
+    void paretoFront() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+        int destination = routing.indexOf(transportMap.getVertexByName("Palmela"));
+
+        // Frente exata, por enumeração de todos os caminhos sem ciclos e de todas as Routes de cada aresta
+        int mask = TransportMask.of(TransportType.BUS, TransportType.TRAIN, TransportType.BOAT).bits();
+        List<double[]> expected = new ArrayList<>();
+        boolean[] visited = new boolean[routing.numStops()];
+        visited[origin] = true;
+        enumerateParetoFront(routing, mask, origin, destination, new double[3], visited, expected);
+
+        List<MultiCriteriaPath> front = MultiCriteriaSearch.paretoFront(routing, mask, origin, destination, 1000);
+        assertEquals(expected.size(), front.size());
+        for (int i = 0; i < front.size(); i++) {
+            MultiCriteriaPath path = front.get(i);
+            double[] criteria = {path.distance(), path.duration(), path.sustainability()};
+            assertTrue(expected.stream().anyMatch(e -> Arrays.equals(e, criteria)));
+            if (i > 0) {
+                assertTrue(front.get(i - 1).distance() <= path.distance());
+            }
+        }
+
+        // Uma frente limitada é formada pelos primeiros caminhos da frente exata, por ordem de distância
+        for (int maxFront = 1; maxFront < front.size(); maxFront++) {
+            List<MultiCriteriaPath> limited = MultiCriteriaSearch.paretoFront(routing, mask, origin, destination, maxFront);
+            assertEquals(maxFront, limited.size());
+            for (int i = 0; i < maxFront; i++) {
+                assertEquals(front.get(i).distance(), limited.get(i).distance());
+            }
+        }
+
+        // Com sustentabilidade negativa, os caminhos não têm ciclos e nenhum domina outro
+        List<MultiCriteriaPath> withWalking = MultiCriteriaSearch.paretoFront(routing, TransportMask.all().bits(), origin, destination, 1000);
+        for (MultiCriteriaPath a : withWalking) {
+            assertEquals(a.stops().length, Arrays.stream(a.stops()).distinct().count());
+            for (MultiCriteriaPath b : withWalking) {
+                assertFalse(dominates(new double[]{a.distance(), a.duration(), a.sustainability()},
+                        new double[]{b.distance(), b.duration(), b.sustainability()}));
+            }
+        }
+
+        // O tamanho da frente é limitado e os totais são reportados em cada Path
+        List<Path> paths = transportMap.paretoPaths("Sintra", "Palmela", TransportMask.all(), 2);
+        assertTrue(paths.size() <= 2);
+        assertEquals(paths.get(0).getTotalDistance(), paths.get(0).getTotalCost());
+        Path shortest = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all());
+        assertEquals(shortest.getTotalCost(), shortest.getTotalDistance());
+        assertEquals(shortest.getTotalDistance(), paths.get(0).getTotalDistance(), 0.005);
+    }
+
+    @Test
+    void constrainedPath() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+        int destination = routing.indexOf(transportMap.getVertexByName("Palmela"));
+        TransportMask transports = TransportMask.of(TransportType.BUS, TransportType.TRAIN, TransportType.BOAT);
+
+        // O ótimo com orçamento está na frente de Pareto exata: a menor duração entre os pontos dentro do orçamento
+        List<double[]> front = new ArrayList<>();
+        boolean[] visited = new boolean[routing.numStops()];
+        visited[origin] = true;
+        enumerateParetoFront(routing, transports.bits(), origin, destination, new double[3], visited, front);
+        double[] budgets = front.stream().mapToDouble(f -> f[2]).distinct().sorted().toArray();
+
+        for (int i = 0; i < budgets.length; i++) {
+            double budget = i + 1 < budgets.length ? (budgets[i] + budgets[i + 1]) / 2 : budgets[i] + 1;
+            double expected = front.stream().filter(f -> f[2] <= budget).mapToDouble(f -> f[1]).min().orElseThrow();
+            Path path = transportMap.constrainedLeastCostPath("Sintra", "Palmela", new DurationStrategy(),
+                    new SustainabilityStrategy(), budget, transports);
+            assertEquals(expected, path.getTotalCost());
+            assertEquals(expected, path.getTotalDuration());
+            assertTrue(path.getTotalSustainability() <= budget + 0.005);
+        }
+
+        // Sem restrição efetiva, o resultado coincide com o Path mais rápido
+        Path fastest = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DurationStrategy(), transports);
+        Path unconstrained = transportMap.constrainedLeastCostPath("Sintra", "Palmela", new DurationStrategy(),
+                new DistanceStrategy(), Double.POSITIVE_INFINITY, transports);
+        assertEquals(fastest.getTotalCost(), unconstrained.getTotalCost());
+
+        assertThrows(IllegalStateException.class, () -> transportMap.constrainedLeastCostPath("Sintra", "Palmela",
+                new DurationStrategy(), new SustainabilityStrategy(), budgets[0] / 2, transports));
+        assertThrows(IllegalStateException.class, () -> transportMap.constrainedLeastCostPath("Sintra", "Palmela",
+                new DurationStrategy(), new SustainabilityStrategy(), 10, TransportMask.all()));
+        assertThrows(IllegalArgumentException.class, () -> transportMap.constrainedLeastCostPath("Sintra", "Palmela",
+                new DurationStrategy(), new DistanceStrategy(), -1, transports));
+    }
+
+    @Test
+    void transferPenalties() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+        TransportMask transports = TransportMask.all();
+
+        // Sem penalizações, o custo é o do Path de menor custo habitual
+        for (String[] query : new String[][]{{"Sintra", "Palmela"}, {"Sintra", "Sintra"}}) {
+            Path plain = transportMap.leastCostBetweenStops(query[0], query[1], new DurationStrategy(), transports);
+            Path free = transportMap.leastCostWithTransfers(query[0], query[1], new DurationStrategy(), transports, TransferPenalties.none());
+            assertEquals(plain.getTotalCost(), free.getTotalCost());
+        }
+
+        // Com penalizações, o custo coincide com Bellman-Ford sobre o grafo de estados explícito
+        TransferPenalties penalties = TransferPenalties.uniform(10).with(TransportType.WALK, TransportType.BUS, 2);
+        for (int origin = 0; origin < routing.numStops(); origin += 7) {
+            double[] expected = stateGraphCosts(routing, weights, transports.bits(), penalties, origin);
+            for (int destination = 0; destination < routing.numStops(); destination++) {
+                MultiCriteriaPath path = ModeTransferSearch.find(routing, weights, transports.bits(), penalties, origin, destination);
+                if (expected[destination] == Double.POSITIVE_INFINITY) {
+                    assertNull(path);
+                    continue;
+                }
+                double cost = 0.0;
+                for (int i = 0; i < path.routes().length; i++) {
+                    cost += weights.routeWeight(path.routes()[i]);
+                    if (i > 0) {
+                        cost += penalties.get(routing.routeTransport(path.routes()[i - 1]), routing.routeTransport(path.routes()[i]));
+                    }
+                }
+                assertEquals(expected[destination], cost, 1e-9);
+            }
+        }
+
+        // Com penalizações muito altas, o Path usa um único tipo de transporte
+        Path single = transportMap.leastCostWithTransfers("Sintra", "Palmela", new DurationStrategy(), transports, TransferPenalties.uniform(1e6));
+        assertTrue(single.getTotalCost() < 1e6);
+        assertEquals(single.getTotalDuration(), single.getTotalCost());
+
+        // Com pesos negativos, as penalizações seriam comparadas com o deslocamento dos pesos
+        assertThrows(IllegalStateException.class, () -> transportMap.leastCostWithTransfers("Sintra", "Palmela",
+                new SustainabilityStrategy(), transports, penalties));
+
+        assertThrows(IllegalArgumentException.class, () -> TransferPenalties.uniform(-1));
+        assertThrows(IllegalArgumentException.class, () -> TransferPenalties.none().with(TransportType.BUS, TransportType.TRAIN, Double.NaN));
+    }
+
+    private double[] stateGraphCosts(RoutingGraph routing, EdgeWeightTable weights, int mask, TransferPenalties penalties, int origin) {
+        int modes = TransferPenalties.MODES;
+        double[] states = new double[routing.numStops() * modes];
+        Arrays.fill(states, Double.POSITIVE_INFINITY);
+        // Primeiro troço, sem penalização
+        for (int arc = routing.firstArc(origin); arc < routing.endArc(origin); arc++) {
+            int edge = routing.arcEdge(arc);
+            for (int r = routing.firstRoute(edge); r < routing.endRoute(edge); r++) {
+                if (routing.routeState(r) && (mask & (1 << routing.routeTransport(r))) != 0) {
+                    int state = routing.arcTarget(arc) * modes + routing.routeTransport(r);
+                    states[state] = Math.min(states[state], weights.routeWeight(r));
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int e = 0; e < routing.numEdges(); e++) {
+                for (int r = routing.firstRoute(e); r < routing.endRoute(e); r++) {
+                    int mode = routing.routeTransport(r);
+                    if (!routing.routeState(r) || (mask & (1 << mode)) == 0) {
+                        continue;
+                    }
+                    for (int u : new int[]{routing.edgeSource(e), routing.edgeTarget(e)}) {
+                        int v = routing.opposite(e, u);
+                        for (int previous = 0; previous < modes; previous++) {
+                            double cost = states[u * modes + previous] + penalties.get(previous, mode) + weights.routeWeight(r);
+                            if (cost < states[v * modes + mode]) {
+                                states[v * modes + mode] = cost;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        double[] costs = new double[routing.numStops()];
+        for (int stop = 0; stop < costs.length; stop++) {
+            costs[stop] = stop == origin ? 0.0 : Double.POSITIVE_INFINITY;
+            for (int mode = 0; mode < modes; mode++) {
+                costs[stop] = Math.min(costs[stop], states[stop * modes + mode]);
+            }
+        }
+        return costs;
+    }
+
+    @Test
+    void shortestPathTreeRepair() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+        int mask = TransportMask.all().bits();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+        ShortestPathTree tree = weights.shortestPathTree(mask, origin);
+        assertSame(tree, weights.shortestPathTree(mask, origin));
+
+        // Depois de cada alteração, a árvore reparada tem os custos de uma pesquisa nova
+        java.util.Random random = new java.util.Random(7);
+        for (int step = 0; step < 60; step++) {
+            int edge = random.nextInt(routing.numEdges());
+            List<Route> routes = routing.edge(edge).element();
+            Route route = routes.get(random.nextInt(routes.size()));
+            if (route.getTransportType() == TransportType.BICYCLE && random.nextBoolean()) {
+                transportMap.changeBicycleRouteDuration(route, 1 + random.nextInt(60));
+            } else if (route.getState()) {
+                transportMap.disableRoute(List.of(route));
+            } else {
+                route.setState(true);
+            }
+            assertTrue(tree.repairedStops() <= routing.numStops());
+
+            for (int destination = 0; destination < routing.numStops(); destination++) {
+                SearchResult expected = new DijkstraEngine().findPath(routing, weights, mask, origin, destination);
+                SearchResult actual = tree.findPath(destination);
+                assertEquals(expected.isFound(), actual.isFound());
+                if (expected.isFound()) {
+                    double cost = 0;
+                    for (int e : actual.edges()) cost += weights.weight(e, mask);
+                    assertEquals(shiftedCost(weights, mask, expected), cost, 1e-9);
+                    assertEquals(cost, tree.cost(destination), 1e-9);
+                }
+            }
+        }
+
+        // Uma aresta fora da árvore não obriga a rever nenhuma Stop
+        for (int edge = 0; edge < routing.numEdges(); edge++) {
+            boolean inTree = tree.parentEdge(routing.edgeSource(edge)) == edge || tree.parentEdge(routing.edgeTarget(edge)) == edge;
+            if (!inTree && weights.weight(edge, mask) != Double.POSITIVE_INFINITY) {
+                transportMap.disableRoute(routing.edge(edge).element());
+                assertEquals(0, tree.repairedStops());
+                break;
+            }
+        }
+
+        // leastCostBetweenStops usa a árvore reparada
+        Path path = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DurationStrategy(), TransportMask.all());
+        assertEquals(Math.round(tree.cost(routing.indexOf(transportMap.getVertexByName("Palmela"))) * 100) / 100.0, path.getTotalCost());
+    }
+
+    @Test
+    void repeatedOriginTree() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+        int mask = TransportMask.all().bits();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+
+        // A primeira consulta de uma origem usa o Dijkstra que para no destino e não constrói a árvore
+        Path cold = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DurationStrategy(), TransportMask.all());
+        assertTrue(cold.getSettledStops() > 0);
+        assertTrue(cold.getSettledStops() < routing.numStops());
+
+        // A segunda consulta da mesma origem lê a árvore, que dá os mesmos Paths que o Dijkstra
+        String middle = cold.getPath().get(cold.getPath().size() / 2).element().getStopName();
+        Path warm = transportMap.leastCostBetweenStops("Sintra", middle, new DurationStrategy(), TransportMask.all());
+        ShortestPathTree tree = weights.repeatedOriginTree(mask, origin);
+        assertNotNull(tree);
+        assertSame(tree, weights.shortestPathTree(mask, origin));
+        assertEquals(0, warm.getSettledStops());
+        for (int destination = 0; destination < routing.numStops(); destination++) {
+            SearchResult expected = new DijkstraEngine().findPath(routing, weights, mask, origin, destination);
+            SearchResult actual = tree.findPath(destination);
+            assertEquals(expected.isFound(), actual.isFound());
+            if (expected.isFound()) {
+                assertArrayEquals(expected.edges(), actual.edges());
+            }
+        }
+
+        // Origens consultadas uma única vez não têm árvore para reparar
+        int other = routing.indexOf(transportMap.getVertexByName("Palmela"));
+        assertNull(weights.repeatedOriginTree(mask, other));
+        assertNotNull(weights.repeatedOriginTree(mask, other));
+    }
+
+    @Test
+    void pathCache() {
+        PathCache cache = transportMap.getPathCache();
+        DurationStrategy duration = new DurationStrategy();
+
+        // A segunda consulta igual é respondida pela cache
+        Path first = transportMap.leastCostBetweenStops("Sintra", "Palmela", duration, TransportMask.all());
+        Path cached = transportMap.leastCostBetweenStops("Sintra", "Palmela", duration, TransportMask.all());
+        assertEquals(1, cache.hits());
+        assertEquals(first.getPath(), cached.getPath());
+        assertEquals(first.getLegs(), cached.getLegs());
+        assertEquals(first.getTotalCost(), cached.getTotalCost());
+        assertEquals(0, cached.getSettledStops());
+        assertTrue(first.getSettledStops() > 0);
+
+        // Os Paths guardados não podem ser alterados por quem os recebe
+        assertThrows(UnsupportedOperationException.class, () -> cached.getPath().clear());
+        assertThrows(UnsupportedOperationException.class, () -> cached.getLegs().clear());
+        assertThrows(UnsupportedOperationException.class, () -> first.getPath().remove(0));
+        assertEquals(1, cache.misses());
+        assertNotSame(first, transportMap.leastCostBetweenStops("Sintra", "Palmela", duration, TransportMask.of(TransportType.BUS)));
+        assertNotSame(first, transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all()));
+
+        // Cada alteração do mapa aumenta a versão e invalida os Paths guardados
+        Caretaker caretaker = new Caretaker(transportMap);
+        caretaker.saveState();
+        long version = transportMap.getVersion();
+        transportMap.disableRoute(transportMap.getConnection(first.getPath().get(0), first.getPath().get(1)).element());
+        assertTrue(transportMap.getVersion() > version);
+        Path afterDisable = transportMap.leastCostBetweenStops("Sintra", "Palmela", duration, TransportMask.all());
+        assertNotSame(first, afterDisable);
+        assertTrue(afterDisable.getTotalCost() >= first.getTotalCost());
+
+        version = transportMap.getVersion();
+        caretaker.restoreState();
+        assertTrue(transportMap.getVersion() > version);
+        assertEquals(first.getTotalCost(), transportMap.leastCostBetweenStops("Sintra", "Palmela", duration, TransportMask.all()).getTotalCost());
+
+        // Com a cache cheia, é descartado o Path usado há mais tempo
+        PathCache small = new PathCache(2);
+        small.put(0, "A", "B", duration, TransportMask.all(), first);
+        small.put(0, "A", "C", duration, TransportMask.all(), first);
+        assertEquals(first.getPath(), small.get(0, "A", "B", duration, TransportMask.all()).getPath());
+        small.put(0, "A", "D", duration, TransportMask.all(), first);
+        assertEquals(1, small.evictions());
+        assertNull(small.get(0, "A", "C", duration, TransportMask.all()));
+        assertNull(small.get(1, "A", "B", duration, TransportMask.all()));
+        assertEquals(0, small.size());
+        assertThrows(IllegalArgumentException.class, () -> new PathCache(0));
+    }
+
+    @Test
+    void deltaStepping() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        int mask = TransportMask.all().bits();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        // Com várias larguras de balde, os custos coincidem com os de Dijkstra
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            EdgeWeightTable weights = routing.weightTable(strategy);
+            for (DeltaSteppingEngine engine : List.of(new DeltaSteppingEngine(pool), new DeltaSteppingEngine(pool, 0.5), new DeltaSteppingEngine(pool, 1000))) {
+                for (int origin = 0; origin < routing.numStops(); origin++) {
+                    double[] costs = engine.costs(routing, weights, mask, origin);
+                    for (int destination = 0; destination < routing.numStops(); destination++) {
+                        SearchResult expected = new DijkstraEngine().findPath(routing, weights, mask, origin, destination);
+                        SearchResult actual = engine.findPath(routing, weights, mask, origin, destination);
+                        assertEquals(expected.isFound(), actual.isFound());
+                        if (expected.isFound()) {
+                            assertEquals(shiftedCost(weights, mask, expected), shiftedCost(weights, mask, actual), 1e-9);
+                            assertEquals(shiftedCost(weights, mask, expected), costs[destination], 1e-9);
+                        }
+                    }
+                }
+            }
+        }
+
+        // O motor pode ser escolhido para uma única consulta
+        Path expected = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all());
+        Path actual = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all(), new DeltaSteppingEngine(pool));
+        assertEquals(expected.getTotalCost(), actual.getTotalCost());
+        assertTrue(actual.getSettledStops() > 0);
+        assertNull(transportMap.getShortestPathEngine());
+
+        // Uma estrela com muitas Stops obriga a dividir as relaxações pelas threads
+        Vertex<Stop> hub = transportMap.addStop("HUB", "Hub", "38.7", "-9.1");
+        Vertex<Stop> previous = null;
+        for (int i = 0; i < 600; i++) {
+            Vertex<Stop> spoke = transportMap.addStop("SP" + i, "Spoke " + i, "38." + (100 + i), "-9.2");
+            transportMap.addRoute(hub, spoke, "BUS", String.valueOf(1 + i % 7), "5", "1.0");
+            if (previous != null) {
+                transportMap.addRoute(previous, spoke, "WALK", "0.5", "5", "1.0");
+            }
+            previous = spoke;
+        }
+        RoutingGraph star = transportMap.getRoutingGraph();
+        EdgeWeightTable distances = star.weightTable(new DistanceStrategy());
+        double[] costs = new DeltaSteppingEngine(pool, 100).costs(star, distances, mask, star.indexOf(hub));
+        for (int destination = 0; destination < star.numStops(); destination++) {
+            SearchResult dijkstra = new DijkstraEngine().findPath(star, distances, mask, star.indexOf(hub), destination);
+            assertEquals(dijkstra.isFound() ? shiftedCost(distances, mask, dijkstra) : Double.POSITIVE_INFINITY, costs[destination], 1e-9);
+        }
+        pool.shutdown();
+
+        assertThrows(IllegalArgumentException.class, () -> new DeltaSteppingEngine(pool, 0));
+    }
+
+    @Test
+    void routeQueryService() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        RouteQueryService service = new RouteQueryService(transportMap, executor);
+        Path expected = transportMap.leastCostBetweenStops("Sintra", "Palmela", new DurationStrategy(), TransportMask.all());
+
+        // Uma consulta substituída antes de correr é cancelada e nunca chega a ser calculada
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.submit(() -> {
+            busy.await();
+            return null;
+        });
+        CompletableFuture<Path> superseded = service.leastCostBetweenStops("Sintra", "Palmela", new DistanceStrategy(), TransportMask.all());
+        CompletableFuture<Path> latest = service.leastCostBetweenStops("Sintra", "Palmela", new DurationStrategy(), TransportMask.all());
+        assertTrue(superseded.isCancelled());
+        busy.countDown();
+        assertEquals(expected.getTotalCost(), latest.get(10, TimeUnit.SECONDS).getTotalCost());
+
+        // Os erros do modelo chegam através do resultado futuro
+        CompletableFuture<Path> invalid = service.leastCostBetweenStops("Sintra", "Nowhere", new DurationStrategy(), TransportMask.all());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> invalid.get(10, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IllegalArgumentException);
+
+        // As leituras correm no executor, pelo que quem as pede não espera pela consulta em curso
+        CountDownLatch reading = new CountDownLatch(1);
+        executor.submit(() -> {
+            reading.await();
+            return null;
+        });
+        CompletableFuture<Long> read = service.read(transportMap::getVersion);
+        assertFalse(read.isDone());
+        reading.countDown();
+        assertEquals(transportMap.getVersion(), read.get(10, TimeUnit.SECONDS).longValue());
+        CompletableFuture<Double> failed = service.read(() -> { throw new IllegalArgumentException(); });
+        assertTrue(assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS)).getCause() instanceof IllegalArgumentException);
+
+        // Uma alteração ao modelo cancela a consulta pendente
+        CountDownLatch blocked = new CountDownLatch(1);
+        executor.submit(() -> {
+            blocked.await();
+            return null;
+        });
+        CompletableFuture<Path> stale = service.leastCostBetweenStops("Sintra", "Palmela", new DurationStrategy(), TransportMask.all());
+        long version = transportMap.getVersion();
+        service.update(() -> transportMap.disableRoute(transportMap.getGraph().edges().iterator().next().element()));
+        assertTrue(stale.isCancelled());
+        assertEquals(version + 1, transportMap.getVersion());
+        blocked.countDown();
+
+        // As pesquisas terminam cooperativamente se a thread for interrompida
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class, () -> new DijkstraEngine().findPath(routing, weights, TransportMask.all().bits(), 0, 1));
+        } finally {
+            Thread.interrupted();
+        }
+        service.close();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void searchWorkspaceAllocation() {
+        // Uma linha de Stops torna o grafo muito maior do que os caminhos consultados
+        Vertex<Stop> previous = transportMap.getVertexByName("Palmela");
+        for (int i = 0; i < 4000; i++) {
+            Vertex<Stop> stop = transportMap.addStop("LN" + i, "Line " + i, "38." + (1000 + i), "-8.9");
+            transportMap.addRoute(previous, stop, "BUS", "1.0", "2", "1.0");
+            previous = stop;
+        }
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        EdgeWeightTable weights = routing.weightTable(new DurationStrategy());
+        int mask = TransportMask.all().bits();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+        DijkstraEngine dijkstra = new DijkstraEngine();
+
+        // Os custos das consultas repetidas coincidem com os da árvore de caminhos mais curtos
+        for (int stop = 0; stop < routing.numStops(); stop += 97) {
+            SearchResult result = dijkstra.findPath(routing, weights, mask, origin, stop);
+            double cost = 0;
+            for (int edge : result.edges()) cost += weights.weight(edge, mask);
+            assertEquals(weights.shortestPathTree(mask, origin).cost(stop), cost, 1e-9);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+        DurationStrategy duration = new DurationStrategy();
+        TransportMask all = TransportMask.all();
+        String[] names = new String[4000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "Line " + i;
+        }
+
+        // Cada consulta tem uma origem nova, pelo que é respondida pelo Dijkstra e não pela cache nem por uma árvore
+        for (int i = 0; i < 2000; i++) {
+            transportMap.leastCostBetweenStops(names[i], names[i + 1], duration, all);
+        }
+
+        int queries = 1000;
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 2000; i < 2000 + queries; i++) {
+            transportMap.leastCostBetweenStops(names[i], names[i + 1], duration, all);
+        }
+        long perQuery = (threads.getThreadAllocatedBytes(thread) - before) / queries;
+
+        // Sem espaços de trabalho, cada consulta alocaria pelo menos um array de custos com todas as Stops
+        assertTrue(perQuery < routing.numStops(), "Allocated " + perQuery + " bytes per query");
+    }
+
+    @Test
+    void pathLegs() {
+        TransportMask mask = TransportMask.of(TransportType.BUS, TransportType.TRAIN, TransportType.WALK);
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy(), new SustainabilityStrategy())) {
+            Path path = transportMap.leastCostBetweenStops("Sintra", "Palmela", strategy, mask);
+            List<PathLeg> legs = path.getLegs();
+            assertEquals(path.getPath().size() - 1, legs.size());
+
+            double cost = 0;
+            double distance = 0;
+            int duration = 0;
+            for (int i = 0; i < legs.size(); i++) {
+                PathLeg leg = legs.get(i);
+                assertEquals(path.getPath().get(i), leg.getFrom());
+                assertEquals(path.getPath().get(i + 1), leg.getTo());
+                assertEquals(leg.getEdge(), transportMap.getConnection(leg.getFrom(), leg.getTo()));
+
+                // O troço guarda a Route mais barata da aresta entre as permitidas
+                Route route = leg.getRoute();
+                assertTrue(route.getState() && mask.contains(route.getTransportType()));
+                assertEquals(route.getTransportType(), leg.getTransportType());
+                assertEquals(strategy.calculateWeight(route), leg.getCost());
+                for (Route other : leg.getEdge().element()) {
+                    if (other.getState() && mask.contains(other.getTransportType())) {
+                        assertTrue(leg.getCost() <= strategy.calculateWeight(other));
+                    }
+                }
+                cost += leg.getCost();
+                distance += leg.getDistance();
+                duration += leg.getDuration();
+            }
+            assertEquals(path.getTotalCost(), cost, 0.01);
+            assertEquals(path.getTotalDistance(), distance, 0.01);
+            assertEquals(path.getTotalDuration(), duration);
+        }
+
+        // Com transbordos, o custo total soma aos troços as penalizações
+        TransferPenalties penalties = TransferPenalties.uniform(10);
+        Path transfers = transportMap.leastCostWithTransfers("Sintra", "Palmela", new DurationStrategy(), mask, penalties);
+        double cost = 0;
+        List<PathLeg> legs = transfers.getLegs();
+        for (int i = 0; i < legs.size(); i++) {
+            cost += legs.get(i).getCost();
+            if (i > 0) {
+                cost += penalties.get(legs.get(i - 1).getTransportType(), legs.get(i).getTransportType());
+            }
+        }
+        assertEquals(transfers.getTotalCost(), cost, 0.01);
+
+        assertTrue(new Path(transfers.getPath(), 0).getLegs().isEmpty());
+    }
+
+    @Test
+    void isochrone() {
+        RoutingGraph routing = transportMap.getRoutingGraph();
+        int origin = routing.indexOf(transportMap.getVertexByName("Sintra"));
+        TransportMask busWalk = TransportMask.of(TransportType.BUS, TransportType.WALK);
+
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            for (TransportMask mask : List.of(busWalk, TransportMask.all())) {
+                ShortestPathTree tree = routing.weightTable(strategy).shortestPathTree(mask.bits(), origin);
+                for (double budget : new double[]{0, 20, 60, 150, 1000}) {
+                    LinkedHashMap<Vertex<Stop>, Double> reachable = transportMap.isochrone("Sintra", strategy, mask, budget);
+
+                    // As Stops chegam por ordem de custo, a começar pela origem
+                    assertEquals(transportMap.getVertexByName("Sintra"), reachable.keySet().iterator().next());
+                    double previous = 0;
+                    for (double cost : reachable.values()) {
+                        assertTrue(cost >= previous && cost <= budget);
+                        previous = cost;
+                    }
+
+                    // São exatamente as Stops da árvore de caminhos mais curtos dentro do orçamento
+                    int expected = 0;
+                    for (int stop = 0; stop < routing.numStops(); stop++) {
+                        if (tree.cost(stop) <= budget) {
+                            expected++;
+                            assertEquals(Math.round(tree.cost(stop) * 100.0) / 100.0, reachable.get(routing.vertex(stop)), 1e-9);
+                        }
+                    }
+                    assertEquals(expected, reachable.size());
+                }
+            }
+        }
+
+        // Os resultados são entregues enquanto a pesquisa decorre
+        List<Double> streamed = new ArrayList<>();
+        int count = transportMap.isochrone("Sintra", new DurationStrategy(), busWalk, 20, (stop, cost) -> streamed.add(cost));
+        assertEquals(count, streamed.size());
+
+        assertThrows(IllegalArgumentException.class, () -> transportMap.isochrone("Sintra", new DurationStrategy(), busWalk, -1));
+        assertThrows(IllegalArgumentException.class, () -> transportMap.isochrone("Nowhere", new DurationStrategy(), busWalk, 20));
+        assertThrows(IllegalStateException.class, () -> transportMap.isochrone("Sintra", new SustainabilityStrategy(), TransportMask.all(), 20));
+    }
+
+    private static boolean dominates(double[] a, double[] b) {
+        return a[0] <= b[0] && a[1] <= b[1] && a[2] <= b[2] && !Arrays.equals(a, b);
+    }
+
+    private void enumerateParetoFront(RoutingGraph routing, int mask, int stop, int destination, double[] totals,
+                                      boolean[] visited, List<double[]> front) {
+        if (front.stream().anyMatch(f -> f[0] <= totals[0] && f[1] <= totals[1] && f[2] <= totals[2])) {
+            return;
+        }
+        if (stop == destination) {
+            front.removeIf(f -> dominates(totals, f));
+            front.add(totals.clone());
+            return;
+        }
+        for (int arc = routing.firstArc(stop); arc < routing.endArc(stop); arc++) {
+            int next = routing.arcTarget(arc);
+            if (visited[next]) {
+                continue;
+            }
+            visited[next] = true;
+            int edge = routing.arcEdge(arc);
+            for (int r = routing.firstRoute(edge); r < routing.endRoute(edge); r++) {
+                if (routing.routeState(r) && (mask & (1 << routing.routeTransport(r))) != 0) {
+                    double[] nextTotals = {totals[0] + routing.routeDistance(r), totals[1] + routing.routeDuration(r),
+                            totals[2] + routing.routeSustainability(r)};
+                    enumerateParetoFront(routing, mask, next, destination, nextTotals, visited, front);
+                }
+            }
+            visited[next] = false;
+        }
+    }
+
+    private double[] bellmanFordCosts(RoutingGraph routing, EdgeWeightTable weights, int mask, int origin) {
+        double[] costs = new double[routing.numStops()];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[origin] = 0.0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int u = 0; u < routing.numStops(); u++) {
+                for (int arc = routing.firstArc(u); arc < routing.endArc(u); arc++) {
+                    double cost = costs[u] + weights.weight(routing.arcEdge(arc), mask);
+                    if (cost < costs[routing.arcTarget(arc)]) {
+                        costs[routing.arcTarget(arc)] = cost;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Predecessor de cada Stop no seu único caminho de menor custo ({@code -1} na origem e nas Stops sem caminho),
+     * ou {@code -2} se houver mais de um caminho de menor custo.
+     */
+    private int[] uniqueShortestPathParents(RoutingGraph routing, EdgeWeightTable weights, int mask, double[] costs) {
+        Integer[] order = new Integer[routing.numStops()];
+        for (int stop = 0; stop < order.length; stop++) {
+            order[stop] = stop;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(stop -> costs[stop]));
+
+        int[] parents = new int[order.length];
+        Arrays.fill(parents, -1);
+        for (int v : order) {
+            for (int arc = routing.firstArc(v); arc < routing.endArc(v) && costs[v] != Double.POSITIVE_INFINITY; arc++) {
+                int u = routing.arcTarget(arc);
+                double weight = weights.weight(routing.arcEdge(arc), mask);
+                if (Math.abs(costs[u] + weight - costs[v]) > 1e-9) {
+                    continue;
+                }
+                // Uma aresta justa de peso nulo, um segundo predecessor ou um predecessor ambíguo tornam o caminho ambíguo
+                parents[v] = weight == 0.0 || parents[v] != -1 || parents[u] == -2 ? -2 : u;
+            }
+        }
+        return parents;
+    }
+
+    private double shiftedCost(EdgeWeightTable weights, int mask, SearchResult result) {
+        double shift = weights.shiftedWeights(mask).shift();
+        double cost = 0;
+        for (int edge : result.edges()) {
+            cost += weights.weight(edge, mask) + shift;
+        }
+        return cost;
+    }
+
+    private void assertCostsMatchDijkstra(RoutingGraph routing, ShortestPathEngine engine) {
+        DijkstraEngine dijkstra = new DijkstraEngine();
+        for (WeightCalculationStrategy strategy : List.of(new DistanceStrategy(), new DurationStrategy())) {
+            EdgeWeightTable weights = routing.weightTable(strategy);
+            for (int mask : new int[]{TransportMask.all().bits(), TransportMask.of(TransportType.BUS, TransportType.WALK).bits()}) {
+                for (int origin = 0; origin < routing.numStops(); origin++) {
+                    for (int destination = 0; destination < routing.numStops(); destination++) {
+                        SearchResult expected = dijkstra.findPath(routing, weights, mask, origin, destination);
+                        SearchResult actual = engine.findPath(routing, weights, mask, origin, destination);
+                        assertEquals(expected.isFound(), actual.isFound());
+                        if (expected.isFound()) {
+                            int[] stops = actual.stops();
+                            assertEquals(destination, stops[stops.length - 1]);
+                            double expectedCost = 0;
+                            double actualCost = 0;
+                            for (int edge : expected.edges()) expectedCost += weights.weight(edge, mask);
+                            for (int edge : actual.edges()) actualCost += weights.weight(edge, mask);
+                            assertEquals(expectedCost, actualCost, 1e-9);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}